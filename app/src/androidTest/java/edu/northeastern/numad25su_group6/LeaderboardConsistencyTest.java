@@ -0,0 +1,209 @@
+package edu.northeastern.numad25su_group6;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import edu.northeastern.numad25su_group6.data.DiscoveryCommitter;
+import edu.northeastern.numad25su_group6.data.LeaderboardMaintainer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Instrumented test of the materialized leaderboard against the Realtime Database emulator. Start
+ * it with {@code firebase emulators:start --only database} before running the test; the device
+ * reaches the host at 10.0.2.2.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LeaderboardConsistencyTest {
+
+  private static final int USERS = 8;
+  private static final int TREASURES = 4;
+  private static final long TIMEOUT_SECONDS = 60;
+
+  private DatabaseReference rootRef;
+
+  // Message of the first failed commit, reported on the test thread
+  private volatile String failure;
+
+  @BeforeClass
+  public static void useEmulator() {
+    FirebaseDatabase.getInstance().useEmulator("10.0.2.2", 9000);
+  }
+
+  @Before
+  public void seed() throws Exception {
+    rootRef = FirebaseDatabase.getInstance().getReference();
+    Tasks.await(rootRef.setValue(null), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+    // Users signed up with no points, the way SignUpActivity writes them
+    Map<String, Object> updates = new HashMap<>();
+    for (int u = 0; u < USERS; u++) {
+      Map<String, Object> stats = new HashMap<>();
+      stats.put("userid", "user" + u);
+      stats.put("points", 0);
+      updates.put("users/user" + u + "/firstname", "User" + u);
+      LeaderboardMaintainer.addNewUserUpdates(updates, stats);
+      updates.put("userstats/user" + u, stats);
+      Tasks.await(rootRef.updateChildren(updates), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      updates.clear();
+    }
+    for (int t = 0; t < TREASURES; t++) {
+      updates.put("treasures/treasure" + t + "/title", "Treasure " + t);
+      updates.put("treasures/treasure" + t + "/totalDiscoveries", 0);
+    }
+    Tasks.await(rootRef.updateChildren(updates), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void leaderboardMatchesUserStatsAfterConcurrentDiscoveries() throws Exception {
+    // Every user discovers every treasure. A device commits its discoveries one after another, so
+    // each user runs in sequence while all users run concurrently.
+    CountDownLatch done = new CountDownLatch(USERS);
+    InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+      for (int u = 0; u < USERS; u++) {
+        commitInSequence(new DiscoveryCommitter("user" + u), 0, done);
+      }
+    });
+    assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertNull(failure);
+
+    // Only the first three finders of each treasure earn points
+    assertLeaderboardMatchesUserStats(TREASURES * 3 * 10);
+  }
+
+  @Test
+  public void leaderboardMatchesUserStatsAfterConcurrentDiscoveriesOfOneUser() throws Exception {
+    // One user commits every discovery at once, e.g. from a flushed outbox, so the transactions
+    // on their statistics race with each other
+    CountDownLatch done = new CountDownLatch(TREASURES);
+    InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+      DiscoveryCommitter committer = new DiscoveryCommitter("user0");
+      for (int t = 0; t < TREASURES; t++) {
+        commit(committer, t, done::countDown, done);
+      }
+    });
+    assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertNull(failure);
+
+    // The user is the first finder of every treasure
+    assertLeaderboardMatchesUserStats(TREASURES * 10);
+  }
+
+  /**
+   * Checks that every user is counted once, in the bucket of their points, that no bucket move is
+   * left unapplied and that the top list holds every user with points.
+   *
+   * @param expectedTotalPoints The points earned by all users together
+   */
+  private void assertLeaderboardMatchesUserStats(long expectedTotalPoints) throws Exception {
+    DataSnapshot stats = Tasks.await(rootRef.child("userstats").get());
+    long totalPoints = 0;
+    Map<String, Long> expectedBuckets = new HashMap<>();
+    for (DataSnapshot child : stats.getChildren()) {
+      long points = child.child("points").getValue(Long.class);
+      totalPoints += points;
+      expectedBuckets.merge(String.valueOf(LeaderboardMaintainer.bucketOf(points)), 1L,
+          Long::sum);
+      assertEquals(LeaderboardMaintainer.bucketOf(points),
+          (int) child.child(LeaderboardMaintainer.FIELD_BUCKET).getValue(Integer.class));
+      assertFalse(child.hasChild("pendingMoves"));
+    }
+    assertEquals(expectedTotalPoints, totalPoints);
+
+    DataSnapshot buckets = Tasks.await(rootRef.child("leaderboard").child("buckets").get());
+    Map<String, Long> actualBuckets = new HashMap<>();
+    for (DataSnapshot child : buckets.getChildren()) {
+      long count = child.getValue(Long.class);
+      if (count != 0) {
+        actualBuckets.put(child.getKey(), count);
+      }
+    }
+    assertEquals(expectedBuckets, actualBuckets);
+
+    // A discovery only counts as committed once the top list is updated
+    DataSnapshot top = Tasks.await(rootRef.child("leaderboard").child("top").get());
+    assertTrue(topMatches(top, stats));
+  }
+
+  /**
+   * Commits the discoveries of one user one after another.
+   *
+   * @param committer The committer of the user
+   * @param treasure  The index of the next treasure
+   * @param done      Latch counted down once the user discovered every treasure
+   */
+  private void commitInSequence(DiscoveryCommitter committer, int treasure, CountDownLatch done) {
+    if (treasure == TREASURES) {
+      done.countDown();
+      return;
+    }
+    commit(committer, treasure, () -> commitInSequence(committer, treasure + 1, done), done);
+  }
+
+  /**
+   * Commits a discovery of one treasure. A failure is recorded and counts the latch down, so the
+   * test thread stops waiting and reports it.
+   *
+   * @param committer   The committer of the user
+   * @param treasure    The index of the treasure
+   * @param onCommitted Action run once the discovery is committed
+   * @param done        Latch the test thread waits on
+   */
+  private void commit(DiscoveryCommitter committer, int treasure, Runnable onCommitted,
+      CountDownLatch done) {
+    String discoveryId = rootRef.child("discoveries").push().getKey();
+    committer.commit("treasure" + treasure, discoveryId, System.currentTimeMillis(),
+        new DiscoveryCommitter.Callback() {
+          @Override
+          public void onCommitted(int pointsEarned, long discoveryTime) {
+            onCommitted.run();
+          }
+
+          @Override
+          public void onFailed(String message) {
+            if (failure == null) {
+              failure = message;
+            }
+            done.countDown();
+          }
+        });
+  }
+
+  /**
+   * Checks that the top list holds every user who earned points with their current points. With
+   * fewer users than the list size, users with points all belong in it.
+   *
+   * @param top   Snapshot of the top list
+   * @param stats Snapshot of the user statistics
+   * @return true if the top list matches the statistics
+   */
+  private static boolean topMatches(DataSnapshot top, DataSnapshot stats) {
+    long listed = 0;
+    for (DataSnapshot child : stats.getChildren()) {
+      long points = child.child("points").getValue(Long.class);
+      if (points == 0) {
+        continue;
+      }
+      listed++;
+      Long topPoints = top.child(child.getKey()).child("points").getValue(Long.class);
+      if (topPoints == null || topPoints != points) {
+        return false;
+      }
+    }
+    return top.getChildrenCount() == listed;
+  }
+}
@@ -28,18 +28,20 @@ import com.google.android.material.card.MaterialCardView;
 import com.google.android.material.navigation.NavigationView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 import edu.northeastern.numad25su_group6.R;
 import edu.northeastern.numad25su_group6.constants.DiscoveryDialogType;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import edu.northeastern.numad25su_group6.data.BookmarkStore;
+import edu.northeastern.numad25su_group6.data.DiscoveryRecord;
+import edu.northeastern.numad25su_group6.data.LocalTreasureStore;
+import edu.northeastern.numad25su_group6.data.ProfileCache;
+import edu.northeastern.numad25su_group6.data.RankService;
+import edu.northeastern.numad25su_group6.data.SnapshotDecoder;
+import edu.northeastern.numad25su_group6.data.TreasureRecord;
+import edu.northeastern.numad25su_group6.data.UserStatsRecord;
+import edu.northeastern.numad25su_group6.images.ImagePipeline;
+import edu.northeastern.numad25su_group6.sync.Outbox;
 import java.util.Objects;
 
 /**
@@ -48,6 +50,10 @@ import java.util.Objects;
  */
 public class BaseActivity extends AppCompatActivity {
 
+  // Sizes of the profile images in profile_icon_toolbar and profile_info_popup
+  private static final int TOOLBAR_PROFILE_SIZE_DP = 34;
+  private static final int POPUP_PROFILE_SIZE_DP = 100;
+
   /**
    * This method is called when the activity is created. It sets up the toolbar with a profile icon.
    * It sets an onClickListener on the profile icon to show a popup dialog with user profile
@@ -62,26 +68,15 @@ public class BaseActivity extends AppCompatActivity {
         // Fetch and set profile image
         FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
         if (user != null) {
-          String uid = user.getUid();
-          DatabaseReference userRef = FirebaseDatabase.getInstance().getReference("users")
-              .child(uid);
-          userRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-              String profileImageUrl = snapshot.child("profileImageUrl").getValue(String.class);
-              if (profileImageUrl != null && !profileImageUrl.isEmpty()) {
-                Glide.with(toolbar.getContext())
-                    .load(profileImageUrl)
-                    .placeholder(R.drawable.ic_profile)
-                    .error(R.drawable.ic_profile)
-                    .into(profileIcon);
-              } else {
-                profileIcon.setImageResource(R.drawable.ic_profile);
-              }
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
+          ProfileCache.getInstance().get(user.getUid(), profile -> {
+            if (profile.hasProfileImage()) {
+              Glide.with(toolbar.getContext())
+                  .load(ImagePipeline.urlFor(this, profile.profileImage,
+                      TOOLBAR_PROFILE_SIZE_DP))
+                  .placeholder(R.drawable.ic_profile)
+                  .error(R.drawable.ic_profile)
+                  .into(profileIcon);
+            } else {
               profileIcon.setImageResource(R.drawable.ic_profile);
             }
           });
@@ -122,110 +117,43 @@ public class BaseActivity extends AppCompatActivity {
       emailView.setText(email);
       String uid = user.getUid();
 
-      // Fetch the user's first and last name from Firebase Realtime Database
-      DatabaseReference userRef = FirebaseDatabase.getInstance().getReference("users").child(uid);
-      userRef.addListenerForSingleValueEvent(new ValueEventListener() {
-        @Override
-        public void onDataChange(@NonNull DataSnapshot snapshot) {
-          String firstName = snapshot.child("firstname").getValue(String.class);
-          String lastName = snapshot.child("lastname").getValue(String.class);
-          String profileImageUrl = snapshot.child("profileImageUrl").getValue(String.class);
-          if (firstName != null && lastName != null) {
-            nameView.setText(firstName + " " + lastName);
-          } else if (firstName != null) {
-            nameView.setText(firstName);
-          } else {
-            nameView.setText("User");
-          }
-
-          // Load profile image if available
-          if (profileImageUrl != null && !profileImageUrl.isEmpty()) {
-            Glide.with(BaseActivity.this)
-                .load(profileImageUrl)
-                .placeholder(R.drawable.ic_profile_placeholder)
-                .error(R.drawable.ic_error)
-                .into(profileImageView);
-          } else {
-            profileImageView.setImageResource(R.drawable.ic_profile_placeholder);
-          }
-        }
-
-        @Override
-        public void onCancelled(@NonNull DatabaseError error) {
-          nameView.setText("User");
+      // Get the user's first and last name from the shared profile cache
+      ProfileCache.getInstance().get(uid, profile -> {
+        nameView.setText(profile.displayName());
+
+        // Load profile image if available
+        if (profile.hasProfileImage()) {
+          Glide.with(BaseActivity.this)
+              .load(ImagePipeline.urlFor(this, profile.profileImage, POPUP_PROFILE_SIZE_DP))
+              .placeholder(R.drawable.ic_profile_placeholder)
+              .error(R.drawable.ic_error)
+              .into(profileImageView);
+        } else {
           profileImageView.setImageResource(R.drawable.ic_profile_placeholder);
         }
       });
 
-      // Fetch points and calculate ranking
-      DatabaseReference statsRef = FirebaseDatabase.getInstance().getReference("userstats");
-      statsRef.addListenerForSingleValueEvent(new ValueEventListener() {
-        @Override
-        public void onDataChange(@NonNull DataSnapshot snapshot) {
-          int currentUserPoints = 0;
-          for (DataSnapshot userSnapshot : snapshot.getChildren()) {
-            if (Objects.equals(userSnapshot.child("userid").getValue(String.class), uid)) {
-              Integer points = userSnapshot.child("points").getValue(Integer.class);
-              if (points != null) {
-                currentUserPoints = points;
-                pointsView.setText(String.valueOf(points));
-              }
-              break;
-            }
-          }
-          // Now, calculate ranking
-          List<Integer> allPoints = new ArrayList<>();
-          for (DataSnapshot userSnapshot : snapshot.getChildren()) {
-            Integer points = userSnapshot.child("points").getValue(Integer.class);
-            if (points != null) {
-              allPoints.add(points);
-            }
-          }
-          // Sort points descending
-          allPoints.sort(Collections.reverseOrder());
-          int rank = 1;
-          int prevPoints = -1;
-          for (int i = 0; i < allPoints.size(); i++) {
-            int pts = allPoints.get(i);
-            if (pts != prevPoints) {
-              rank = i + 1;
-              prevPoints = pts;
-            }
-            if (pts == currentUserPoints) {
-              break;
-            }
-          }
-          rankingView.setText("#" + rank);
-        }
-
-        @Override
-        public void onCancelled(@NonNull DatabaseError error) {
-          pointsView.setText("0");
-          rankingView.setText("#-");
-        }
-      });
-
-      // Fetch total treasures discovered by the user
+      // Read the user's points and counters in one fetch, then look up their rank in the shared
+      // rank index
       TextView treasuresView = dialog.findViewById(R.id.total_treasures);
-      DatabaseReference discoveriesRef = FirebaseDatabase.getInstance().getReference("discoveries");
-      discoveriesRef.addListenerForSingleValueEvent(new ValueEventListener() {
-        @Override
-        public void onDataChange(@NonNull DataSnapshot snapshot) {
-          int totalTreasures = 0;
-          for (DataSnapshot discoverySnap : snapshot.getChildren()) {
-            String discoveryUserId = discoverySnap.child("userId").getValue(String.class);
-            if (uid.equals(discoveryUserId)) {
-              totalTreasures++;
+      DatabaseReference statsRef = FirebaseDatabase.getInstance().getReference("userstats");
+      statsRef.child(uid).addListenerForSingleValueEvent(SnapshotDecoder.listener(
+          UserStatsRecord::fromSnapshot,
+          stats -> {
+            int points = stats != null ? stats.points : 0;
+            if (stats != null) {
+              pointsView.setText(String.valueOf(points));
+              treasuresView.setText(String.valueOf(stats.discoveries));
             }
-          }
-          treasuresView.setText(String.valueOf(totalTreasures));
-        }
-
-        @Override
-        public void onCancelled(@NonNull DatabaseError error) {
-          treasuresView.setText("0");
-        }
-      });
+            RankService.getInstance().rankOf(points,
+                rank -> rankingView.setText("#" + rank),
+                error -> rankingView.setText("#-"));
+          },
+          error -> {
+            pointsView.setText("0");
+            treasuresView.setText("0");
+            rankingView.setText("#-");
+          }));
     }
 
     // Set up the logout button in the popup dialog
@@ -313,212 +241,199 @@ public class BaseActivity extends AppCompatActivity {
   protected void showTreasureInfoDialog(Activity activity, DiscoveryDialogType type,
       String treasureId, boolean showBookmark) {
     DatabaseReference treasuresRef = FirebaseDatabase.getInstance().getReference("treasures");
-    DatabaseReference savedTreasuresRef = FirebaseDatabase.getInstance()
-        .getReference("savedTreasures");
-    DatabaseReference discoveriesRef = FirebaseDatabase.getInstance().getReference("discoveries");
     String userId = Objects.requireNonNull(FirebaseAuth.getInstance().getCurrentUser()).getUid();
 
-    // Fetch discovery info for this user and treasure
-    discoveriesRef.orderByChild("userId").equalTo(userId)
-        .addListenerForSingleValueEvent(new ValueEventListener() {
-          @Override
-          public void onDataChange(@NonNull DataSnapshot snapshot) {
-            long discoveryTimeMillis = 0;
-            int pointsEarned = 0;
-            for (DataSnapshot child : snapshot.getChildren()) {
-              String tid = child.child("treasureId").getValue(String.class);
-              if (treasureId.equals(tid)) {
-                Long ts = child.child("discoveryTime").getValue(Long.class);
-                Integer pts = child.child("pointsEarned").getValue(Integer.class);
-                if (ts != null) {
-                  discoveryTimeMillis = ts;
-                }
-                if (pts != null) {
-                  pointsEarned = pts;
-                }
-                break;
-              }
+    // Read this user's discovery of the treasure from the discovery index
+    FirebaseDatabase.getInstance().getReference("userDiscoveries").child(userId).child(treasureId)
+        .addListenerForSingleValueEvent(SnapshotDecoder.listener(
+            snapshot -> DiscoveryRecord.fromIndexSnapshot(userId, snapshot),
+            discovery -> {
+              // Fetch treasure details and show dialog
+              treasuresRef.child(treasureId).addListenerForSingleValueEvent(
+                  SnapshotDecoder.listener(TreasureRecord::fromSnapshot,
+                      treasure -> buildTreasureInfoDialog(activity, type, treasureId,
+                          showBookmark, treasure, discovery),
+                      null));
+            },
+            null));
+  }
+
+  /**
+   * Builds and shows the treasure info dialog once the treasure and discovery are decoded.
+   *
+   * @param activity     The activity context to show the dialog in.
+   * @param type         The type of discovery (e.g., REVISIT, OWN_TREASURE).
+   * @param treasureId   The ID of the treasure to show info for.
+   * @param showBookmark Whether to show the bookmark button.
+   * @param treasure     The decoded treasure, or null if it does not exist.
+   * @param discovery    The user's discovery of the treasure, or null.
+   */
+  private void buildTreasureInfoDialog(Activity activity, DiscoveryDialogType type,
+      String treasureId, boolean showBookmark, @Nullable TreasureRecord treasure,
+      @Nullable DiscoveryRecord discovery) {
+    long discoveryTimeMillis = discovery != null ? discovery.discoveryTime : 0;
+    int pointsEarned = discovery != null ? discovery.pointsEarned : 0;
+    // The dialog image spans the width of the screen
+    String imageUrl = treasure != null ? ImagePipeline.urlFor(activity, treasure.image,
+        activity.getResources().getConfiguration().screenWidthDp) : null;
+
+    // Create the dialog
+    AlertDialog.Builder builder = new AlertDialog.Builder(activity);
+    View popupView = LayoutInflater.from(activity).inflate(R.layout.dialog_discovery_info, null);
+    builder.setView(popupView);
+
+    // Initialize UI components in the dialog
+    MaterialCardView imageCard = popupView.findViewById(R.id.imageCard);
+    ImageView treasureImage = popupView.findViewById(R.id.discoveryImage);
+    TextView treasureTitle = popupView.findViewById(R.id.tvTreasureTitle);
+    TextView treasureDesc = popupView.findViewById(R.id.tvTreasureDesc);
+    TextView discoveryInfo = popupView.findViewById(R.id.tvDiscoveryInfo);
+    ImageView btnBookmark = popupView.findViewById(R.id.btnBookmark);
+    ImageView btnClose = popupView.findViewById(R.id.btnClose);
+
+    treasureTitle.setText(treasure != null ? treasure.title : null);
+    treasureDesc.setText(treasure != null ? treasure.description : null);
+    LinearLayout infoBoxContainer = popupView.findViewById(R.id.infoBoxContainer);
+
+    // Set discovery info based on the type of discovery
+    switch (type) {
+      case REVISIT:
+        String formattedDate = discoveryTimeMillis > 0
+            ? DateFormat.format("MMM dd, yyyy 'at' hh:mm a", discoveryTimeMillis).toString()
+            : "N/A";
+        discoveryInfo.setText("You discovered this treasure on " + formattedDate
+            + (pointsEarned != 0 ? "\nYou earned " + pointsEarned + " points!" : ""));
+        btnBookmark.setVisibility(View.VISIBLE);
+        infoBoxContainer.setBackgroundResource(R.drawable.bg_info_blue_box);
+        break;
+      case OWN_TREASURE:
+        discoveryInfo.setText("This is your own treasure!");
+        btnBookmark.setVisibility(View.INVISIBLE);
+        infoBoxContainer.setBackgroundResource(R.drawable.bg_info_blue_box);
+        break;
+    }
+
+    // Hide image by default
+    imageCard.setVisibility(View.GONE);
+
+    // Load the treasure image
+    if (imageUrl != null && !imageUrl.isEmpty()) {
+      imageCard.setVisibility(View.VISIBLE);
+      Glide.with(BaseActivity.this)
+          .load(imageUrl)
+          .placeholder(R.drawable.ic_image_placeholder)
+          .error(R.drawable.ic_image_placeholder)
+          .listener(new com.bumptech.glide.request.RequestListener<Drawable>() {
+            @Override
+            public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                Target<Drawable> target, boolean isFirstResource) {
+              imageCard.setVisibility(View.GONE);
+              return false;
             }
 
-            // Fetch treasure details and show dialog
-            long finalDiscoveryTimeMillis = discoveryTimeMillis;
-            int finalPointsEarned = pointsEarned;
-            treasuresRef.child(treasureId).addListenerForSingleValueEvent(new ValueEventListener() {
-              @Override
-              public void onDataChange(@NonNull DataSnapshot snap) {
-                String title = snap.child("title").getValue(String.class);
-                String desc = snap.child("description").getValue(String.class);
-                String imageUrl = snap.child("imageUrl").getValue(String.class);
-
-                // Create the dialog
-                AlertDialog.Builder builder = new AlertDialog.Builder(activity);
-                View popupView = LayoutInflater.from(activity)
-                    .inflate(R.layout.dialog_discovery_info, null);
-                builder.setView(popupView);
-
-                // Initialize UI components in the dialog
-                MaterialCardView imageCard = popupView.findViewById(R.id.imageCard);
-                ImageView treasureImage = popupView.findViewById(R.id.discoveryImage);
-                TextView treasureTitle = popupView.findViewById(R.id.tvTreasureTitle);
-                TextView treasureDesc = popupView.findViewById(R.id.tvTreasureDesc);
-                TextView discoveryInfo = popupView.findViewById(R.id.tvDiscoveryInfo);
-                ImageView btnBookmark = popupView.findViewById(R.id.btnBookmark);
-                ImageView btnClose = popupView.findViewById(R.id.btnClose);
-
-                treasureTitle.setText(title);
-                treasureDesc.setText(desc);
-                LinearLayout infoBoxContainer = popupView.findViewById(R.id.infoBoxContainer);
-
-                // Set discovery info based on the type of discovery
-                switch (type) {
-                  case REVISIT:
-                    String formattedDate = finalDiscoveryTimeMillis > 0
-                        ? DateFormat.format("MMM dd, yyyy 'at' hh:mm a", finalDiscoveryTimeMillis)
-                        .toString()
-                        : "N/A";
-                    discoveryInfo.setText(
-                        "You discovered this treasure on " + formattedDate + (finalPointsEarned != 0
-                            ?
-                            "\nYou earned " + finalPointsEarned + " points!" : ""));
-                    btnBookmark.setVisibility(View.VISIBLE);
-                    infoBoxContainer.setBackgroundResource(R.drawable.bg_info_blue_box);
-                    break;
-                  case OWN_TREASURE:
-                    discoveryInfo.setText("This is your own treasure!");
-                    btnBookmark.setVisibility(View.INVISIBLE);
-                    infoBoxContainer.setBackgroundResource(R.drawable.bg_info_blue_box);
-                    break;
-                }
-
-                // Hide image by default
-                imageCard.setVisibility(View.GONE);
-
-                // Load the treasure image
-                if (imageUrl != null && !imageUrl.isEmpty()) {
-                  imageCard.setVisibility(View.VISIBLE);
-                  Glide.with(BaseActivity.this)
-                      .load(imageUrl)
-                      .placeholder(R.drawable.ic_image_placeholder)
-                      .error(R.drawable.ic_image_placeholder)
-                      .listener(
-                          new com.bumptech.glide.request.RequestListener<android.graphics.drawable.Drawable>() {
-                            @Override
-                            public boolean onLoadFailed(@Nullable GlideException e, Object model,
-                                Target<Drawable> target, boolean isFirstResource) {
-                              imageCard.setVisibility(View.GONE);
-                              return false;
-                            }
-
-                            @Override
-                            public boolean onResourceReady(
-                                android.graphics.drawable.Drawable resource, Object model,
-                                Target<Drawable> target, DataSource dataSource,
-                                boolean isFirstResource) {
-                              imageCard.setVisibility(View.VISIBLE);
-                              return false;
-                            }
-                          })
-                      .into(treasureImage);
-                } else {
-                  imageCard.setVisibility(View.GONE);
-                }
-
-                // Set visibility of bookmark button
-                btnBookmark.setVisibility(showBookmark ? View.VISIBLE : View.INVISIBLE);
-
-                // Set bookmark icon state
-                if (showBookmark) {
-                  savedTreasuresRef.orderByChild("userId").equalTo(userId)
-                      .addListenerForSingleValueEvent(new ValueEventListener() {
-                        @Override
-                        public void onDataChange(@NonNull DataSnapshot snapshot) {
-                          boolean isBookmarked = false;
-                          for (DataSnapshot child : snapshot.getChildren()) {
-                            String tid = child.child("treasureId").getValue(String.class);
-                            if (treasureId.equals(tid)) {
-                              isBookmarked = true;
-                              break;
-                            }
-                          }
-                          btnBookmark.setImageResource(isBookmarked
-                              ? android.R.drawable.btn_star_big_on
-                              : android.R.drawable.btn_star_big_off);
-                        }
-
-                        @Override
-                        public void onCancelled(@NonNull DatabaseError error) {
-                        }
-                      });
-
-                  // Set onClickListener for the bookmark button
-                  btnBookmark.setOnClickListener(v -> {
-                    savedTreasuresRef.orderByChild("userId").equalTo(userId)
-                        .addListenerForSingleValueEvent(new ValueEventListener() {
-                          @Override
-                          public void onDataChange(@NonNull DataSnapshot snapshot) {
-                            boolean isBookmarked = false;
-                            String bookmarkKey = null;
-                            for (DataSnapshot child : snapshot.getChildren()) {
-                              String tid = child.child("treasureId").getValue(String.class);
-                              if (treasureId.equals(tid)) {
-                                isBookmarked = true;
-                                bookmarkKey = child.getKey();
-                                break;
-                              }
-                            }
-
-                            // Toggle bookmark state
-                            if (isBookmarked && bookmarkKey != null) {
-                              savedTreasuresRef.child(bookmarkKey).removeValue()
-                                  .addOnCompleteListener(task -> {
-                                    btnBookmark.setImageResource(
-                                        android.R.drawable.btn_star_big_off);
-                                    if (activity instanceof SavedTreasuresActivity) {
-                                      ((SavedTreasuresActivity) activity).fetchSavedTreasures();
-                                    }
-                                  });
-                            } else {
-                              String newKey = savedTreasuresRef.push().getKey();
-                              if (newKey != null) {
-                                Map<String, Object> bookmark = new HashMap<>();
-                                bookmark.put("userId", userId);
-                                bookmark.put("treasureId", treasureId);
-                                savedTreasuresRef.child(newKey).setValue(bookmark)
-                                    .addOnCompleteListener(task -> {
-                                      btnBookmark.setImageResource(
-                                          android.R.drawable.btn_star_big_on);
-                                      if (activity instanceof SavedTreasuresActivity) {
-                                        ((SavedTreasuresActivity) activity).fetchSavedTreasures();
-                                      }
-                                    });
-                              }
-                            }
-                          }
-
-                          @Override
-                          public void onCancelled(@NonNull DatabaseError error) {
-                          }
-                        });
-                  });
-                }
-
-                // Create and show the dialog
-                AlertDialog dialog = builder.create();
-                btnClose.setOnClickListener(v -> dialog.dismiss());
-                Objects.requireNonNull(dialog.getWindow())
-                    .setBackgroundDrawableResource(android.R.color.transparent);
-                dialog.show();
-              }
-
-              @Override
-              public void onCancelled(@NonNull DatabaseError error) {
-              }
-            });
-          }
+            @Override
+            public boolean onResourceReady(Drawable resource, Object model,
+                Target<Drawable> target, DataSource dataSource, boolean isFirstResource) {
+              imageCard.setVisibility(View.VISIBLE);
+              return false;
+            }
+          })
+          .into(treasureImage);
+    }
 
-          @Override
-          public void onCancelled(@NonNull DatabaseError error) {
+    // Set visibility of bookmark button
+    btnBookmark.setVisibility(showBookmark ? View.VISIBLE : View.INVISIBLE);
+
+    // Set bookmark icon state and toggle it on click
+    if (showBookmark) {
+      String userId = Objects.requireNonNull(FirebaseAuth.getInstance().getCurrentUser())
+          .getUid();
+      BookmarkStore bookmarkStore = new BookmarkStore(userId);
+      bindBookmarkState(bookmarkStore, userId, treasureId, btnBookmark);
+      btnBookmark.setOnClickListener(
+          v -> toggleBookmark(activity, userId, treasureId, btnBookmark));
+    }
+
+    // Create and show the dialog
+    AlertDialog dialog = builder.create();
+    btnClose.setOnClickListener(v -> dialog.dismiss());
+    Objects.requireNonNull(dialog.getWindow())
+        .setBackgroundDrawableResource(android.R.color.transparent);
+    dialog.show();
+  }
+
+  /**
+   * Shows the bookmark state of a treasure on the button. The state cached on the device is shown
+   * first, then replaced and re-cached once the live state is known. A change still waiting in the
+   * outbox wins over the live state until it is sent, so a toggle is never shown as undone.
+   *
+   * @param bookmarkStore The bookmarks of the current user.
+   * @param userId        The ID of the current user.
+   * @param treasureId    The ID of the treasure.
+   * @param btnBookmark   The bookmark button to update.
+   */
+  protected void bindBookmarkState(BookmarkStore bookmarkStore, String userId,
+      String treasureId, ImageView btnBookmark) {
+    LocalTreasureStore localStore = LocalTreasureStore.getInstance(this);
+    Outbox outbox = Outbox.getInstance(this);
+    boolean[] liveStateKnown = {false};
+    localStore.loadBookmarked(userId, treasureId, bookmarked -> {
+      if (!liveStateKnown[0]) {
+        showBookmarkState(btnBookmark, bookmarked);
+      }
+    });
+    bookmarkStore.isBookmarked(treasureId, live ->
+        outbox.loadPendingBookmark(userId, treasureId, pending -> {
+          liveStateKnown[0] = true;
+          if (pending == null) {
+            localStore.setBookmarked(userId, treasureId, live);
+            showBookmarkState(btnBookmark, live);
+          } else {
+            showBookmarkState(btnBookmark, pending);
           }
-        });
+        }), null);
+  }
+
+  /**
+   * Shows a bookmark state on the button and remembers it, so a toggle knows the current state.
+   *
+   * @param btnBookmark The bookmark button to update.
+   * @param bookmarked  Whether the treasure is bookmarked.
+   */
+  protected static void showBookmarkState(ImageView btnBookmark, boolean bookmarked) {
+    btnBookmark.setTag(bookmarked);
+    btnBookmark.setImageResource(bookmarked
+        ? android.R.drawable.btn_star_big_on
+        : android.R.drawable.btn_star_big_off);
+  }
+
+  /**
+   * Checks the bookmark state last shown on the button.
+   *
+   * @param btnBookmark The bookmark button.
+   * @return true if the button shows the treasure as bookmarked.
+   */
+  protected static boolean isShownBookmarked(ImageView btnBookmark) {
+    return Boolean.TRUE.equals(btnBookmark.getTag());
+  }
+
+  /**
+   * Adds or removes the bookmark of a treasure through the outbox and updates the saved treasures
+   * list if shown.
+   *
+   * @param activity      The activity the dialog is shown in.
+   * @param userId        The ID of the current user.
+   * @param treasureId    The ID of the treasure.
+   * @param btnBookmark   The bookmark button to update.
+   */
+  private void toggleBookmark(Activity activity, String userId, String treasureId,
+      ImageView btnBookmark) {
+    boolean bookmarked = !isShownBookmarked(btnBookmark);
+    showBookmarkState(btnBookmark, bookmarked);
+    LocalTreasureStore.getInstance(activity).setBookmarked(userId, treasureId, bookmarked);
+    Outbox.getInstance(activity).enqueueBookmark(userId, treasureId, bookmarked);
+    if (activity instanceof SavedTreasuresActivity) {
+      ((SavedTreasuresActivity) activity).onBookmarkChanged(treasureId, bookmarked);
+    }
   }
-}
\ No newline at end of file
+}
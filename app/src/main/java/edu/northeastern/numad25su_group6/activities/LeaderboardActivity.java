@@ -9,27 +9,29 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 import edu.northeastern.numad25su_group6.R;
 import edu.northeastern.numad25su_group6.adapters.LeaderboardAdapter;
+import edu.northeastern.numad25su_group6.data.LeaderboardStore;
+import edu.northeastern.numad25su_group6.data.ProfileCache;
+import edu.northeastern.numad25su_group6.data.RankService;
+import edu.northeastern.numad25su_group6.data.SnapshotDecoder;
+import edu.northeastern.numad25su_group6.data.UserProfileRecord;
+import edu.northeastern.numad25su_group6.data.UserStatsRecord;
+import edu.northeastern.numad25su_group6.images.ImagePipeline;
 import edu.northeastern.numad25su_group6.pojo.LeaderboardItem;
+import edu.northeastern.numad25su_group6.utils.LeaderboardRanking;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 
 /**
- * LeaderboardActivity displays a leaderboard of users based on their points. It fetches user
- * statistics from Firebase and displays them in a RecyclerView.
+ * LeaderboardActivity displays a leaderboard of users based on their points. The leaderboard is
+ * loaded page by page from the highest points down while the user scrolls, and profiles are only
+ * fetched for the rows that are shown, through the shared profile cache. While the activity is
+ * visible, changes of the top list are applied live: only the changed rows move or update.
  */
 public class LeaderboardActivity extends BaseActivity {
 
@@ -38,8 +40,21 @@ public class LeaderboardActivity extends BaseActivity {
   private View currentUserItem;
   private LeaderboardAdapter adapter;
 
-  // Leaderboard data
+  // Leaderboard data, kept sorted and ranked by the ranking
   private final List<LeaderboardItem> leaderboardList = new ArrayList<>();
+  private LeaderboardRanking ranking;
+  private LeaderboardStore leaderboardStore;
+  private String currentUserId;
+
+  // Live updates of the top list while the activity is started
+  private ChildEventListener topListener;
+  private boolean isStarted = false;
+  private boolean hasPagesBelowTop = false;
+
+  // The leaderboard is loaded page by page while scrolling
+  private static final int PAGE_SIZE = 25;
+  private static final int PREFETCH_DISTANCE = 5;
+  private LeaderboardStore.Page lastPage;
 
   // Loading state
   private boolean isLoading = false;
@@ -53,165 +68,200 @@ public class LeaderboardActivity extends BaseActivity {
     setupNavigationView();
 
     // Initialize UI components
+    currentUserId = Objects.requireNonNull(FirebaseAuth.getInstance().getCurrentUser()).getUid();
     currentUserItem = findViewById(R.id.current_user_item);
     recyclerView = findViewById(R.id.leaderboard_recycler);
     recyclerView.setLayoutManager(new LinearLayoutManager(this));
-    adapter = new LeaderboardAdapter(leaderboardList,
-        Objects.requireNonNull(FirebaseAuth.getInstance().getCurrentUser()).getUid());
+    adapter = new LeaderboardAdapter(leaderboardList, currentUserId);
     recyclerView.setAdapter(adapter);
+    ranking = new LeaderboardRanking(leaderboardList, adapter);
 
-    // Fetch the full leaderboard data from Firebase
-    fetchFullLeaderboard();
+    // Load the next page when the end of the list comes into view
+    recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+      @Override
+      public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) view.getLayoutManager();
+        if (layoutManager != null && layoutManager.findLastVisibleItemPosition()
+            >= leaderboardList.size() - PREFETCH_DISTANCE) {
+          // The loading footer must not be inserted from within a scroll callback
+          view.post(() -> loadNextPage());
+        }
+      }
+    });
+
+    leaderboardStore = new LeaderboardStore();
+
+    // Load the top of the leaderboard and the current user's own standing
+    loadNextPage();
+    fetchCurrentUserItem();
   }
 
   /**
-   * Fetches the full leaderboard data from Firebase and populates the RecyclerView. It retrieves
-   * user statistics and user details, then combines them into LeaderboardItem objects.
+   * Loads the next page of the leaderboard and appends it to the list. The first page is the
+   * materialized top list. Each row shows its points right away and its name and picture once the
+   * profile cache delivers it.
    */
-  private void fetchFullLeaderboard() {
+  private void loadNextPage() {
+    if (isLoading || (lastPage != null && !lastPage.hasMore)) {
+      return;
+    }
     isLoading = true;
     adapter.showLoading(true);
+    boolean isFirstPage = lastPage == null;
+    SnapshotDecoder.Callback<LeaderboardStore.Page> onPage = page -> {
+      lastPage = page;
+      isLoading = false;
+      adapter.showLoading(false);
+
+      // The top list carries the profiles of its users
+      for (UserProfileRecord profile : page.profiles) {
+        ProfileCache.getInstance().put(profile);
+      }
 
-    // Reference to the user statistics in Firebase
-    DatabaseReference statsRef = FirebaseDatabase.getInstance().getReference("userstats");
-    statsRef.orderByChild("points").addListenerForSingleValueEvent(new ValueEventListener() {
+      // Users listed twice, e.g. after a live update, are skipped by the ranking
+      List<LeaderboardItem> items = new ArrayList<>();
+      for (UserStatsRecord record : page.entries) {
+        items.add(new LeaderboardItem(record.userId, "", record.points, -1, null));
+      }
+      if (!isFirstPage) {
+        hasPagesBelowTop = true;
+      }
+      ranking.append(items);
+      startLiveUpdates();
+    };
+    SnapshotDecoder.Callback<DatabaseError> onError = error -> {
+      isLoading = false;
+      adapter.showLoading(false);
+    };
+    if (isFirstPage) {
+      leaderboardStore.loadTop(PAGE_SIZE, onPage, onError);
+    } else {
+      leaderboardStore.loadPage(lastPage, PAGE_SIZE, onPage, onError);
+    }
+  }
+
+  @Override
+  protected void onStart() {
+    super.onStart();
+    isStarted = true;
+    startLiveUpdates();
+  }
+
+  @Override
+  protected void onStop() {
+    super.onStop();
+    isStarted = false;
+    if (topListener != null) {
+      leaderboardStore.removeTopListener(topListener);
+      topListener = null;
+    }
+  }
+
+  /**
+   * Subscribes to the top list once the first page is shown and while the activity is started.
+   */
+  private void startLiveUpdates() {
+    if (!isStarted || topListener != null || lastPage == null) {
+      return;
+    }
+    topListener = leaderboardStore.addTopListener(new LeaderboardStore.TopListener() {
       @Override
-      public void onDataChange(@NonNull DataSnapshot snapshot) {
-        leaderboardList.clear();
-        List<LeaderboardItem> tempList = new ArrayList<>();
-        List<String> userIds = new ArrayList<>();
-        Map<String, Integer> pointsMap = new HashMap<>();
-
-        // Iterate through the user statistics snapshot to collect user IDs and points
-        for (DataSnapshot child : snapshot.getChildren()) {
-          String userId = child.child("userid").getValue(String.class);
-          Integer pointsObj = child.child("points").getValue(Integer.class);
-          int points = pointsObj != null ? pointsObj : 0;
-          if (userId != null) {
-            userIds.add(userId);
-            pointsMap.put(userId, points);
-          }
+      public void onEntryChanged(UserStatsRecord entry, UserProfileRecord profile) {
+        ProfileCache.getInstance().put(profile);
+        ranking.update(entry.userId, entry.points);
+        if (entry.userId.equals(currentUserId)) {
+          LeaderboardItem item = ranking.get(currentUserId);
+          showCurrentUserItem(new LeaderboardItem(currentUserId, profile.displayName(),
+              item.points, item.rank, profileImageUrl(profile)));
         }
-
-        // Firebase returns ascending, reverse for descending
-        Collections.reverse(userIds);
-
-        // Fetch user details for each user ID
-        DatabaseReference usersRef = FirebaseDatabase.getInstance().getReference("users");
-        usersRef.addListenerForSingleValueEvent(new ValueEventListener() {
-          @Override
-          public void onDataChange(@NonNull DataSnapshot usersSnap) {
-            for (String userId : userIds) {
-              String firstName = usersSnap.child(userId).child("firstname").getValue(String.class);
-              String lastName = usersSnap.child(userId).child("lastname").getValue(String.class);
-              String fullName = (firstName != null && lastName != null) ? firstName + " " + lastName
-                  : (firstName != null ? firstName : "User");
-              int points = pointsMap.get(userId);
-              String profileImageUrl = usersSnap.child(userId).child("profileImageUrl")
-                  .getValue(String.class);
-              tempList.add(new LeaderboardItem(userId, fullName, points, -1, profileImageUrl));
-            }
-
-            // Remove duplicates if any
-            Set<String> seen = new HashSet<>();
-            tempList.removeIf(item -> !seen.add(item.userId));
-
-            leaderboardList.addAll(tempList);
-
-            // Assign ranks to the leaderboard items
-            assignRanksToLeaderboard();
-
-            // Update the adapter with the new data
-            adapter.showLoading(false);
-            adapter.notifyDataSetChanged();
-            isLoading = false;
-
-            // Set the current user item from the fetched list
-            setCurrentUserItemFromList();
-          }
-
-          @Override
-          public void onCancelled(@NonNull DatabaseError error) {
-            isLoading = false;
-          }
-        });
       }
 
       @Override
-      public void onCancelled(@NonNull DatabaseError error) {
-        isLoading = false;
+      public void onEntryRemoved(String userId) {
+        // A user who drops out of the top still belongs in the pages loaded below it
+        if (!hasPagesBelowTop) {
+          ranking.remove(userId);
+        }
       }
     });
   }
 
   /**
-   * Assigns ranks to the leaderboard items based on their points. The items are sorted in
-   * descending order of points, and ranks are assigned accordingly.
+   * Loads the current user's points, rank and profile, which may lie far below the loaded pages,
+   * and shows them pinned above the list. The rank is counted on the server side by the bucket
+   * counts behind {@link RankService}, so no users above the current user are downloaded; if the
+   * user is already listed, the exact rank from the list is shown instead.
    */
-  private void assignRanksToLeaderboard() {
-    leaderboardList.sort((a, b) -> Integer.compare(b.points, a.points));
-
-    int prevPoints = -1;
-    int rank = 1;
-
-    for (int i = 0; i < leaderboardList.size(); i++) {
-      LeaderboardItem item = leaderboardList.get(i);
+  private void fetchCurrentUserItem() {
+    FirebaseDatabase.getInstance().getReference("userstats").child(currentUserId)
+        .addListenerForSingleValueEvent(SnapshotDecoder.listener(
+            UserStatsRecord::fromSnapshot,
+            stats -> {
+              if (stats == null) {
+                currentUserItem.setVisibility(View.GONE);
+                return;
+              }
+              LeaderboardItem listed = ranking.get(currentUserId);
+              if (listed != null) {
+                showCurrentUserItem(listed.points, listed.rank);
+                return;
+              }
+              RankService.getInstance().rankOf(stats.points,
+                  rank -> showCurrentUserItem(stats.points, rank), null);
+            },
+            null));
+  }
 
-      if (item.points != prevPoints) {
-        rank = i + 1;
-        prevPoints = item.points;
-      }
+  /**
+   * Loads the current user's profile and shows their item pinned above the leaderboard.
+   *
+   * @param points The points of the current user
+   * @param rank   The rank of the current user
+   */
+  private void showCurrentUserItem(int points, int rank) {
+    ProfileCache.getInstance().get(currentUserId,
+        profile -> showCurrentUserItem(new LeaderboardItem(currentUserId, profile.displayName(),
+            points, rank, profileImageUrl(profile))));
+  }
 
-      item.rank = rank;
-    }
+  /**
+   * Returns the URL of the profile image variant that fits a leaderboard row.
+   *
+   * @param profile The profile of the user
+   * @return The URL, or null if the user has no profile image
+   */
+  private String profileImageUrl(UserProfileRecord profile) {
+    return ImagePipeline.urlFor(this, profile.profileImage, LeaderboardAdapter.PROFILE_SIZE_DP);
   }
 
   /**
-   * Sets the current user's item in the leaderboard from the fetched list. It finds the current
-   * user by their Firebase user ID and updates the UI accordingly.
+   * Shows the current user's item pinned above the leaderboard.
+   *
+   * @param currentUser The leaderboard item of the current user
    */
-  private void setCurrentUserItemFromList() {
-    String currentUserId = Objects.requireNonNull(FirebaseAuth.getInstance().getCurrentUser())
-        .getUid();
-    LeaderboardItem currentUser = null;
-    int currentUserRank = -1;
-
-    for (LeaderboardItem item : leaderboardList) {
-      if (item.userId.equals(currentUserId)) {
-        currentUser = item;
-        currentUserRank = item.rank;
-        break;
-      }
-    }
+  private void showCurrentUserItem(LeaderboardItem currentUser) {
+    TextView rankView = currentUserItem.findViewById(R.id.rank);
+    TextView nameView = currentUserItem.findViewById(R.id.username);
+    TextView pointsView = currentUserItem.findViewById(R.id.tv_points);
+    ImageView profileView = currentUserItem.findViewById(R.id.profile);
 
-    // Update the current user item view
-    if (currentUser != null) {
-      TextView rankView = currentUserItem.findViewById(R.id.rank);
-      TextView nameView = currentUserItem.findViewById(R.id.username);
-      TextView pointsView = currentUserItem.findViewById(R.id.tv_points);
-      ImageView profileView = currentUserItem.findViewById(R.id.profile);
-
-      // Set the current user's rank, name, and points
-      rankView.setText("#" + currentUserRank);
-      nameView.setText(currentUser.username);
-      pointsView.setText(String.valueOf(currentUser.points));
-
-      // Load profile image
-      if (currentUser.profileImageUrl != null && !currentUser.profileImageUrl.isEmpty()) {
-        Glide.with(profileView.getContext())
-            .load(currentUser.profileImageUrl)
-            .placeholder(R.drawable.ic_profile_placeholder)
-            .error(R.drawable.ic_profile_placeholder)
-            .into(profileView);
-      } else {
-        profileView.setImageResource(R.drawable.ic_profile_placeholder);
-      }
+    // Set the current user's rank, name, and points
+    rankView.setText("#" + currentUser.rank);
+    nameView.setText(currentUser.username);
+    pointsView.setText(String.valueOf(currentUser.points));
 
-      // Show the current user item
-      currentUserItem.setVisibility(View.VISIBLE);
+    // Load profile image
+    if (currentUser.profileImageUrl != null && !currentUser.profileImageUrl.isEmpty()) {
+      Glide.with(profileView.getContext())
+          .load(currentUser.profileImageUrl)
+          .placeholder(R.drawable.ic_profile_placeholder)
+          .error(R.drawable.ic_profile_placeholder)
+          .into(profileView);
     } else {
-      // If the current user is not found in the leaderboard, hide the current user item
-      currentUserItem.setVisibility(View.GONE);
+      profileView.setImageResource(R.drawable.ic_profile_placeholder);
     }
+
+    // Show the current user item
+    currentUserItem.setVisibility(View.VISIBLE);
   }
-}
\ No newline at end of file
+}
@@ -6,6 +6,7 @@ import android.content.Intent;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.os.Bundle;
+import android.widget.Toast;
 import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
@@ -39,7 +40,10 @@ public class MainActivity extends AppCompatActivity {
   @Override
   protected void onResume() {
     super.onResume();
-    if (!isInternetAvailable()) {
+
+    // Signed-in users can start offline from the cached treasures, signing in needs a connection
+    FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+    if (user == null && !isInternetAvailable()) {
       showNoInternetDialog();
       return;
     }
@@ -47,8 +51,11 @@ public class MainActivity extends AppCompatActivity {
     // Ensure the activity is started only once
     if (!hasStarted) {
       hasStarted = true;
-      FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
       if (user != null) {
+        if (!isInternetAvailable()) {
+          Toast.makeText(this, "You're offline. Showing saved treasures.", Toast.LENGTH_SHORT)
+              .show();
+        }
         startActivity(new Intent(this, TreasureHuntActivity.class));
       } else {
         startActivity(new Intent(this, SignInActivity.class));
@@ -78,7 +85,7 @@ public class MainActivity extends AppCompatActivity {
   private void showNoInternetDialog() {
     new AlertDialog.Builder(this)
         .setTitle("No Internet Connection")
-        .setMessage("Internet is required to use this app. Please enable it or exit.")
+        .setMessage("Internet is required to sign in. Please enable it or exit.")
         .setPositiveButton("Settings", (dialog, which) -> {
           startActivity(new Intent(android.provider.Settings.ACTION_WIFI_SETTINGS));
         })
@@ -5,17 +5,16 @@ import android.os.Bundle;
 import android.view.View;
 import android.widget.TextView;
 import androidx.activity.EdgeToEdge;
-import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 import edu.northeastern.numad25su_group6.R;
 import edu.northeastern.numad25su_group6.adapters.TreasureListAdapter;
 import edu.northeastern.numad25su_group6.constants.DiscoveryDialogType;
+import edu.northeastern.numad25su_group6.data.SnapshotDecoder;
+import edu.northeastern.numad25su_group6.data.TreasureRecord;
 import edu.northeastern.numad25su_group6.pojo.Treasure;
 import java.util.ArrayList;
 import java.util.List;
@@ -64,34 +63,43 @@ public class MyTreasuresActivity extends BaseActivity {
     String userId = Objects.requireNonNull(FirebaseAuth.getInstance().getCurrentUser()).getUid();
     DatabaseReference treasuresRef = FirebaseDatabase.getInstance().getReference("treasures");
     treasuresRef.orderByChild("createdByUserId").equalTo(userId)
-        .addListenerForSingleValueEvent(new ValueEventListener() {
-          @Override
-          public void onDataChange(@NonNull DataSnapshot snapshot) {
-            treasures.clear();
-            treasureIds.clear();
-            for (DataSnapshot snap : snapshot.getChildren()) {
-              String treasureId = snap.getKey();
-              String title = snap.child("title").getValue(String.class);
-              String imageUrl = snap.child("imageUrl").getValue(String.class);
-              String description = snap.child("description").getValue(String.class);
-              treasures.add(new Treasure(title, description, imageUrl));
-              treasureIds.add(treasureId);
-            }
-            adapter.notifyDataSetChanged();
+        .addListenerForSingleValueEvent(SnapshotDecoder.listener(
+            MyTreasuresActivity::decodeTreasures,
+            records -> {
+              treasures.clear();
+              treasureIds.clear();
+              for (TreasureRecord record : records) {
+                treasures.add(new Treasure(record.title, record.description, record.image));
+                treasureIds.add(record.id);
+              }
+              adapter.notifyDataSetChanged();
 
-            // Show or hide the no records text based on whether treasures are found
-            if (treasures.isEmpty()) {
-              noRecordsText.setVisibility(View.VISIBLE);
-              recyclerView.setVisibility(View.GONE);
-            } else {
-              noRecordsText.setVisibility(View.GONE);
-              recyclerView.setVisibility(View.VISIBLE);
-            }
-          }
+              // Show or hide the no records text based on whether treasures are found
+              if (treasures.isEmpty()) {
+                noRecordsText.setVisibility(View.VISIBLE);
+                recyclerView.setVisibility(View.GONE);
+              } else {
+                noRecordsText.setVisibility(View.GONE);
+                recyclerView.setVisibility(View.VISIBLE);
+              }
+            },
+            null));
+  }
 
-          @Override
-          public void onCancelled(@NonNull DatabaseError error) {
-          }
-        });
+  /**
+   * Decodes the user's treasures. Runs on the decoder thread.
+   *
+   * @param snapshot Snapshot of the treasures created by the user
+   * @return The decoded treasures
+   */
+  private static List<TreasureRecord> decodeTreasures(DataSnapshot snapshot) {
+    List<TreasureRecord> records = new ArrayList<>();
+    for (DataSnapshot snap : snapshot.getChildren()) {
+      TreasureRecord record = TreasureRecord.fromSnapshot(snap);
+      if (record != null) {
+        records.add(record);
+      }
+    }
+    return records;
   }
 }
\ No newline at end of file
@@ -9,14 +9,15 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 import edu.northeastern.numad25su_group6.R;
 import edu.northeastern.numad25su_group6.adapters.TreasureListAdapter;
 import edu.northeastern.numad25su_group6.constants.DiscoveryDialogType;
+import edu.northeastern.numad25su_group6.data.BookmarkStore;
+import edu.northeastern.numad25su_group6.data.SnapshotDecoder;
+import edu.northeastern.numad25su_group6.data.TreasureRecord;
+import edu.northeastern.numad25su_group6.images.ImageVariants;
 import edu.northeastern.numad25su_group6.pojo.Treasure;
 import java.util.ArrayList;
 import java.util.List;
@@ -33,11 +34,19 @@ public class SavedTreasuresActivity extends BaseActivity {
   private TextView noRecordsText;
   private TreasureListAdapter adapter;
   private final List<Treasure> treasures = new ArrayList<>();
-  private DatabaseReference savedRef;
+  private BookmarkStore bookmarkStore;
   private DatabaseReference treasuresRef;
-  private String userId;
   private final List<String> treasureIds = new ArrayList<>();
 
+  // Saved treasures are loaded page by page while scrolling
+  private static final int PAGE_SIZE = 20;
+  private static final int PREFETCH_DISTANCE = 5;
+  private BookmarkStore.Page lastPage;
+  private boolean isLoading = false;
+
+  // Incremented on every reload, so results for an older list are dropped
+  private int generation = 0;
+
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
@@ -56,9 +65,21 @@ public class SavedTreasuresActivity extends BaseActivity {
     });
     recyclerView.setAdapter(adapter);
 
+    // Load the next page when the end of the list comes into view
+    recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+      @Override
+      public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) view.getLayoutManager();
+        if (layoutManager != null && layoutManager.findLastVisibleItemPosition()
+            >= treasures.size() - PREFETCH_DISTANCE) {
+          loadNextPage();
+        }
+      }
+    });
+
     // Get current user ID and database references
-    userId = Objects.requireNonNull(FirebaseAuth.getInstance().getCurrentUser()).getUid();
-    savedRef = FirebaseDatabase.getInstance().getReference("savedTreasures");
+    String userId = Objects.requireNonNull(FirebaseAuth.getInstance().getCurrentUser()).getUid();
+    bookmarkStore = new BookmarkStore(userId);
     treasuresRef = FirebaseDatabase.getInstance().getReference("treasures");
 
     // Load saved treasures from the database
@@ -66,58 +87,113 @@ public class SavedTreasuresActivity extends BaseActivity {
   }
 
   /**
-   * Fetches the saved treasures for the current user from Firebase Realtime Database. The treasures
-   * are filtered by the user's ID and displayed in the RecyclerView.
+   * Reloads the saved treasures of the current user from the first page.
+   */
+  private void fetchSavedTreasures() {
+    generation++;
+    lastPage = null;
+    isLoading = false;
+    treasures.clear();
+    treasureIds.clear();
+    adapter.notifyDataSetChanged();
+    loadNextPage();
+  }
+
+  /**
+   * Updates the list after a bookmark was changed from the treasure dialog. The change is still
+   * in the outbox, so the list is updated locally instead of reloaded. A removed treasure is taken
+   * out of the list; a saved one belongs at the end, so it is appended once every page is shown.
+   *
+   * @param treasureId The ID of the treasure
+   * @param bookmarked Whether the treasure is now saved
+   */
+  void onBookmarkChanged(String treasureId, boolean bookmarked) {
+    int position = treasureIds.indexOf(treasureId);
+    if (!bookmarked && position >= 0) {
+      treasureIds.remove(position);
+      treasures.remove(position);
+      adapter.notifyItemRemoved(position);
+      adapter.notifyItemRangeChanged(position, treasures.size() - position);
+    } else if (bookmarked && position < 0 && lastPage != null && !lastPage.hasMore) {
+      treasureIds.add(treasureId);
+      treasures.add(new Treasure(null, null, ImageVariants.NONE));
+      adapter.notifyItemInserted(treasures.size() - 1);
+      loadTreasure(treasureId, treasures.size() - 1, generation);
+    }
+    updateEmptyState();
+  }
+
+  /**
+   * Loads the next page of saved treasures, in the order they were saved, and appends it to the
+   * list. Each treasure is shown as a placeholder until its details are loaded.
    */
-  protected void fetchSavedTreasures() {
-    savedRef.orderByChild("userId").equalTo(userId)
-        .addListenerForSingleValueEvent(new ValueEventListener() {
-          @Override
-          public void onDataChange(@NonNull DataSnapshot snapshot) {
-            treasures.clear();
-            treasureIds.clear();
-            if (!snapshot.hasChildren()) {
-              noRecordsText.setVisibility(View.VISIBLE);
-              recyclerView.setVisibility(View.GONE);
-              adapter.notifyDataSetChanged();
-              return;
-            }
-            for (DataSnapshot savedSnap : snapshot.getChildren()) {
-              String treasureId = savedSnap.child("treasureId").getValue(String.class);
-              if (treasureId == null) {
-                continue;
-              }
-              treasuresRef.child(treasureId)
-                  .addListenerForSingleValueEvent(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot treasureSnap) {
-                      String title = treasureSnap.child("title").getValue(String.class);
-                      String imageUrl = treasureSnap.child("imageUrl").getValue(String.class);
-                      String description = treasureSnap.child("description").getValue(String.class);
-                      treasures.add(new Treasure(title, description, imageUrl));
-                      treasureIds.add(treasureId);
-                      adapter.notifyDataSetChanged();
-
-                      // Show or hide the no records text based on whether treasures are found
-                      if (treasures.isEmpty()) {
-                        noRecordsText.setVisibility(View.VISIBLE);
-                        recyclerView.setVisibility(View.GONE);
-                      } else {
-                        noRecordsText.setVisibility(View.GONE);
-                        recyclerView.setVisibility(View.VISIBLE);
-                      }
-                    }
-
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError error) {
-                    }
-                  });
-            }
+  private void loadNextPage() {
+    if (isLoading || (lastPage != null && !lastPage.hasMore)) {
+      return;
+    }
+    isLoading = true;
+    int pageGeneration = generation;
+    bookmarkStore.loadPage(lastPage, PAGE_SIZE, page -> {
+      // Drop pages of a list that was reloaded in the meantime
+      if (pageGeneration != generation) {
+        return;
+      }
+      lastPage = page;
+      isLoading = false;
+      int start = treasures.size();
+      for (String treasureId : page.treasureIds) {
+        treasures.add(new Treasure(null, null, ImageVariants.NONE));
+        treasureIds.add(treasureId);
+      }
+      adapter.notifyItemRangeInserted(start, page.treasureIds.size());
+      updateEmptyState();
+
+      for (int i = 0; i < page.treasureIds.size(); i++) {
+        loadTreasure(page.treasureIds.get(i), start + i, pageGeneration);
+      }
+    }, error -> {
+      if (pageGeneration == generation) {
+        isLoading = false;
+      }
+    });
+  }
+
+  /**
+   * Loads the details of a saved treasure into its placeholder.
+   *
+   * @param treasureId     The ID of the treasure
+   * @param position       The position of the placeholder when the load started
+   * @param loadGeneration The list generation the placeholder belongs to
+   */
+  private void loadTreasure(String treasureId, int position, int loadGeneration) {
+    treasuresRef.child(treasureId).addListenerForSingleValueEvent(
+        SnapshotDecoder.listener(TreasureRecord::fromSnapshot, record -> {
+          if (loadGeneration != generation || record == null) {
+            return;
           }
 
-          @Override
-          public void onCancelled(@NonNull DatabaseError error) {
+          // Rows above may have been removed in the meantime
+          int current = position < treasureIds.size()
+              && treasureId.equals(treasureIds.get(position))
+              ? position : treasureIds.indexOf(treasureId);
+          if (current < 0) {
+            return;
           }
-        });
+          treasures.set(current, new Treasure(record.title, record.description, record.image));
+          adapter.notifyItemChanged(current);
+        }, null));
+  }
+
+  /**
+   * Shows or hides the no records text based on whether treasures are found.
+   */
+  private void updateEmptyState() {
+    if (treasures.isEmpty()) {
+      noRecordsText.setVisibility(View.VISIBLE);
+      recyclerView.setVisibility(View.GONE);
+    } else {
+      noRecordsText.setVisibility(View.GONE);
+      recyclerView.setVisibility(View.VISIBLE);
+    }
   }
-}
\ No newline at end of file
+}
@@ -24,6 +24,8 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.database.DatabaseReference;
@@ -31,7 +33,14 @@ import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.storage.FirebaseStorage;
 import com.google.firebase.storage.StorageReference;
 import edu.northeastern.numad25su_group6.R;
+import edu.northeastern.numad25su_group6.data.LeaderboardMaintainer;
+import edu.northeastern.numad25su_group6.images.ImagePipeline;
+import edu.northeastern.numad25su_group6.images.ImageVariants;
 import edu.northeastern.numad25su_group6.pojo.User;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -272,7 +281,7 @@ public class SignUpActivity extends AppCompatActivity {
               if (selectedImageUri != null) {
                 uploadProfileImageAndSaveUser(uid, first, last, emailText);
               } else {
-                saveUserToDatabase(uid, first, last, emailText, null);
+                saveUserToDatabase(uid, first, last, emailText, ImageVariants.NONE);
               }
             }
           } else {
@@ -291,8 +300,9 @@ public class SignUpActivity extends AppCompatActivity {
   }
 
   /**
-   * This method uploads the selected profile image to Firebase Storage and saves the user data in
-   * Firebase Realtime Database.
+   * This method compresses the selected profile image into every variant size in the background,
+   * uploads the variants to Firebase Storage and saves the user data in Firebase Realtime
+   * Database.
    *
    * @param uid       The unique identifier of the user.
    * @param first     The first name of the user.
@@ -301,30 +311,48 @@ public class SignUpActivity extends AppCompatActivity {
    */
   private void uploadProfileImageAndSaveUser(String uid, String first, String last,
       String emailText) {
-    StorageReference imgRef = storageRef.child(uid + ".jpg");
-    imgRef.putFile(selectedImageUri)
-        .addOnSuccessListener(taskSnapshot -> imgRef.getDownloadUrl().addOnSuccessListener(uri -> {
-          saveUserToDatabase(uid, first, last, emailText, uri.toString());
-        }))
-        .addOnFailureListener(e -> {
-          hideLoadingDialog();
-          Toast.makeText(this, "Image upload failed", Toast.LENGTH_SHORT).show();
-          saveUserToDatabase(uid, first, last, emailText, null);
-        });
+    ImagePipeline.compressAsync(this, selectedImageUri, variants -> {
+      if (variants == null) {
+        hideLoadingDialog();
+        Toast.makeText(this, "Image upload failed", Toast.LENGTH_SHORT).show();
+        saveUserToDatabase(uid, first, last, emailText, ImageVariants.NONE);
+        return;
+      }
+
+      // Upload every size in parallel, the download URLs arrive in size order
+      List<Task<Uri>> uploads = new ArrayList<>();
+      for (ImageVariants.Size size : ImageVariants.Size.values()) {
+        StorageReference imgRef = storageRef.child(uid + size.fileSuffix + ".jpg");
+        uploads.add(imgRef.putBytes(variants.get(size))
+            .onSuccessTask(taskSnapshot -> imgRef.getDownloadUrl()));
+      }
+      Tasks.<Uri>whenAllSuccess(uploads)
+          .addOnSuccessListener(urls -> saveUserToDatabase(uid, first, last, emailText,
+              new ImageVariants(urls.get(0).toString(), urls.get(1).toString(),
+                  urls.get(2).toString())))
+          .addOnFailureListener(e -> {
+            hideLoadingDialog();
+            Toast.makeText(this, "Image upload failed", Toast.LENGTH_SHORT).show();
+            saveUserToDatabase(uid, first, last, emailText, ImageVariants.NONE);
+          });
+    });
   }
 
   /**
    * This method saves the user profile information in Firebase Realtime Database.
    *
-   * @param uid       The unique identifier of the user.
-   * @param first     The first name of the user.
-   * @param last      The last name of the user.
-   * @param emailText The email address of the user.
-   * @param imageUrl  The URL of the user's profile image, or null if no image was selected.
+   * @param uid          The unique identifier of the user.
+   * @param first        The first name of the user.
+   * @param last         The last name of the user.
+   * @param emailText    The email address of the user.
+   * @param profileImage The variants of the user's profile image, empty if no image was selected.
    */
   private void saveUserToDatabase(String uid, String first, String last, String emailText,
-      String imageUrl) {
-    User userProfile = new User(first, last, emailText, imageUrl);
+      ImageVariants profileImage) {
+    User userProfile = new User(first, last, emailText,
+        profileImage.get(ImageVariants.Size.FULL));
+    userProfile.setProfileImageUrlSmall(profileImage.get(ImageVariants.Size.SMALL));
+    userProfile.setProfileImageUrlMedium(profileImage.get(ImageVariants.Size.MEDIUM));
     usersRef.child(uid).setValue(userProfile)
         .addOnCompleteListener(dbTask -> {
           hideLoadingDialog();
@@ -339,17 +367,20 @@ public class SignUpActivity extends AppCompatActivity {
   }
 
   /**
-   * This method adds user statistics to the Firebase Realtime Database.
+   * This method adds user statistics to the Firebase Realtime Database. Statistics are keyed by
+   * the user's ID so they can be read directly, and the new user is counted in the leaderboard
+   * buckets in the same write.
    *
    * @param uid The unique identifier of the user.
    */
   private void addUserStats(String uid) {
-    DatabaseReference statsRef = FirebaseDatabase.getInstance().getReference("userstats");
-    String statsId = statsRef.push().getKey();
-    if (statsId != null) {
-      statsRef.child(statsId).child("points").setValue(0);
-      statsRef.child(statsId).child("userid").setValue(uid);
-    }
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("points", 0);
+    stats.put("userid", uid);
+    Map<String, Object> updates = new HashMap<>();
+    LeaderboardMaintainer.addNewUserUpdates(updates, stats);
+    updates.put("userstats/" + uid, stats);
+    FirebaseDatabase.getInstance().getReference().updateChildren(updates);
   }
 
   /**
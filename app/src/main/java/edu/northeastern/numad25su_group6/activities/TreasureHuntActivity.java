@@ -5,21 +5,18 @@ import static edu.northeastern.numad25su_group6.constants.Constants.PICK_IMAGE_R
 import android.Manifest;
 import android.app.AlertDialog;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.drawable.Drawable;
 import android.location.Location;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
-import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.text.format.DateFormat;
 import android.view.LayoutInflater;
 import android.view.View;
-import android.view.animation.BounceInterpolator;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageView;
@@ -32,6 +29,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.core.os.BundleCompat;
 
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.DataSource;
@@ -39,13 +37,15 @@ import com.bumptech.glide.load.engine.GlideException;
 import com.bumptech.glide.request.target.Target;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.BitmapDescriptor;
-import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.CameraPosition;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
 import com.google.android.material.card.MaterialCardView;
@@ -57,19 +57,46 @@ import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
-
-import android.view.animation.Interpolator;
 
 import edu.northeastern.numad25su_group6.R;
 import edu.northeastern.numad25su_group6.constants.Constants;
 
 import edu.northeastern.numad25su_group6.constants.DiscoveryDialogType;
+import edu.northeastern.numad25su_group6.data.BookmarkStore;
+import edu.northeastern.numad25su_group6.data.DiscoveredTreasuresStore;
+import edu.northeastern.numad25su_group6.data.DiscoveryCommitter;
+import edu.northeastern.numad25su_group6.data.LocalTreasureStore;
+import edu.northeastern.numad25su_group6.data.TreasureRecord;
+import edu.northeastern.numad25su_group6.images.CameraCapture;
+import edu.northeastern.numad25su_group6.images.ImagePipeline;
+import edu.northeastern.numad25su_group6.images.ImageVariants;
+import edu.northeastern.numad25su_group6.location.TreasureLocationTracker;
+import edu.northeastern.numad25su_group6.map.MarkerBounceAnimator;
+import edu.northeastern.numad25su_group6.map.MarkerIconCache;
+import edu.northeastern.numad25su_group6.map.TreasureClusterEngine;
+import edu.northeastern.numad25su_group6.map.TreasureMarkerStore;
+import edu.northeastern.numad25su_group6.map.TreasureSpatialIndex;
+import edu.northeastern.numad25su_group6.map.TreasureViewportLoader;
+import edu.northeastern.numad25su_group6.migrations.GeoHashBackfill;
+import edu.northeastern.numad25su_group6.migrations.LeaderboardBackfill;
+import edu.northeastern.numad25su_group6.migrations.MigrationLease;
+import edu.northeastern.numad25su_group6.migrations.SavedTreasuresRekey;
+import edu.northeastern.numad25su_group6.migrations.UserDiscoveriesBackfill;
+import edu.northeastern.numad25su_group6.migrations.UserStatsCountersBackfill;
+import edu.northeastern.numad25su_group6.migrations.UserStatsRekey;
+import edu.northeastern.numad25su_group6.sync.Outbox;
+import edu.northeastern.numad25su_group6.sync.OutboxWorker;
+import edu.northeastern.numad25su_group6.utils.GeoHash;
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * TreasureHuntActivity allows users to find, add, and manage treasures on a map. It integrates
@@ -92,14 +119,60 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
           };
   private static final float DEFAULT_ZOOM = 15f;
   private static final float DISCOVERY_RADIUS_METERS = 20f;
+
+  // Preferences holding the last camera position
+  private static final String MAP_PREFS_NAME = "map_state";
+  private static final String KEY_CAMERA_LAT = "camera_lat";
+  private static final String KEY_CAMERA_LNG = "camera_lng";
+  private static final String KEY_CAMERA_ZOOM = "camera_zoom";
+
+  // Saved state of the treasure being added, which survives the camera app ending the process
+  private static final String STATE_PENDING_CAPTURE = "pending_capture";
+  private static final String STATE_SELECTED_IMAGE = "selected_image";
+  private static final String STATE_TITLE = "treasure_title";
+  private static final String STATE_DESCRIPTION = "treasure_description";
   private GoogleMap mMap;
   private FloatingActionButton btnAddTreasure, btnMyTreasures;
 
-  // Firebase references for treasures, discoveries, and saved treasures
-  private DatabaseReference treasuresRef, discoveriesRef, savedTreasuresRef;
+  // Firebase reference for treasures, and the current user's bookmarks
+  private DatabaseReference treasuresRef;
+  private BookmarkStore bookmarkStore;
   private FirebaseUser user;
   private FusedLocationProviderClient fusedLocationClient;
-  private StorageReference storageReference;
+
+  // Loads treasures for the visible map area only
+  private TreasureViewportLoader viewportLoader;
+
+  // Markers on the map keyed by treasure ID, and the shared icons they use
+  private TreasureMarkerStore markerStore;
+  private MarkerIconCache iconCache;
+
+  // Loaded treasures, the clustering engine over them, and cluster markers keyed by cell
+  private final Map<String, TreasureInfo> loadedTreasures = new HashMap<>();
+  private final TreasureClusterEngine clusterEngine = new TreasureClusterEngine();
+  private final Map<String, Marker> clusterMarkers = new HashMap<>();
+
+  // Spatial index over loaded treasures for radius and nearest treasure queries
+  private final TreasureSpatialIndex spatialIndex = new TreasureSpatialIndex();
+  private final Handler renderHandler = new Handler();
+  private boolean renderScheduled = false;
+
+  // Drives the bounce of all visible markers from one frame callback
+  private final MarkerBounceAnimator bounceAnimator = new MarkerBounceAnimator();
+
+  // Treasures discovered by the current user, kept live for the session
+  private DiscoveredTreasuresStore discoveredStore;
+
+  // Journals discoveries, bookmarks and new treasures until they are sent
+  private Outbox outbox;
+
+  // Location stream that tells the user when a treasure is within the discovery radius
+  private TreasureLocationTracker locationTracker;
+
+  // Treasures, discoveries and bookmarks cached on the device, and the cached treasures shown on
+  // the map that the live data has not confirmed yet
+  private LocalTreasureStore localStore;
+  private final Set<String> cachedOnlyTreasureIds = new HashSet<>();
 
   // Flags to track map readiness and location permissions
   private boolean isMapReady = false;
@@ -107,13 +180,21 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
 
   // Uri for selected image from gallery or camera
   private Uri selectedImageUri;
+
+  // File the camera app writes the photo being taken to
+  private File pendingCapture;
   private ImageView imgPreview;
+
+  // Add-treasure dialog and its inputs, whose text is saved with the instance state
+  private AlertDialog addTreasureDialog;
+  private EditText etTitle, etDesc;
   private AlertDialog loadingDialog;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_treasure_hunt);
+    getLifecycle().addObserver(bounceAnimator);
     setupToolbarWithProfile();
     setupDrawerWithHamburger();
     setupNavigationView();
@@ -122,6 +203,9 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
     setupMapFragment();
     setupClickListeners();
     requestAllNecessaryPermissions();
+    if (savedInstanceState != null) {
+      restoreAddTreasureState(savedInstanceState);
+    }
 
     // Exit confirmation on back press
     getOnBackPressedDispatcher().addCallback(this, new OnBackPressedCallback(true) {
@@ -142,15 +226,82 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
    */
   private void initializeComponents() {
     treasuresRef = FirebaseDatabase.getInstance().getReference("treasures");
-    discoveriesRef = FirebaseDatabase.getInstance().getReference("discoveries");
-    savedTreasuresRef = FirebaseDatabase.getInstance().getReference("savedTreasures");
     fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
-    storageReference = FirebaseStorage.getInstance().getReference();
 
     btnAddTreasure = findViewById(R.id.btnAddTreasure);
     btnMyTreasures = findViewById(R.id.btnMyTreasures);
 
     user = FirebaseAuth.getInstance().getCurrentUser();
+    discoveredStore = new DiscoveredTreasuresStore(user.getUid(),
+        new DiscoveredTreasuresStore.Listener() {
+          @Override
+          public void onDiscoveriesLoaded() {
+            // Nearby treasures can only be told apart from discovered ones from now on
+            locationTracker.recheck();
+          }
+
+          @Override
+          public void onTreasureDiscovered(String treasureId) {
+            localStore.putDiscovery(user.getUid(), treasureId, discoveredStore.get(treasureId));
+
+            // Switch the marker icon once the discovery is known
+            Marker marker = markerStore != null ? markerStore.get(treasureId) : null;
+            if (marker != null) {
+              marker.setIcon(iconCache.get(MarkerIconCache.Icon.DISCOVERED));
+            }
+          }
+        });
+    discoveredStore.start();
+
+    outbox = Outbox.getInstance(this);
+
+    // Send anything journaled in an earlier session that was not sent yet
+    OutboxWorker.schedule(this);
+    bookmarkStore = new BookmarkStore(user.getUid());
+
+    // Show cached discoveries until the live ones arrive
+    localStore = LocalTreasureStore.getInstance(this);
+    localStore.loadDiscoveries(user.getUid(), cached -> {
+      discoveredStore.seed(cached);
+      if (markerStore != null) {
+        for (Marker marker : markerStore.markers()) {
+          TreasureInfo info = (TreasureInfo) marker.getTag();
+          marker.setIcon(getMarkerIcon(info.treasureId, info.createdByUserId));
+        }
+      }
+    });
+
+    locationTracker = new TreasureLocationTracker(this, spatialIndex,
+        this::isUndiscoveredByUser, DISCOVERY_RADIUS_METERS,
+        this::onTreasureInRange);
+    getLifecycle().addObserver(locationTracker);
+
+    // Every device migrates its own user, only the lease holder scans whole nodes
+    MigrationLease.acquire(this, user.getUid(), held -> {
+      // Older statistics are stored under push keys instead of the user ID
+      UserStatsRekey.runOnce(this, user.getUid(), held);
+
+      // Older discoveries are missing from the per-user discovery index
+      UserDiscoveriesBackfill.runOnce(this, user.getUid(), held);
+      if (!held) {
+        return;
+      }
+
+      // Older treasures need a geohash to show up in viewport queries
+      GeoHashBackfill.runOnce(this);
+
+      // Older bookmarks are stored as push-keyed rows instead of per user
+      SavedTreasuresRekey.runOnce(this);
+
+      // Points written before the leaderboard was materialized are missing from it
+      LeaderboardBackfill.runOnce(this);
+
+      // Discoveries and treasures written before the per-user counters existed are not counted
+      UserStatsCountersBackfill.runOnce(this);
+    });
+
+    // Photos of sessions that ended while the camera was open are never picked up
+    CameraCapture.deleteStale(this);
   }
 
   /**
@@ -223,12 +374,25 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
   public void onMapReady(@NonNull GoogleMap googleMap) {
     mMap = googleMap;
     isMapReady = true;
+    iconCache = new MarkerIconCache(getResources());
+    iconCache.preload();
 
     if (hasLocationPermission()) {
       enableMyLocationOnMap();
     }
 
+    // Start where the user left off and show cached treasures before live data arrives
+    restoreCameraPosition();
     loadTreasuresFromRealtimeDB();
+    localStore.loadTreasures(cached -> {
+      for (TreasureRecord treasure : cached) {
+        if (!loadedTreasures.containsKey(treasure.id)) {
+          cachedOnlyTreasureIds.add(treasure.id);
+          addOrUpdateTreasure(treasure);
+        }
+      }
+    });
+    mMap.setOnCameraIdleListener(this::onCameraIdle);
 
     // Handle marker clicks
     mMap.setOnMarkerClickListener(marker -> {
@@ -237,6 +401,94 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
     });
   }
 
+  /**
+   * Reloads the treasures for the visible area once the camera stops moving.
+   */
+  private void onCameraIdle() {
+    if (viewportLoader != null) {
+      viewportLoader.onViewportChanged(mMap.getProjection().getVisibleRegion().latLngBounds);
+    }
+    bounceAnimator.setVisibleBounds(mMap.getProjection().getVisibleRegion().latLngBounds);
+    renderClusters();
+    saveCameraPosition(mMap.getCameraPosition());
+  }
+
+  /**
+   * Moves the camera to the position saved when the map was last idle, if any.
+   */
+  private void restoreCameraPosition() {
+    SharedPreferences prefs = getSharedPreferences(MAP_PREFS_NAME, MODE_PRIVATE);
+    if (!prefs.contains(KEY_CAMERA_LAT)) {
+      return;
+    }
+    LatLng target = new LatLng(prefs.getFloat(KEY_CAMERA_LAT, 0),
+        prefs.getFloat(KEY_CAMERA_LNG, 0));
+    mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(target,
+        prefs.getFloat(KEY_CAMERA_ZOOM, DEFAULT_ZOOM)));
+  }
+
+  /**
+   * Saves the camera position so the next launch starts at the same place.
+   *
+   * @param position The current camera position
+   */
+  private void saveCameraPosition(CameraPosition position) {
+    getSharedPreferences(MAP_PREFS_NAME, MODE_PRIVATE).edit()
+        .putFloat(KEY_CAMERA_LAT, (float) position.target.latitude)
+        .putFloat(KEY_CAMERA_LNG, (float) position.target.longitude)
+        .putFloat(KEY_CAMERA_ZOOM, position.zoom)
+        .apply();
+  }
+
+  @Override
+  protected void onSaveInstanceState(@NonNull Bundle outState) {
+    super.onSaveInstanceState(outState);
+    if (pendingCapture != null) {
+      outState.putString(STATE_PENDING_CAPTURE, pendingCapture.getAbsolutePath());
+    }
+    if (selectedImageUri != null) {
+      outState.putParcelable(STATE_SELECTED_IMAGE, selectedImageUri);
+    }
+    if (addTreasureDialog != null && addTreasureDialog.isShowing()) {
+      outState.putString(STATE_TITLE, etTitle.getText().toString());
+      outState.putString(STATE_DESCRIPTION, etDesc.getText().toString());
+    }
+  }
+
+  /**
+   * Restores the treasure being added after the activity was recreated, e.g. because the process
+   * was ended while the camera app was open. The dialog is shown again with the text typed so far
+   * and the selected image, and the photo being taken is picked up when the camera app returns.
+   *
+   * @param savedInstanceState The state saved by {@link #onSaveInstanceState}
+   */
+  private void restoreAddTreasureState(Bundle savedInstanceState) {
+    String capturePath = savedInstanceState.getString(STATE_PENDING_CAPTURE);
+    if (capturePath != null) {
+      pendingCapture = new File(capturePath);
+    }
+    String title = savedInstanceState.getString(STATE_TITLE);
+    if (title != null) {
+      openAddTreasureDialog();
+      etTitle.setText(title);
+      etDesc.setText(savedInstanceState.getString(STATE_DESCRIPTION));
+    }
+    Uri imageUri = BundleCompat.getParcelable(savedInstanceState, STATE_SELECTED_IMAGE, Uri.class);
+    if (imageUri != null) {
+      selectImage(imageUri);
+    }
+  }
+
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    if (viewportLoader != null) {
+      viewportLoader.stop();
+    }
+    renderHandler.removeCallbacksAndMessages(null);
+    discoveredStore.stop();
+  }
+
   /**
    * Enables the My Location layer on the map and moves the camera to the current location.
    */
@@ -276,8 +528,15 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
       return;
     }
 
+    // Reuse the tracked fix when it is recent, otherwise ask for a fresh one
+    Location fresh = locationTracker.getFreshLocation();
+    if (fresh != null) {
+      callback.onLocationReceived(fresh);
+      return;
+    }
+
     try {
-      fusedLocationClient.getLastLocation()
+      fusedLocationClient.getCurrentLocation(Priority.PRIORITY_HIGH_ACCURACY, null)
           .addOnSuccessListener(callback::onLocationReceived)
           .addOnFailureListener(e -> {
             showToast("Unable to fetch location: " + e.getMessage());
@@ -298,10 +557,14 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
     View dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_add_treasure, null);
     builder.setView(dialogView);
 
-    EditText etTitle = dialogView.findViewById(R.id.etTreasureTitle);
-    EditText etDesc = dialogView.findViewById(R.id.etTreasureDesc);
+    etTitle = dialogView.findViewById(R.id.etTreasureTitle);
+    etDesc = dialogView.findViewById(R.id.etTreasureDesc);
     imgPreview = dialogView.findViewById(R.id.imgPreview);
 
+    // A photo taken for a dialog that was dismissed without saving is no longer needed
+    CameraCapture.release(this, selectedImageUri);
+    selectedImageUri = null;
+
     // Set up image preview with a default image
     imgPreview.post(() -> {
       imgPreview.animate()
@@ -336,19 +599,36 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
 
     // Set up click listener for camera button
     btnCameraImage.setOnClickListener(v -> {
+      pendingCapture = CameraCapture.createFile(this);
+      if (pendingCapture == null) {
+        showToast("Unable to open the camera");
+        return;
+      }
       Intent intent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
+      intent.putExtra(MediaStore.EXTRA_OUTPUT, CameraCapture.outputUri(this, pendingCapture));
+      intent.addFlags(Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
       startActivityForResult(intent, Constants.CAMERA_REQUEST);
     });
 
     // Create and show the dialog
     AlertDialog dialog = builder.create();
+    addTreasureDialog = dialog;
+
+    // Inputs of this dialog, the fields always point to the newest one
+    EditText titleInput = etTitle;
+    EditText descInput = etDesc;
     btnSave.setOnClickListener(v -> {
-      handleSaveTreasureWithImage(etTitle, etDesc, selectedImageUri);
+      handleSaveTreasureWithImage(titleInput, descInput, selectedImageUri);
+      selectedImageUri = null;
       dialog.dismiss();
     });
 
-    // Set up cancel button to dismiss the dialog
-    btnCancel.setOnClickListener(v -> dialog.dismiss());
+    // Set up cancel button to dismiss the dialog, a photo taken for it is no longer needed
+    btnCancel.setOnClickListener(v -> {
+      CameraCapture.release(this, selectedImageUri);
+      selectedImageUri = null;
+      dialog.dismiss();
+    });
     Objects.requireNonNull(dialog.getWindow())
         .setBackgroundDrawableResource(android.R.color.transparent);
 
@@ -378,71 +658,39 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
 
     // Get the current location before saving the treasure
     getCurrentLocation(location -> {
+      hideLoadingDialog();
       if (location != null) {
-        if (imageUri != null) {
-          uploadImageToFirebase(imageUri, url -> {
-            saveTreasureToRealtimeDB(title, desc, location, url);
-          });
-        } else {
-          saveTreasureToRealtimeDB(title, desc, location, null);
-        }
+        saveTreasure(title, desc, location, imageUri);
       } else {
-        hideLoadingDialog();
         showToast("Unable to get location");
       }
     });
   }
 
   /**
-   * Uploads the selected image to Firebase Storage and invokes the callback with the image URL.
-   *
-   * @param imageUri Uri of the image to upload
-   * @param callback Callback to handle the uploaded image URL
-   */
-  private void uploadImageToFirebase(Uri imageUri, OnImageUploadCallback callback) {
-    String fileName = "treasure_images/" + System.currentTimeMillis() + ".jpg";
-    StorageReference fileRef = storageReference.child(fileName);
-
-    fileRef.putFile(imageUri)
-        .addOnSuccessListener(taskSnapshot -> fileRef.getDownloadUrl()
-            .addOnSuccessListener(uri -> callback.onImageUploaded(uri.toString())))
-        .addOnFailureListener(e -> showToast("Image upload failed: " + e.getMessage()));
-  }
-
-  /**
-   * Saves the treasure details to Firebase Realtime Database.
+   * Journals the new treasure in the outbox, which uploads the image and saves the treasure once
+   * online, and shows the treasure on the map right away.
    *
    * @param title    Title of the treasure
    * @param desc     Description of the treasure
    * @param location Location of the treasure
-   * @param imageUrl Optional image URL of the treasure
+   * @param imageUri Optional Uri of the treasure image
    */
-  private void saveTreasureToRealtimeDB(String title, String desc, Location location,
-      @Nullable String imageUrl) {
+  private void saveTreasure(String title, String desc, Location location,
+      @Nullable Uri imageUri) {
     String userId = user.getUid();
     String treasureId = treasuresRef.push().getKey();
     if (treasureId == null) {
-      hideLoadingDialog();
       showToast("Error creating treasure");
       return;
     }
 
     // Create a map to hold the treasure details
     Map<String, Object> treasure = createTreasureMap(title, desc, location, userId);
-    if (imageUrl != null) {
-      treasure.put("imageUrl", imageUrl);
-    }
-
-    // Save the treasure to Firebase Realtime Database
-    treasuresRef.child(treasureId).setValue(treasure)
-        .addOnSuccessListener(aVoid -> {
-          hideLoadingDialog();
-          showToast("Treasure Added Successfully!");
-        })
-        .addOnFailureListener(e -> {
-          hideLoadingDialog();
-          showToast("Error adding treasure: " + e.getMessage());
-        });
+    outbox.enqueueTreasure(treasureId, treasure, imageUri);
+    addOrUpdateTreasure(new TreasureRecord(treasureId, title, desc, ImageVariants.NONE,
+        location.getLatitude(), location.getLongitude(), userId, 0));
+    showToast("Treasure Added Successfully!");
   }
 
   /**
@@ -461,6 +709,7 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
     treasure.put("description", desc);
     treasure.put("latitude", location.getLatitude());
     treasure.put("longitude", location.getLongitude());
+    treasure.put("geohash", GeoHash.encode(location.getLatitude(), location.getLongitude()));
     treasure.put("location", formatLocationString(location));
     treasure.put("createdByUserId", userId);
     treasure.put("timestamp", System.currentTimeMillis());
@@ -480,110 +729,225 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
   }
 
   /**
-   * Loads treasures from Firebase Realtime Database and adds markers to the map.
+   * Loads treasures in the visible map area from Firebase Realtime Database and keeps them in the
+   * clustering engine. The loader is driven by camera idle events and reports single treasure
+   * changes, so only the affected marker or cluster is added, updated or removed.
    */
   private void loadTreasuresFromRealtimeDB() {
-    treasuresRef.addValueEventListener(new ValueEventListener() {
-      @Override
-      public void onDataChange(@NonNull DataSnapshot snapshot) {
-        if (!isMapReady) {
-          return;
-        }
+    markerStore = new TreasureMarkerStore(mMap);
+    viewportLoader = new TreasureViewportLoader(treasuresRef,
+        new TreasureViewportLoader.Listener() {
+          @Override
+          public void onTreasureAdded(TreasureRecord treasure) {
+            cachedOnlyTreasureIds.remove(treasure.id);
+            localStore.putTreasure(treasure);
+            addOrUpdateTreasure(treasure);
+          }
+
+          @Override
+          public void onTreasureChanged(TreasureRecord treasure) {
+            localStore.putTreasure(treasure);
+            addOrUpdateTreasure(treasure);
+          }
+
+          @Override
+          public void onTreasureRemoved(String treasureId) {
+            forgetTreasure(treasureId);
+          }
 
-        mMap.clear();
-        for (DataSnapshot data : snapshot.getChildren()) {
-          Double lat = data.child("latitude").getValue(Double.class);
-          Double lng = data.child("longitude").getValue(Double.class);
-          String title = data.child("title").getValue(String.class);
-          String desc = data.child("description").getValue(String.class);
-          String createdByUserId = data.child("createdByUserId").getValue(String.class);
-          String treasureId = data.getKey();
-          Integer totalDiscoveriesInt = data.child("totalDiscoveries").getValue(Integer.class);
-          String totalDiscoveries =
-              totalDiscoveriesInt != null ? String.valueOf(totalDiscoveriesInt) : "0";
-
-          // Check if all required fields are present
-          if (lat != null && lng != null && title != null && treasureId != null) {
-            checkAndAddMarker(lat, lng, title, desc != null ? desc : "", createdByUserId,
-                treasureId, totalDiscoveries);
+          @Override
+          public void onCellLoaded(String cell, Set<String> treasureIds) {
+            // Drop cached treasures in this cell that no longer exist
+            localStore.removeStaleTreasures(cell, treasureIds);
+            for (String treasureId : new ArrayList<>(cachedOnlyTreasureIds)) {
+              TreasureInfo info = loadedTreasures.get(treasureId);
+              if (info == null || (!treasureIds.contains(treasureId)
+                  && GeoHash.encode(info.latitude, info.longitude).startsWith(cell))) {
+                forgetTreasure(treasureId);
+              }
+            }
           }
+
+          @Override
+          public void onLoadFailed(String message) {
+            showToast("Failed to load treasures: " + message);
+          }
+        });
+  }
+
+  /**
+   * Removes a treasure from the map and every index over the loaded treasures.
+   *
+   * @param treasureId The ID of the treasure
+   */
+  private void forgetTreasure(String treasureId) {
+    cachedOnlyTreasureIds.remove(treasureId);
+    loadedTreasures.remove(treasureId);
+    clusterEngine.remove(treasureId);
+    spatialIndex.remove(treasureId);
+    removeTreasureMarker(treasureId);
+    scheduleRender();
+  }
+
+  /**
+   * Stores a newly loaded or changed treasure and updates its marker in place if it is shown.
+   *
+   * @param treasure The decoded treasure
+   */
+  private void addOrUpdateTreasure(TreasureRecord treasure) {
+    if (!isMapReady) {
+      return;
+    }
+
+    // Check if all required fields are present
+    if (!treasure.hasLocation() || treasure.title == null) {
+      return;
+    }
+
+    String treasureId = treasure.id;
+    String title = treasure.title;
+    double lat = treasure.latitude;
+    double lng = treasure.longitude;
+    TreasureInfo info = new TreasureInfo(treasureId, treasure.createdByUserId,
+        treasure.totalDiscoveries, lat, lng, title, treasure.description);
+    loadedTreasures.put(treasureId, info);
+    clusterEngine.put(treasureId, lat, lng);
+    spatialIndex.put(treasureId, lat, lng);
+    Marker marker = markerStore.update(treasureId, new LatLng(lat, lng), title,
+        info.description, info);
+    if (marker != null) {
+      bounceAnimator.setBasePosition(marker, new LatLng(lat, lng));
+    }
+    scheduleRender();
+  }
+
+  /**
+   * Schedules a cluster render on the next loop, so a burst of treasure changes renders once.
+   */
+  private void scheduleRender() {
+    if (!renderScheduled) {
+      renderScheduled = true;
+      renderHandler.post(() -> {
+        renderScheduled = false;
+        renderClusters();
+        locationTracker.recheck();
+      });
+    }
+  }
+
+  /**
+   * Shows the clusters and single treasures for the current camera position. Markers that are
+   * still valid are kept, and only markers that appeared or disappeared are added or removed.
+   */
+  private void renderClusters() {
+    if (!isMapReady || markerStore == null) {
+      return;
+    }
+    LatLngBounds bounds = mMap.getProjection().getVisibleRegion().latLngBounds;
+    int zoom = (int) mMap.getCameraPosition().zoom;
+    List<TreasureClusterEngine.Cluster> clusters = clusterEngine.getClusters(
+        bounds.southwest.latitude, bounds.southwest.longitude,
+        bounds.northeast.latitude, bounds.northeast.longitude, zoom);
+
+    Set<String> visibleTreasures = new HashSet<>();
+    Map<String, TreasureClusterEngine.Cluster> visibleClusters = new HashMap<>();
+    for (TreasureClusterEngine.Cluster cluster : clusters) {
+      if (cluster.isSingle()) {
+        visibleTreasures.add(cluster.itemId);
+      } else {
+        visibleClusters.put(cluster.key, cluster);
+      }
+    }
+
+    // Remove markers that are no longer shown on their own
+    for (String treasureId : new HashSet<>(loadedTreasures.keySet())) {
+      if (!visibleTreasures.contains(treasureId)) {
+        removeTreasureMarker(treasureId);
+      }
+    }
+    Iterator<Map.Entry<String, Marker>> it = clusterMarkers.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, Marker> entry = it.next();
+      TreasureClusterEngine.Cluster cluster = visibleClusters.remove(entry.getKey());
+      if (cluster == null) {
+        entry.getValue().remove();
+        it.remove();
+      } else {
+        // Same cell, refresh its count and centre if they changed
+        Marker marker = entry.getValue();
+        TreasureClusterEngine.Cluster previous = (TreasureClusterEngine.Cluster) marker.getTag();
+        if (previous == null || previous.count != cluster.count) {
+          marker.setPosition(new LatLng(cluster.latitude, cluster.longitude));
+          marker.setIcon(iconCache.getClusterIcon(cluster.count));
         }
+        marker.setTag(cluster);
       }
+    }
 
-      @Override
-      public void onCancelled(@NonNull DatabaseError error) {
-        showToast("Failed to load treasures: " + error.getMessage());
+    // Add markers for new clusters and treasures
+    for (TreasureClusterEngine.Cluster cluster : visibleClusters.values()) {
+      Marker marker = mMap.addMarker(new MarkerOptions()
+          .position(new LatLng(cluster.latitude, cluster.longitude))
+          .anchor(0.5f, 0.5f)
+          .icon(iconCache.getClusterIcon(cluster.count)));
+      if (marker != null) {
+        marker.setTag(cluster);
+        clusterMarkers.put(cluster.key, marker);
       }
-    });
+    }
+    for (String treasureId : visibleTreasures) {
+      TreasureInfo info = loadedTreasures.get(treasureId);
+      if (info != null && !markerStore.contains(treasureId)) {
+        addTreasureMarker(info);
+      }
+    }
   }
 
   /**
-   * Scales the bitmap resource to a fixed size and returns a BitmapDescriptor.
+   * Removes the marker of a treasure from the map and stops its animation.
    *
-   * @param resId Resource ID of the drawable
-   * @return Scaled BitmapDescriptor
+   * @param treasureId ID of the treasure
    */
-  private BitmapDescriptor getScaledBitmapDescriptor(int resId) {
-    int width = 96;
-    int height = 96;
-
-    Bitmap bitmap = BitmapFactory.decodeResource(getResources(), resId);
-    Bitmap scaledBitmap = Bitmap.createScaledBitmap(bitmap, width, height, false);
-    return BitmapDescriptorFactory.fromBitmap(scaledBitmap);
+  private void removeTreasureMarker(String treasureId) {
+    Marker marker = markerStore.get(treasureId);
+    if (marker != null) {
+      bounceAnimator.remove(marker);
+      markerStore.remove(treasureId);
+    }
   }
 
   /**
-   * Checks if the treasure has already been discovered by the user and adds a marker to the map.
+   * Picks the marker icon for a treasure based on whether the user discovered or created it.
    *
-   * @param lat              Latitude of the treasure
-   * @param lng              Longitude of the treasure
-   * @param title            Title of the treasure
-   * @param desc             Description of the treasure
-   * @param createdByUserId  ID of the user who created the treasure
-   * @param treasureId       ID of the treasure
-   * @param totalDiscoveries Total number of discoveries for the treasure
+   * @param treasureId      ID of the treasure
+   * @param createdByUserId ID of the user who created the treasure
+   * @return The marker icon
    */
-  private void checkAndAddMarker(double lat, double lng, String title, String desc,
-      String createdByUserId, String treasureId,
-      String totalDiscoveries) {
-    String currentUserId = user.getUid();
-    discoveriesRef.orderByChild("userId").equalTo(currentUserId)
-        .addListenerForSingleValueEvent(new ValueEventListener() {
-          @Override
-          public void onDataChange(@NonNull DataSnapshot snapshot) {
-            boolean discovered = false;
-            for (DataSnapshot child : snapshot.getChildren()) {
-              String foundTreasureId = child.child("treasureId").getValue(String.class);
-              if (treasureId.equals(foundTreasureId)) {
-                discovered = true;
-                break;
-              }
-            }
-            BitmapDescriptor icon;
-            if (discovered) {
-              icon = getScaledBitmapDescriptor(R.drawable.ic_treasure_discovered);
-            } else if (currentUserId.equals(createdByUserId)) {
-              icon = getScaledBitmapDescriptor(R.drawable.ic_treasure_silver);
-            } else {
-              icon = getScaledBitmapDescriptor(R.drawable.ic_treasure_gold);
-            }
-
-            Marker marker = mMap.addMarker(new MarkerOptions()
-                .position(new LatLng(lat, lng))
-                .title(title)
-                .snippet(desc)
-                .icon(icon));
-            if (marker != null) {
-              marker.setTag(new TreasureInfo(treasureId, createdByUserId, totalDiscoveries));
-              startBigBounceAnimation(marker);
-            }
-          }
+  private BitmapDescriptor getMarkerIcon(String treasureId, String createdByUserId) {
+    if (discoveredStore.isDiscovered(treasureId)) {
+      return iconCache.get(MarkerIconCache.Icon.DISCOVERED);
+    } else if (user.getUid().equals(createdByUserId)) {
+      return iconCache.get(MarkerIconCache.Icon.SILVER);
+    } else {
+      return iconCache.get(MarkerIconCache.Icon.GOLD);
+    }
+  }
 
-          @Override
-          public void onCancelled(@NonNull DatabaseError error) {
-            // Handle error if needed
-          }
-        });
+  /**
+   * Adds a marker for the treasure, using the discovered set to pick its icon.
+   *
+   * @param info The TreasureInfo object containing treasure details
+   */
+  private void addTreasureMarker(TreasureInfo info) {
+    Marker marker = markerStore.add(info.treasureId, new MarkerOptions()
+            .position(new LatLng(info.latitude, info.longitude))
+            .title(info.title)
+            .snippet(info.description)
+            .icon(getMarkerIcon(info.treasureId, info.createdByUserId)),
+        info);
+    if (marker != null) {
+      bounceAnimator.add(marker);
+    }
   }
 
   /**
@@ -592,6 +956,14 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
    * @param marker The clicked marker
    */
   private void handleMarkerClick(Marker marker) {
+    // Zoom into a cluster until it splits
+    if (marker.getTag() instanceof TreasureClusterEngine.Cluster) {
+      TreasureClusterEngine.Cluster cluster = (TreasureClusterEngine.Cluster) marker.getTag();
+      mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(marker.getPosition(),
+          cluster.expansionZoom));
+      return;
+    }
+
     TreasureInfo info = (TreasureInfo) marker.getTag();
     if (info == null) {
       return;
@@ -601,44 +973,42 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
 
     if (currentUserId.equals(info.createdByUserId)) {
       showDiscoveryDialog(marker, info, DiscoveryDialogType.OWN_TREASURE, 0, 0);
+    } else if (!discoveredStore.isLoaded()) {
+      showToast("Loading your discoveries, please try again");
     } else {
-      discoveriesRef.orderByChild("userId").equalTo(currentUserId)
-          .addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-              boolean alreadyDiscovered = false;
-              long discoveryTime = 0;
-              int pointsEarned = 0;
-
-              for (DataSnapshot child : snapshot.getChildren()) {
-                String foundTreasureId = child.child("treasureId").getValue(String.class);
-                if (info.treasureId.equals(foundTreasureId)) {
-                  alreadyDiscovered = true;
-                  Long ts = child.child("discoveryTime").getValue(Long.class);
-                  Integer points = child.child("pointsEarned").getValue(Integer.class);
-                  if (ts != null) {
-                    discoveryTime = ts;
-                  }
-                  if (points != null) {
-                    pointsEarned = points;
-                  }
-                  break;
-                }
-              }
+      DiscoveredTreasuresStore.Discovery discovery = discoveredStore.get(info.treasureId);
+      if (discovery != null) {
+        showDiscoveryDialog(marker, info, DiscoveryDialogType.REVISIT, discovery.discoveryTime,
+            discovery.pointsEarned);
+      } else {
+        checkProximityAndDiscover(marker, info);
+      }
+    }
+  }
 
-              if (alreadyDiscovered) {
-                showDiscoveryDialog(marker, info, DiscoveryDialogType.REVISIT, discoveryTime,
-                    pointsEarned);
-              } else {
-                checkProximityAndDiscover(marker, info);
-              }
-            }
+  /**
+   * Checks whether the given treasure can still be discovered by the current user, i.e. it was
+   * created by someone else and has not been discovered yet.
+   *
+   * @param treasureId The ID of the treasure
+   * @return true if the treasure is undiscovered
+   */
+  private boolean isUndiscoveredByUser(String treasureId) {
+    TreasureInfo info = loadedTreasures.get(treasureId);
+    return info != null && discoveredStore.isLoaded()
+        && !user.getUid().equals(info.createdByUserId)
+        && !discoveredStore.isDiscovered(treasureId);
+  }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-              showToast("Error checking discovery");
-            }
-          });
+  /**
+   * Tells the user that a treasure is close enough to be discovered.
+   *
+   * @param treasureId The ID of the treasure in range
+   */
+  private void onTreasureInRange(String treasureId) {
+    TreasureInfo info = loadedTreasures.get(treasureId);
+    if (info != null) {
+      showToast("You're near \"" + info.title + "\"! Tap it to discover.");
     }
   }
 
@@ -656,11 +1026,15 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
       }
 
       float[] distance = new float[1];
+      // Use the treasure position, the marker may be mid-bounce
       Location.distanceBetween(location.getLatitude(), location.getLongitude(),
-          marker.getPosition().latitude, marker.getPosition().longitude, distance);
+          info.latitude, info.longitude, distance);
 
       if (distance[0] <= DISCOVERY_RADIUS_METERS) {
-        handleDiscovery(marker, info);
+        // The location callback may arrive after a discovery from a double tap
+        if (!discoveredStore.isDiscovered(info.treasureId)) {
+          handleDiscovery(marker, info);
+        }
       } else {
         showToast("Move closer to discover this treasure!");
       }
@@ -668,57 +1042,32 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
   }
 
   /**
-   * Handles the discovery of a treasure by saving it to the database and updating user points.
+   * Handles the discovery of a treasure by journaling it in the outbox and showing it as
+   * discovered right away.
    *
    * @param marker The marker representing the discovered treasure
    * @param info   The TreasureInfo object containing treasure details
    */
   private void handleDiscovery(Marker marker, TreasureInfo info) {
-    // Save discovery
-    String discoveryId = discoveriesRef.push().getKey();
-    final int pointsEarned;
-    if (info.totalDiscoveries != null && Integer.parseInt(info.totalDiscoveries) < 3) {
-      pointsEarned = 10;
-    } else {
-      pointsEarned = 0;
-    }
-    if (discoveryId != null) {
-      Map<String, Object> discovery = new HashMap<>();
-      discovery.put("userId", user.getUid());
-      discovery.put("treasureId", info.treasureId);
-      discovery.put("discoveryTime", System.currentTimeMillis());
-      discovery.put("pointsEarned", pointsEarned);
-      discoveriesRef.child(discoveryId).setValue(discovery);
+    String discoveryId = FirebaseDatabase.getInstance().getReference("discoveries").push()
+        .getKey();
+    if (discoveryId == null) {
+      showToast("Failed to save discovery");
+      return;
     }
-    treasuresRef.child(info.treasureId).child("totalDiscoveries")
-        .setValue(Integer.parseInt(info.totalDiscoveries) + 1);
+    long discoveryTime = System.currentTimeMillis();
 
-    // Update user points in userstats
-    DatabaseReference userStatsRef = FirebaseDatabase.getInstance()
-        .getReference("userstats");
-    String userId = user.getUid();
-    userStatsRef.orderByChild("userid").equalTo(userId)
-        .addListenerForSingleValueEvent(new ValueEventListener() {
-          @Override
-          public void onDataChange(@NonNull DataSnapshot snapshot) {
-            for (DataSnapshot child : snapshot.getChildren()) {
-              Integer currentPoints = child.child("points").getValue(Integer.class);
-              int newPoints = (currentPoints != null ? currentPoints : 0) + pointsEarned;
-              child.getRef().child("points").setValue(newPoints);
-            }
-          }
+    // Estimated from the cached finder count, the commit decides the place and the points
+    int pointsEarned = DiscoveryCommitter.expectedPoints(user.getUid(), info.treasureId,
+        info.totalDiscoveries, discoveryTime);
 
-          @Override
-          public void onCancelled(@NonNull DatabaseError error) {
-            // Optionally handle error
-          }
-        });
+    // The outbox commits the discovery once online, the map shows it right away
+    outbox.enqueueDiscovery(user.getUid(), info.treasureId, discoveryId, discoveryTime);
+    discoveredStore.markDiscovered(info.treasureId, discoveryTime, pointsEarned);
 
     // Show discovery dialog
-    showDiscoveryDialog(marker, info, DiscoveryDialogType.FIRST_DISCOVERY, 0, pointsEarned);
-
-    // Change marker icon to discovered
-    marker.setIcon(getScaledBitmapDescriptor(R.drawable.ic_treasure_discovered));
+    showDiscoveryDialog(marker, info, DiscoveryDialogType.FIRST_DISCOVERY, discoveryTime,
+        pointsEarned);
   }
 
   /**
@@ -727,62 +1076,9 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
    * @param treasureId The ID of the treasure to bookmark
    */
   private void saveTreasureToBookmarks(String treasureId) {
-    String bookmarkId = savedTreasuresRef.push().getKey();
-    if (bookmarkId != null) {
-      Map<String, Object> bookmark = new HashMap<>();
-      bookmark.put("userId", user.getUid());
-      bookmark.put("treasureId", treasureId);
-
-      // Save the bookmark to Firebase Realtime Database
-      savedTreasuresRef.child(bookmarkId).setValue(bookmark)
-          .addOnSuccessListener(aVoid -> showToast("Treasure Saved"))
-          .addOnFailureListener(e -> showToast("Failed to save bookmark"));
-    }
-  }
-
-  /**
-   * Starts a big bounce animation for the marker to indicate discovery.
-   *
-   * @param marker The marker to animate
-   */
-  private void startBigBounceAnimation(final Marker marker) {
-    final Handler handler = new Handler();
-    final long duration = 800;
-    final double bounceHeight = 0.00015;
-    final Interpolator interpolator = new BounceInterpolator();
-
-    final LatLng markerPos = marker.getPosition();
-    final Runnable[] bounceRunnable = new Runnable[1];
-
-    bounceRunnable[0] = new Runnable() {
-      @Override
-      public void run() {
-        final long startTime = SystemClock.uptimeMillis();
-
-        handler.post(new Runnable() {
-          @Override
-          public void run() {
-            long elapsed = SystemClock.uptimeMillis() - startTime;
-            float t = (float) elapsed / duration;
-
-            if (t > 1) {
-              t = 1;
-            }
-
-            double offset = Math.sin(t * Math.PI) * bounceHeight * interpolator.getInterpolation(t);
-            marker.setPosition(new LatLng(markerPos.latitude + offset, markerPos.longitude));
-
-            if (t < 1) {
-              handler.postDelayed(this, 16);
-            } else {
-              handler.postDelayed(bounceRunnable[0], 300);
-            }
-          }
-        });
-      }
-    };
-
-    handler.post(bounceRunnable[0]);
+    localStore.setBookmarked(user.getUid(), treasureId, true);
+    outbox.enqueueBookmark(user.getUid(), treasureId, true);
+    showToast("Treasure Saved");
   }
 
   /**
@@ -792,7 +1088,8 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
    * @param info                The TreasureInfo object containing treasure details
    * @param type                The type of discovery dialog to show
    * @param discoveryTimeMillis The time of discovery in milliseconds
-   * @param pointsEarned        Points earned for discovering the treasure
+   * @param pointsEarned        Points earned for discovering the treasure, estimated for a first
+   *                            discovery
    */
   private void showDiscoveryDialog(Marker marker, TreasureInfo info, DiscoveryDialogType type,
       long discoveryTimeMillis, int pointsEarned) {
@@ -818,7 +1115,8 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
     switch (type) {
       case FIRST_DISCOVERY:
         discoveryInfo.setText(
-            "🎉 You discovered a treasure!\nCongrats! You got " + pointsEarned + " points!");
+            "🎉 You discovered a treasure!\nCongrats! You should get about " + pointsEarned
+                + " points once your discovery is saved.");
         btnBookmark.setVisibility(View.VISIBLE);
         infoBoxContainer.setBackgroundResource(R.drawable.bg_info_green_box);
         break;
@@ -841,28 +1139,7 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
 
     // Check if already bookmarked
     String currentUserId = user.getUid();
-    savedTreasuresRef.orderByChild("userId").equalTo(currentUserId)
-        .addListenerForSingleValueEvent(new ValueEventListener() {
-          @Override
-          public void onDataChange(@NonNull DataSnapshot snapshot) {
-            boolean isBookmarked = false;
-            for (DataSnapshot child : snapshot.getChildren()) {
-              String tid = child.child("treasureId").getValue(String.class);
-              if (info.treasureId.equals(tid)) {
-                isBookmarked = true;
-                break;
-              }
-            }
-            btnBookmark.setImageResource(isBookmarked
-                ? android.R.drawable.btn_star_big_on
-                : android.R.drawable.btn_star_big_off);
-          }
-
-          @Override
-          public void onCancelled(@NonNull DatabaseError error) {
-            btnBookmark.setImageResource(android.R.drawable.btn_star_big_off);
-          }
-        });
+    bindBookmarkState(bookmarkStore, currentUserId, info.treasureId, btnBookmark);
 
     // Set bookmark button click listener
     btnBookmark.setOnClickListener(v -> toggleBookmark(info, btnBookmark));
@@ -870,12 +1147,14 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
     // Hide image by default
     imageCard.setVisibility(View.GONE);
 
-    // Load treasure image if available
-    treasuresRef.child(info.treasureId).child("imageUrl")
+    // Load the treasure image variant that fits the dialog, which spans the width of the screen
+    treasuresRef.child(info.treasureId)
         .addListenerForSingleValueEvent(new ValueEventListener() {
           @Override
           public void onDataChange(@NonNull DataSnapshot snapshot) {
-            String imageUrl = snapshot.getValue(String.class);
+            TreasureRecord treasure = TreasureRecord.fromSnapshot(snapshot);
+            String imageUrl = treasure != null ? ImagePipeline.urlFor(TreasureHuntActivity.this,
+                treasure.image, getResources().getConfiguration().screenWidthDp) : null;
             if (imageUrl != null && !imageUrl.isEmpty()) {
               imageCard.setVisibility(View.VISIBLE);
               Glide.with(TreasureHuntActivity.this)
@@ -927,61 +1206,52 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
    * @param btnBookmark The ImageView representing the bookmark button
    */
   private void toggleBookmark(TreasureInfo info, ImageView btnBookmark) {
-    String currentUserId = user.getUid();
-    savedTreasuresRef.orderByChild("userId").equalTo(currentUserId)
-        .addListenerForSingleValueEvent(new ValueEventListener() {
-          @Override
-          public void onDataChange(@NonNull DataSnapshot snapshot) {
-            boolean isBookmarked = false;
-            String bookmarkKey = null;
-            for (DataSnapshot child : snapshot.getChildren()) {
-              String tid = child.child("treasureId").getValue(String.class);
-              if (info.treasureId.equals(tid)) {
-                isBookmarked = true;
-                bookmarkKey = child.getKey();
-                break;
-              }
-            }
-
-            // Toggle bookmark state
-            if (isBookmarked && bookmarkKey != null) {
-              savedTreasuresRef.child(bookmarkKey).removeValue()
-                  .addOnSuccessListener(aVoid -> {
-                    btnBookmark.setImageResource(android.R.drawable.btn_star_big_off);
-                    showToast("Treasure Removed");
-                  });
-            } else {
-              saveTreasureToBookmarks(info.treasureId);
-              btnBookmark.setImageResource(android.R.drawable.btn_star_big_on);
-            }
-          }
-
-          @Override
-          public void onCancelled(@NonNull DatabaseError error) {
-            showToast("Treasure save action failed");
-          }
-        });
+    if (isShownBookmarked(btnBookmark)) {
+      localStore.setBookmarked(user.getUid(), info.treasureId, false);
+      outbox.enqueueBookmark(user.getUid(), info.treasureId, false);
+      showBookmarkState(btnBookmark, false);
+      showToast("Treasure Removed");
+    } else {
+      saveTreasureToBookmarks(info.treasureId);
+      showBookmarkState(btnBookmark, true);
+    }
   }
 
   @Override
   protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
     super.onActivityResult(requestCode, resultCode, data);
 
-    // Handle image selection from gallery or camera
-    if (resultCode == RESULT_OK) {
-      if (requestCode == Constants.PICK_IMAGE_REQUEST && data != null) {
-        selectedImageUri = data.getData();
-        if (imgPreview != null) {
-          imgPreview.setImageURI(selectedImageUri);
-        }
-      } else if (requestCode == Constants.CAMERA_REQUEST && data != null) {
-        Bitmap photo = (Bitmap) data.getExtras().get("data");
-        selectedImageUri = Uri.parse(
-            MediaStore.Images.Media.insertImage(getContentResolver(), photo, "NewTreasure", null));
-        if (imgPreview != null) {
-          imgPreview.setImageURI(selectedImageUri);
-        }
+    // The camera app wrote the full-resolution photo to the capture file, there is no data extra
+    if (requestCode == Constants.CAMERA_REQUEST && pendingCapture != null) {
+      File capture = pendingCapture;
+      pendingCapture = null;
+      if (resultCode == RESULT_OK && capture.length() > 0) {
+        selectImage(Uri.fromFile(capture));
+      } else {
+        CameraCapture.release(this, Uri.fromFile(capture));
       }
+    } else if (requestCode == Constants.PICK_IMAGE_REQUEST && resultCode == RESULT_OK
+        && data != null) {
+      selectImage(data.getData());
+    }
+  }
+
+  /**
+   * Selects the image of the treasure being added and shows it in the preview. A photo taken
+   * earlier for the same treasure is deleted. The preview is decoded by Glide off the main thread
+   * and sized to the view. If the activity was recreated since the dialog was opened, the dialog
+   * is opened again first.
+   *
+   * @param imageUri Uri of the selected image
+   */
+  private void selectImage(Uri imageUri) {
+    if (imgPreview == null) {
+      openAddTreasureDialog();
+    }
+    CameraCapture.release(this, selectedImageUri);
+    selectedImageUri = imageUri;
+    if (imgPreview != null) {
+      Glide.with(this).load(imageUri).into(imgPreview);
     }
   }
 
@@ -1037,6 +1307,7 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
     // Check if all required permissions are granted
     if (allPermissionsGranted) {
       hasLocationPermission = true;
+      locationTracker.onPermissionGranted();
       if (isMapReady) {
         enableMyLocationOnMap();
       }
@@ -1089,19 +1360,6 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
     void onLocationReceived(@Nullable Location location);
   }
 
-  /**
-   * Callback interface for image upload completion.
-   */
-  private interface OnImageUploadCallback {
-
-    /**
-     * Called when the image is successfully uploaded.
-     *
-     * @param imageUrl The URL of the uploaded image
-     */
-    void onImageUploaded(String imageUrl);
-  }
-
   /**
    * Helper class to store marker info
    */
@@ -1110,7 +1368,11 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
     // Fields to store treasure information
     String treasureId;
     String createdByUserId;
-    String totalDiscoveries;
+    int totalDiscoveries;
+    double latitude;
+    double longitude;
+    String title;
+    String description;
 
     /**
      * Constructor for TreasureInfo.
@@ -1118,11 +1380,20 @@ public class TreasureHuntActivity extends BaseActivity implements OnMapReadyCall
      * @param treasureId       The ID of the treasure
      * @param createdByUserId  The user ID of the creator
      * @param totalDiscoveries Total discoveries of the treasure
+     * @param latitude         Latitude of the treasure
+     * @param longitude        Longitude of the treasure
+     * @param title            Title of the treasure
+     * @param description      Description of the treasure
      */
-    TreasureInfo(String treasureId, String createdByUserId, String totalDiscoveries) {
+    TreasureInfo(String treasureId, String createdByUserId, int totalDiscoveries,
+        double latitude, double longitude, String title, String description) {
       this.treasureId = treasureId;
       this.createdByUserId = createdByUserId;
       this.totalDiscoveries = totalDiscoveries;
+      this.latitude = latitude;
+      this.longitude = longitude;
+      this.title = title;
+      this.description = description;
     }
   }
 }
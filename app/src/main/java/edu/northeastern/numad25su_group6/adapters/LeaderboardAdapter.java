@@ -8,20 +8,34 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
+import edu.northeastern.numad25su_group6.data.ProfileCache;
+import edu.northeastern.numad25su_group6.data.UserProfileRecord;
+import edu.northeastern.numad25su_group6.images.ImagePipeline;
 import edu.northeastern.numad25su_group6.pojo.LeaderboardItem;
+import edu.northeastern.numad25su_group6.utils.LeaderboardRanking;
 import java.util.List;
 import edu.northeastern.numad25su_group6.R;
 
 /**
  * LeaderboardAdapter is a RecyclerView adapter that displays a list of leaderboard items. It
- * supports showing a loading indicator at the end of the list.
+ * supports showing a loading indicator at the end of the list. Names and profile images are taken
+ * from the shared {@link ProfileCache} as rows are bound. As a {@link LeaderboardRanking.Listener}
+ * it turns ranking changes into precise notifications, and rows whose rank or points changed only
+ * rebind those two texts.
  */
-public class LeaderboardAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+public class LeaderboardAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
+    implements LeaderboardRanking.Listener {
 
   // View types for the RecyclerView
   private static final int VIEW_TYPE_ITEM = 0;
   private static final int VIEW_TYPE_LOADING = 1;
 
+  // Size of the profile image in item_leaderboard
+  public static final int PROFILE_SIZE_DP = 48;
+
+  // Payload for rows whose rank or points changed, which keeps the name and profile image
+  private static final Object PAYLOAD_SCORE = new Object();
+
   // Current user ID to highlight their item in the leaderboard
   private final String currentUserId;
 
@@ -90,7 +104,6 @@ public class LeaderboardAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
       LeaderboardItem item = items.get(position);
       ItemViewHolder vh = (ItemViewHolder) holder;
       vh.rank.setText("#" + item.rank);
-      vh.username.setText(item.username);
       vh.points.setText(String.valueOf(item.points));
 
       // Set special background for current user
@@ -100,19 +113,72 @@ public class LeaderboardAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
         vh.itemView.setBackgroundResource(android.R.color.transparent);
       }
 
-      // Load profile image
-      if (item.profileImageUrl != null && !item.profileImageUrl.isEmpty()) {
-        Glide.with(vh.profile.getContext())
-            .load(item.profileImageUrl)
-            .placeholder(R.drawable.ic_profile_placeholder)
-            .error(R.drawable.ic_error)
-            .into(vh.profile);
-      } else {
-        vh.profile.setImageResource(R.drawable.ic_profile_placeholder);
-      }
+      // Show the profile once it is cached, unless the holder was rebound in the meantime
+      vh.userId = item.userId;
+      vh.username.setText("");
+      Glide.with(vh.profile.getContext()).clear(vh.profile);
+      vh.profile.setImageResource(R.drawable.ic_profile_placeholder);
+      ProfileCache.getInstance().get(item.userId, profile -> {
+        if (item.userId.equals(vh.userId)) {
+          bindProfile(vh, profile);
+        }
+      });
+    }
+  }
+
+  @Override
+  public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position,
+      @NonNull List<Object> payloads) {
+    if (holder instanceof ItemViewHolder && !payloads.isEmpty()
+        && payloads.stream().allMatch(payload -> payload == PAYLOAD_SCORE)) {
+      LeaderboardItem item = items.get(position);
+      ItemViewHolder vh = (ItemViewHolder) holder;
+      vh.rank.setText("#" + item.rank);
+      vh.points.setText(String.valueOf(item.points));
+      return;
     }
+    onBindViewHolder(holder, position);
+  }
+
+  @Override
+  public void onItemRangeInserted(int start, int count) {
+    notifyItemRangeInserted(start, count);
   }
 
+  @Override
+  public void onItemRemoved(int position) {
+    notifyItemRemoved(position);
+  }
+
+  @Override
+  public void onItemMoved(int from, int to) {
+    notifyItemMoved(from, to);
+  }
+
+  @Override
+  public void onItemChanged(int position) {
+    notifyItemChanged(position, PAYLOAD_SCORE);
+  }
+
+  /**
+   * Shows a user's name and profile image in a leaderboard row.
+   *
+   * @param vh      The view holder of the row
+   * @param profile The profile of the user
+   */
+  private static void bindProfile(ItemViewHolder vh, UserProfileRecord profile) {
+    vh.username.setText(profile.displayName());
+    if (profile.hasProfileImage()) {
+      Glide.with(vh.profile.getContext())
+          .load(ImagePipeline.urlFor(vh.profile.getContext(), profile.profileImage,
+              PROFILE_SIZE_DP))
+          .placeholder(R.drawable.ic_profile_placeholder)
+          .error(R.drawable.ic_error)
+          .into(vh.profile);
+    } else {
+      vh.profile.setImageResource(R.drawable.ic_profile_placeholder);
+    }
+  }
 
   /**
    * Inner class for the item view holder.
@@ -123,6 +189,9 @@ public class LeaderboardAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
     TextView rank, username, points;
     ImageView profile;
 
+    // The user currently bound to the row
+    String userId;
+
     /**
      * Constructor for ItemViewHolder.
      *
@@ -9,6 +9,7 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import edu.northeastern.numad25su_group6.R;
+import edu.northeastern.numad25su_group6.images.ImagePipeline;
 import edu.northeastern.numad25su_group6.pojo.Treasure;
 import java.util.List;
 
@@ -18,6 +19,9 @@ import java.util.List;
  */
 public class TreasureListAdapter extends RecyclerView.Adapter<TreasureListAdapter.ViewHolder> {
 
+  // Size of the treasure thumbnail in item_saved_treasure
+  private static final int IMAGE_SIZE_DP = 80;
+
   // List of treasures to display in the RecyclerView
   private final List<Treasure> treasures;
   private final List<String> treasureIds;
@@ -57,7 +61,7 @@ public class TreasureListAdapter extends RecyclerView.Adapter<TreasureListAdapte
     Treasure t = treasures.get(position);
     holder.title.setText(t.title);
     Glide.with(holder.image.getContext())
-        .load(t.imageUrl)
+        .load(ImagePipeline.urlFor(holder.image.getContext(), t.image, IMAGE_SIZE_DP))
         .placeholder(R.drawable.ic_image_placeholder)
         .error(R.drawable.ic_image_placeholder)
         .into(holder.image);
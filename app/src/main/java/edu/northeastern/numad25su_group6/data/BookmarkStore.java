@@ -0,0 +1,120 @@
+package edu.northeastern.numad25su_group6.data;
+
+import androidx.annotation.Nullable;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BookmarkStore reads the treasures saved by one user. Bookmarks live at
+ * savedTreasures/{uid}/{treasureId} with the time they were saved, so checking a bookmark is one
+ * key lookup, saving or removing it is one idempotent write (sent through the outbox), and the list
+ * can be paged in the order the treasures were saved.
+ */
+public class BookmarkStore {
+
+  /**
+   * One page of saved treasures, in the order they were saved.
+   */
+  public static final class Page {
+
+    public final List<String> treasureIds;
+    public final boolean hasMore;
+
+    // Position of the last bookmark on the page, where the next page starts
+    private final double lastSavedAt;
+    private final String lastTreasureId;
+
+    /**
+     * Constructor for Page.
+     *
+     * @param treasureIds    IDs of the saved treasures on the page
+     * @param hasMore        Whether more bookmarks follow the page
+     * @param lastSavedAt    Save time of the last bookmark on the page
+     * @param lastTreasureId ID of the last treasure on the page
+     */
+    Page(List<String> treasureIds, boolean hasMore, double lastSavedAt, String lastTreasureId) {
+      this.treasureIds = treasureIds;
+      this.hasMore = hasMore;
+      this.lastSavedAt = lastSavedAt;
+      this.lastTreasureId = lastTreasureId;
+    }
+  }
+
+  private final DatabaseReference userRef;
+
+  /**
+   * Constructor for BookmarkStore.
+   *
+   * @param userId The ID of the current user
+   */
+  public BookmarkStore(String userId) {
+    this.userRef = FirebaseDatabase.getInstance().getReference("savedTreasures").child(userId);
+  }
+
+  /**
+   * Checks whether the user saved the given treasure.
+   *
+   * @param treasureId The ID of the treasure
+   * @param callback   Callback receiving the result on the main thread
+   * @param onError    Callback receiving query errors, or null to ignore them
+   */
+  public void isBookmarked(String treasureId, SnapshotDecoder.Callback<Boolean> callback,
+      @Nullable SnapshotDecoder.Callback<DatabaseError> onError) {
+    userRef.child(treasureId).addListenerForSingleValueEvent(
+        SnapshotDecoder.listener(DataSnapshot::exists, callback, onError));
+  }
+
+  /**
+   * Loads the page of bookmarks that follows the given page.
+   *
+   * @param after    The previous page, or null for the first page
+   * @param size     The maximum number of bookmarks on the page
+   * @param callback Callback receiving the page on the main thread
+   * @param onError  Callback receiving query errors, or null to ignore them
+   */
+  public void loadPage(@Nullable Page after, int size, SnapshotDecoder.Callback<Page> callback,
+      @Nullable SnapshotDecoder.Callback<DatabaseError> onError) {
+    Query query = userRef.orderByChild("savedAt");
+    if (after != null) {
+      query = query.startAfter(after.lastSavedAt, after.lastTreasureId);
+    }
+
+    // One extra bookmark tells whether another page follows
+    query.limitToFirst(size + 1).addListenerForSingleValueEvent(SnapshotDecoder.listener(
+        snapshot -> decodePage(snapshot, size, after), callback, onError));
+  }
+
+  /**
+   * Decodes a page of bookmarks. Runs on the decoder thread.
+   *
+   * @param snapshot Snapshot of up to size + 1 bookmarks ordered by save time
+   * @param size     The maximum number of bookmarks on the page
+   * @param after    The previous page, or null for the first page
+   * @return The page
+   */
+  private static Page decodePage(DataSnapshot snapshot, int size, @Nullable Page after) {
+    List<String> treasureIds = new ArrayList<>();
+    double lastSavedAt = after != null ? after.lastSavedAt : 0;
+    String lastTreasureId = after != null ? after.lastTreasureId : null;
+    boolean hasMore = false;
+    for (DataSnapshot child : snapshot.getChildren()) {
+      if (treasureIds.size() == size) {
+        hasMore = true;
+        break;
+      }
+      Map<?, ?> fields = SnapshotDecoder.fields(child);
+      lastSavedAt = fields != null ? SnapshotDecoder.integer(fields, "savedAt", 0) : 0;
+      lastTreasureId = child.getKey();
+      treasureIds.add(lastTreasureId);
+    }
+    return new Page(Collections.unmodifiableList(treasureIds), hasMore, lastSavedAt,
+        lastTreasureId);
+  }
+}
@@ -0,0 +1,301 @@
+package edu.northeastern.numad25su_group6.data;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DiscoveredTreasuresStore keeps the treasures discovered by the current user in memory for the
+ * session. The user's discovery index (userDiscoveries/{uid}, keyed by treasure ID) is loaded once
+ * and kept live with a child listener, so "already discovered" checks are simple lookups instead of
+ * one query per marker or tap. Until every older discovery has been indexed, the user's discovery
+ * records are also read once the old way, so older discoveries are never shown as undiscovered.
+ */
+public class DiscoveredTreasuresStore {
+
+  /**
+   * Listener notified when the set of discovered treasures changes.
+   */
+  public interface Listener {
+
+    /**
+     * Called when the initial discoveries have been loaded.
+     */
+    void onDiscoveriesLoaded();
+
+    /**
+     * Called when a treasure is added to the discovered set.
+     *
+     * @param treasureId The ID of the discovered treasure
+     */
+    void onTreasureDiscovered(String treasureId);
+  }
+
+  /**
+   * Details of a single discovery by the current user.
+   */
+  public static class Discovery {
+
+    public final long discoveryTime;
+    public final int pointsEarned;
+
+    /**
+     * Constructor for Discovery.
+     *
+     * @param discoveryTime The time of discovery in milliseconds
+     * @param pointsEarned  Points earned for the discovery
+     */
+    Discovery(long discoveryTime, int pointsEarned) {
+      this.discoveryTime = discoveryTime;
+      this.pointsEarned = pointsEarned;
+    }
+  }
+
+  // Written once every discovery recorded before the index existed has been indexed
+  public static final String INDEX_COMPLETE_PATH = "migrations/userDiscoveries";
+
+  private static final String TAG = "DiscoveredTreasures";
+
+  private final String userId;
+  private final Query query;
+  private final Listener listener;
+
+  // Discoveries keyed by treasure ID
+  private final Map<String, Discovery> discoveries = new HashMap<>();
+  private boolean loaded = false;
+
+  // Initial reads of the index and of the records not indexed yet
+  private boolean indexLoaded = false;
+  private boolean recordsLoaded = false;
+
+  private final ChildEventListener childListener = new ChildEventListener() {
+    @Override
+    public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+      String treasureId = snapshot.getKey();
+      Long ts = snapshot.child("discoveryTime").getValue(Long.class);
+      Integer points = snapshot.child("pointsEarned").getValue(Integer.class);
+      boolean isNew = !discoveries.containsKey(treasureId);
+      discoveries.put(treasureId,
+          new Discovery(ts != null ? ts : 0, points != null ? points : 0));
+      if (isNew) {
+        listener.onTreasureDiscovered(treasureId);
+      }
+    }
+
+    @Override
+    public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+      onChildAdded(snapshot, previousChildName);
+    }
+
+    @Override
+    public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+      discoveries.remove(snapshot.getKey());
+    }
+
+    @Override
+    public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+    }
+
+    @Override
+    public void onCancelled(@NonNull DatabaseError error) {
+      onLoadFailed(error);
+    }
+  };
+
+  /**
+   * Constructor for DiscoveredTreasuresStore.
+   *
+   * @param userId   The ID of the current user
+   * @param listener Listener notified about changes
+   */
+  public DiscoveredTreasuresStore(String userId, Listener listener) {
+    this.userId = userId;
+    this.query = FirebaseDatabase.getInstance().getReference("userDiscoveries").child(userId);
+    this.listener = listener;
+  }
+
+  /**
+   * Starts listening to the user's discoveries.
+   */
+  public void start() {
+    query.addChildEventListener(childListener);
+
+    // The value event fires after all initial child events of the same query
+    query.addListenerForSingleValueEvent(new ValueEventListener() {
+      @Override
+      public void onDataChange(@NonNull DataSnapshot snapshot) {
+        indexLoaded = true;
+        updateLoaded();
+      }
+
+      @Override
+      public void onCancelled(@NonNull DatabaseError error) {
+        onLoadFailed(error);
+      }
+    });
+    loadUnindexedRecords();
+  }
+
+  /**
+   * Reads the user's discovery records while the index may still miss older ones. Once the index
+   * is complete this is a single read of the marker.
+   */
+  private void loadUnindexedRecords() {
+    DatabaseReference rootRef = FirebaseDatabase.getInstance().getReference();
+    rootRef.child(INDEX_COMPLETE_PATH).addListenerForSingleValueEvent(new ValueEventListener() {
+      @Override
+      public void onDataChange(@NonNull DataSnapshot snapshot) {
+        if (snapshot.exists()) {
+          recordsLoaded = true;
+          updateLoaded();
+          return;
+        }
+        rootRef.child("discoveries").orderByChild("userId").equalTo(userId)
+            .addListenerForSingleValueEvent(SnapshotDecoder.listener(
+                DiscoveredTreasuresStore::decodeRecords,
+                records -> {
+                  for (DiscoveryRecord record : records) {
+                    if (!discoveries.containsKey(record.treasureId)) {
+                      discoveries.put(record.treasureId,
+                          new Discovery(record.discoveryTime, record.pointsEarned));
+                      listener.onTreasureDiscovered(record.treasureId);
+                    }
+                  }
+                  recordsLoaded = true;
+                  updateLoaded();
+                },
+                error -> {
+                  Log.w(TAG, "Could not load discovery records: " + error.getMessage());
+                  recordsLoaded = true;
+                  updateLoaded();
+                }));
+      }
+
+      @Override
+      public void onCancelled(@NonNull DatabaseError error) {
+        Log.w(TAG, "Could not read index marker: " + error.getMessage());
+        recordsLoaded = true;
+        updateLoaded();
+      }
+    });
+  }
+
+  /**
+   * Decodes the discovery records of the user. Runs on the decoder thread.
+   *
+   * @param snapshot Snapshot of the user's discovery records
+   * @return The records, oldest first
+   */
+  private static List<DiscoveryRecord> decodeRecords(DataSnapshot snapshot) {
+    List<DiscoveryRecord> records = new ArrayList<>();
+    for (DataSnapshot child : snapshot.getChildren()) {
+      DiscoveryRecord record = DiscoveryRecord.fromSnapshot(child);
+      if (record != null) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Marks the store as loaded once both initial reads completed.
+   */
+  private void updateLoaded() {
+    if (!loaded && indexLoaded && recordsLoaded) {
+      loaded = true;
+      listener.onDiscoveriesLoaded();
+    }
+  }
+
+  /**
+   * Handles a cancelled listener. The store then counts as loaded with the discoveries known so
+   * far, i.e. the cached ones and the ones made on this device, so the map keeps working instead
+   * of waiting forever. Committing a discovery checks the database again, so a treasure that is
+   * missing here cannot be discovered twice.
+   *
+   * @param error The error that cancelled the listener
+   */
+  private void onLoadFailed(DatabaseError error) {
+    Log.w(TAG, "Could not load discoveries: " + error.getMessage());
+    indexLoaded = true;
+    updateLoaded();
+  }
+
+  /**
+   * Seeds the set with discoveries cached on the device, so markers show the right icon before the
+   * live discoveries arrive. Entries that are already known are kept.
+   *
+   * @param cached Cached discoveries keyed by treasure ID
+   */
+  public void seed(Map<String, Discovery> cached) {
+    for (Map.Entry<String, Discovery> entry : cached.entrySet()) {
+      if (!discoveries.containsKey(entry.getKey())) {
+        discoveries.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Records a discovery made on this device before it reaches the database, so the treasure is
+   * shown as discovered right away. The live discovery replaces it once it is committed.
+   *
+   * @param treasureId    The ID of the discovered treasure
+   * @param discoveryTime The time of discovery in milliseconds
+   * @param pointsEarned  Points the discovery is expected to earn
+   */
+  public void markDiscovered(String treasureId, long discoveryTime, int pointsEarned) {
+    if (discoveries.containsKey(treasureId)) {
+      return;
+    }
+    discoveries.put(treasureId, new Discovery(discoveryTime, pointsEarned));
+    listener.onTreasureDiscovered(treasureId);
+  }
+
+  /**
+   * Stops listening to the user's discoveries.
+   */
+  public void stop() {
+    query.removeEventListener(childListener);
+  }
+
+  /**
+   * Checks whether the initial discoveries have been loaded.
+   *
+   * @return true once the discovered set is complete
+   */
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  /**
+   * Checks whether the current user discovered the given treasure.
+   *
+   * @param treasureId The ID of the treasure
+   * @return true if the treasure was discovered
+   */
+  public boolean isDiscovered(String treasureId) {
+    return discoveries.containsKey(treasureId);
+  }
+
+  /**
+   * Returns the discovery details for the given treasure.
+   *
+   * @param treasureId The ID of the treasure
+   * @return The discovery, or null if the treasure was not discovered
+   */
+  @Nullable
+  public Discovery get(String treasureId) {
+    return discoveries.get(treasureId);
+  }
+}
@@ -0,0 +1,339 @@
+package edu.northeastern.numad25su_group6.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+import edu.northeastern.numad25su_group6.scoring.DiscoveryEvent;
+import edu.northeastern.numad25su_group6.scoring.ScoringEngine;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * DiscoveryCommitter records a discovery atomically. A transaction on the treasure claims the
+ * finder's place, which decides the points, so concurrent finders never share a place. The claim is
+ * recorded under the treasure in the same transaction, so a retry after a failed write finds it and
+ * reuses the place instead of claiming a second one; it is cleared once the discovery is written. A
+ * transaction on the user's statistics then adds the points and records the move between
+ * leaderboard buckets, and the discovery record is written together with that move in one
+ * multi-path update. A discovery only counts as committed once the top of the leaderboard was
+ * updated as well; a retry of a written discovery repeats that step. Points are decided by the
+ * {@link ScoringEngine}, and the materialized leaderboard is kept up to date by the
+ * {@link LeaderboardMaintainer}.
+ */
+public class DiscoveryCommitter {
+
+  /**
+   * Callback notified when a discovery is committed or fails.
+   */
+  public interface Callback {
+
+    /**
+     * Called when the discovery was written.
+     *
+     * @param pointsEarned  Points earned for the discovery
+     * @param discoveryTime The time of discovery in milliseconds
+     */
+    void onCommitted(int pointsEarned, long discoveryTime);
+
+    /**
+     * Called when the discovery could not be written.
+     *
+     * @param message The error message
+     */
+    void onFailed(String message);
+  }
+
+  // Rules that turn a finder place into points
+  private static final ScoringEngine SCORING = ScoringEngine.defaultRules();
+
+  // Child of a treasure where finders' places are recorded until their discovery is written
+  private static final String FIELD_CLAIMS = "claims";
+
+  private final String userId;
+  private final DatabaseReference rootRef = FirebaseDatabase.getInstance().getReference();
+
+  // Treasures with a commit in flight, so a double tap cannot claim two places
+  private final Set<String> inFlight = new HashSet<>();
+
+  /**
+   * Constructor for DiscoveryCommitter.
+   *
+   * @param userId The ID of the current user
+   */
+  public DiscoveryCommitter(String userId) {
+    this.userId = userId;
+  }
+
+  /**
+   * Returns the points a discovery is expected to earn, judged from the discovery count last seen
+   * on the device. The committed points are decided by the place claimed on the server.
+   *
+   * @param userId           The ID of the user
+   * @param treasureId       The ID of the discovered treasure
+   * @param totalDiscoveries The number of earlier discoveries of the treasure
+   * @param discoveryTime    The time of discovery in milliseconds
+   * @return The expected points
+   */
+  public static int expectedPoints(String userId, String treasureId, int totalDiscoveries,
+      long discoveryTime) {
+    return SCORING.score(
+        new DiscoveryEvent(userId, treasureId, totalDiscoveries + 1, discoveryTime, 0, 0));
+  }
+
+  /**
+   * Commits a discovery of the given treasure by the current user. A discovery that is already in
+   * the user's discovery index is not committed again, only the top of the leaderboard is updated,
+   * and a retry reuses the place claimed by the failed attempt, so a retried commit is safe.
+   *
+   * @param treasureId    The ID of the discovered treasure
+   * @param discoveryId   Key of the discovery record
+   * @param discoveryTime The time of discovery in milliseconds
+   * @param callback      Callback notified with the result
+   * @return false if a commit for the treasure is already in flight
+   */
+  public boolean commit(String treasureId, String discoveryId, long discoveryTime,
+      Callback callback) {
+    if (!inFlight.add(treasureId)) {
+      return false;
+    }
+    rootRef.child("userDiscoveries").child(userId).child(treasureId)
+        .addListenerForSingleValueEvent(new ValueEventListener() {
+          @Override
+          public void onDataChange(@NonNull DataSnapshot snapshot) {
+            Integer points = snapshot.child("pointsEarned").getValue(Integer.class);
+            Long time = snapshot.child("discoveryTime").getValue(Long.class);
+            if (snapshot.exists()) {
+              int pointsEarned = points != null ? points : 0;
+              long committedTime = time != null ? time : discoveryTime;
+              if (pointsEarned > 0) {
+                readPointsForTop(treasureId, pointsEarned, committedTime, callback);
+              } else {
+                inFlight.remove(treasureId);
+                callback.onCommitted(pointsEarned, committedTime);
+              }
+              return;
+            }
+            claimPlace(treasureId, discoveryId, discoveryTime, callback);
+          }
+
+          @Override
+          public void onCancelled(@NonNull DatabaseError error) {
+            inFlight.remove(treasureId);
+            callback.onFailed(error.getMessage());
+          }
+        });
+    return true;
+  }
+
+  /**
+   * Claims the user's place among the finders of the treasure and writes the discovery. The
+   * transaction increments the treasure's discovery counter and records the place under the
+   * user's ID in the same step; a place the user already claimed is kept as it is.
+   *
+   * @param treasureId    The ID of the discovered treasure
+   * @param discoveryId   Key of the discovery record
+   * @param discoveryTime The time of discovery in milliseconds
+   * @param callback      Callback notified with the result
+   */
+  private void claimPlace(String treasureId, String discoveryId, long discoveryTime,
+      Callback callback) {
+    rootRef.child("treasures").child(treasureId).runTransaction(new Transaction.Handler() {
+      @NonNull
+      @Override
+      public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+        // Not cached yet, the server runs the transaction again with the stored treasure
+        if (currentData.getValue() == null) {
+          return Transaction.success(currentData);
+        }
+        MutableData claim = currentData.child(FIELD_CLAIMS).child(userId);
+        if (claim.getValue() != null) {
+          return Transaction.success(currentData);
+        }
+        MutableData counter = currentData.child("totalDiscoveries");
+        Long count = counter.getValue(Long.class);
+        long place = (count != null ? count : 0) + 1;
+        counter.setValue(place);
+        claim.setValue(place);
+        return Transaction.success(currentData);
+      }
+
+      @Override
+      public void onComplete(@Nullable DatabaseError error, boolean committed,
+          @Nullable DataSnapshot currentData) {
+        Long place = currentData != null
+            ? currentData.child(FIELD_CLAIMS).child(userId).getValue(Long.class) : null;
+        if (error != null || !committed || place == null) {
+          inFlight.remove(treasureId);
+          callback.onFailed(error != null ? error.getMessage() : "Discovery was not saved");
+          return;
+        }
+        writeAtPlace(treasureId, discoveryId, discoveryTime, place, callback);
+      }
+    });
+  }
+
+  /**
+   * Writes the discovery with the points earned at the claimed place.
+   *
+   * @param treasureId    The ID of the discovered treasure
+   * @param discoveryId   Key of the discovery record
+   * @param discoveryTime The time of discovery in milliseconds
+   * @param place         The claimed place, starting at 1
+   * @param callback      Callback notified with the result
+   */
+  private void writeAtPlace(String treasureId, String discoveryId, long discoveryTime,
+      long place, Callback callback) {
+    int pointsEarned = expectedPoints(userId, treasureId, (int) (place - 1), discoveryTime);
+    if (pointsEarned > 0) {
+      addPoints(treasureId, discoveryId, discoveryTime, pointsEarned, callback);
+    } else {
+      writeDiscovery(treasureId, discoveryId, discoveryTime, pointsEarned, null, callback);
+    }
+  }
+
+  /**
+   * Adds the points to the user's statistics in a transaction, which records the move between
+   * leaderboard buckets under the discovery ID, and then writes the discovery. A retry finds the
+   * move still recorded and does not add the points again.
+   *
+   * @param treasureId    The ID of the discovered treasure
+   * @param discoveryId   Key of the discovery record
+   * @param discoveryTime The time of discovery in milliseconds
+   * @param pointsEarned  Points earned for the discovery
+   * @param callback      Callback notified with the result
+   */
+  private void addPoints(String treasureId, String discoveryId, long discoveryTime,
+      int pointsEarned, Callback callback) {
+    rootRef.child("userstats").child(userId).runTransaction(new Transaction.Handler() {
+      @NonNull
+      @Override
+      public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+        return LeaderboardMaintainer.addPoints(currentData, userId, discoveryId, pointsEarned);
+      }
+
+      @Override
+      public void onComplete(@Nullable DatabaseError error, boolean committed,
+          @Nullable DataSnapshot currentData) {
+        LeaderboardMaintainer.BucketMove move =
+            LeaderboardMaintainer.pendingMove(currentData, discoveryId);
+        if (error != null || !committed || move == null) {
+          inFlight.remove(treasureId);
+          callback.onFailed(error != null ? error.getMessage() : "Points were not saved");
+          return;
+        }
+        writeDiscovery(treasureId, discoveryId, discoveryTime, pointsEarned, move, callback);
+      }
+    });
+  }
+
+  /**
+   * Writes the discovery record, its entry in the user's discovery index, the user's counters and
+   * the move between leaderboard buckets in one multi-path update, which also clears the claimed
+   * place, then updates the top of the leaderboard.
+   *
+   * @param treasureId    The ID of the discovered treasure
+   * @param discoveryId   Key of the discovery record
+   * @param discoveryTime The time of discovery in milliseconds
+   * @param pointsEarned  Points earned for the discovery
+   * @param move          The bucket move recorded with the points, or null if none were earned
+   * @param callback      Callback notified with the result
+   */
+  private void writeDiscovery(String treasureId, String discoveryId, long discoveryTime,
+      int pointsEarned, @Nullable LeaderboardMaintainer.BucketMove move, Callback callback) {
+    Map<String, Object> discovery = new HashMap<>();
+    discovery.put("userId", userId);
+    discovery.put("treasureId", treasureId);
+    discovery.put("discoveryTime", discoveryTime);
+    discovery.put("pointsEarned", pointsEarned);
+
+    // Index entry keyed by treasure ID, so checks for one treasure are single-key reads
+    Map<String, Object> indexEntry = new HashMap<>();
+    indexEntry.put("discoveryId", discoveryId);
+    indexEntry.put("discoveryTime", discoveryTime);
+    indexEntry.put("pointsEarned", pointsEarned);
+
+    Map<String, Object> updates = new HashMap<>();
+    UserStatsCounters.markCounted(discovery);
+    UserStatsCounters.markCounted(indexEntry);
+    updates.put("discoveries/" + discoveryId, discovery);
+    updates.put("userDiscoveries/" + userId + "/" + treasureId, indexEntry);
+    updates.put("treasures/" + treasureId + "/" + FIELD_CLAIMS + "/" + userId, null);
+    UserStatsCounters.addDiscoveryUpdates(updates, userId);
+    if (move != null) {
+      LeaderboardMaintainer.addMoveUpdates(updates, userId, discoveryId, move);
+    }
+
+    rootRef.updateChildren(updates)
+        .addOnSuccessListener(aVoid -> {
+          if (move != null) {
+            updateTop(treasureId, pointsEarned, discoveryTime, move.points, callback);
+          } else {
+            inFlight.remove(treasureId);
+            callback.onCommitted(pointsEarned, discoveryTime);
+          }
+        })
+        .addOnFailureListener(e -> {
+          inFlight.remove(treasureId);
+          callback.onFailed(e.getMessage());
+        });
+  }
+
+  /**
+   * Reads the user's current points to update the top of the leaderboard for a discovery that was
+   * written by an earlier attempt.
+   *
+   * @param treasureId    The ID of the discovered treasure
+   * @param pointsEarned  Points earned for the discovery
+   * @param discoveryTime The time of discovery in milliseconds
+   * @param callback      Callback notified with the result
+   */
+  private void readPointsForTop(String treasureId, int pointsEarned, long discoveryTime,
+      Callback callback) {
+    rootRef.child("userstats").child(userId).child("points")
+        .addListenerForSingleValueEvent(new ValueEventListener() {
+          @Override
+          public void onDataChange(@NonNull DataSnapshot snapshot) {
+            Long points = snapshot.getValue(Long.class);
+            updateTop(treasureId, pointsEarned, discoveryTime, points != null ? points : 0,
+                callback);
+          }
+
+          @Override
+          public void onCancelled(@NonNull DatabaseError error) {
+            inFlight.remove(treasureId);
+            callback.onFailed(error.getMessage());
+          }
+        });
+  }
+
+  /**
+   * Places the user in the top of the leaderboard and completes the commit. If the top list could
+   * not be updated, the commit fails so the caller retries it.
+   *
+   * @param treasureId    The ID of the discovered treasure
+   * @param pointsEarned  Points earned for the discovery
+   * @param discoveryTime The time of discovery in milliseconds
+   * @param points        The user's points after the discovery
+   * @param callback      Callback notified with the result
+   */
+  private void updateTop(String treasureId, int pointsEarned, long discoveryTime, long points,
+      Callback callback) {
+    LeaderboardMaintainer.updateTop(userId, points,
+        () -> {
+          inFlight.remove(treasureId);
+          callback.onCommitted(pointsEarned, discoveryTime);
+        },
+        error -> {
+          inFlight.remove(treasureId);
+          callback.onFailed(error.getMessage());
+        });
+  }
+}
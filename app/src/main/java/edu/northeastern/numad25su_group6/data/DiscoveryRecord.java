@@ -0,0 +1,75 @@
+package edu.northeastern.numad25su_group6.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.database.DataSnapshot;
+import java.util.Map;
+
+/**
+ * DiscoveryRecord is an immutable, decoded copy of a discovery node.
+ */
+public final class DiscoveryRecord {
+
+  public final String key;
+  public final String userId;
+  public final String treasureId;
+  public final long discoveryTime;
+  public final int pointsEarned;
+
+  /**
+   * Constructor for DiscoveryRecord.
+   *
+   * @param key           The key of the discovery node
+   * @param userId        The ID of the user who made the discovery
+   * @param treasureId    The ID of the discovered treasure
+   * @param discoveryTime The time of discovery in milliseconds
+   * @param pointsEarned  Points earned for the discovery
+   */
+  public DiscoveryRecord(String key, String userId, String treasureId, long discoveryTime,
+      int pointsEarned) {
+    this.key = key;
+    this.userId = userId;
+    this.treasureId = treasureId;
+    this.discoveryTime = discoveryTime;
+    this.pointsEarned = pointsEarned;
+  }
+
+  /**
+   * Decodes a discovery snapshot.
+   *
+   * @param snapshot The snapshot of a discovery node
+   * @return The record, or null if the node has no treasure ID
+   */
+  @Nullable
+  public static DiscoveryRecord fromSnapshot(@NonNull DataSnapshot snapshot) {
+    Map<?, ?> fields = SnapshotDecoder.fields(snapshot);
+    if (fields == null) {
+      return null;
+    }
+    String treasureId = SnapshotDecoder.string(fields, "treasureId");
+    if (treasureId == null) {
+      return null;
+    }
+    return new DiscoveryRecord(snapshot.getKey(), SnapshotDecoder.string(fields, "userId"),
+        treasureId, SnapshotDecoder.integer(fields, "discoveryTime", 0),
+        (int) SnapshotDecoder.integer(fields, "pointsEarned", 0));
+  }
+
+  /**
+   * Decodes an entry of the userDiscoveries/{uid} index, which is keyed by treasure ID.
+   *
+   * @param userId   The ID of the user who owns the index
+   * @param snapshot The snapshot of an index entry
+   * @return The record, or null if the entry does not exist
+   */
+  @Nullable
+  public static DiscoveryRecord fromIndexSnapshot(String userId, @NonNull DataSnapshot snapshot) {
+    Map<?, ?> fields = SnapshotDecoder.fields(snapshot);
+    if (fields == null) {
+      return null;
+    }
+    return new DiscoveryRecord(SnapshotDecoder.string(fields, "discoveryId"), userId,
+        snapshot.getKey(), SnapshotDecoder.integer(fields, "discoveryTime", 0),
+        (int) SnapshotDecoder.integer(fields, "pointsEarned", 0));
+  }
+}
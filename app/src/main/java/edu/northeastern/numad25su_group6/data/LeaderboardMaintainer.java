@@ -0,0 +1,376 @@
+package edu.northeastern.numad25su_group6.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * LeaderboardMaintainer keeps the materialized leaderboard up to date as points are written. The
+ * leaderboard node holds the top users with their profiles under leaderboard/top/{uid}, and the
+ * number of users per range of points under leaderboard/buckets/{bucket}, so both the top of the
+ * leaderboard and any user's rank are one small read.
+ *
+ * <p>Points change in a transaction on the user's statistics, which also stores the bucket the
+ * user is counted in and records the move between buckets under a key of the change. The move is
+ * then applied to the counts as server-side increments, in the same multi-path update that removes
+ * the record, so concurrent changes of the same user never count them in the wrong bucket and a
+ * retried change applies its move once. A user is counted once their record stores a bucket. The
+ * top list is updated afterwards by a transaction.
+ */
+public final class LeaderboardMaintainer {
+
+  // Number of users kept in the top list
+  public static final int TOP_SIZE = 50;
+
+  // Points per bucket, the step of the first finder reward, so ranks are exact under those rules
+  public static final int BUCKET_WIDTH = 10;
+
+  // Field of a userstats record holding the bucket the user is counted in
+  public static final String FIELD_BUCKET = "bucket";
+
+  // Field of a userstats record holding the moves between buckets not applied to the counts yet
+  private static final String FIELD_PENDING_MOVES = "pendingMoves";
+  private static final String FIELD_FROM = "from";
+  private static final String FIELD_TO = "to";
+
+  // Child of the leaderboard node holding the lowest points of the full top list, or 0. The lowest
+  // points only grow, so a stale value is never too high to skip a user who belongs in the list
+  private static final String FIELD_TOP_MIN = "topMin";
+
+  /**
+   * A move of a user between buckets, recorded with a change of their points.
+   */
+  public static final class BucketMove {
+
+    public final long points;
+
+    // Bucket the user leaves, or null if they were not counted before
+    @Nullable
+    public final Integer from;
+    public final int to;
+
+    /**
+     * Constructor for BucketMove.
+     *
+     * @param points The points of the user after the change
+     * @param from   The bucket the user leaves, or null if they were not counted before
+     * @param to     The bucket the user enters
+     */
+    BucketMove(long points, @Nullable Integer from, int to) {
+      this.points = points;
+      this.from = from;
+      this.to = to;
+    }
+  }
+
+  /**
+   * Private constructor, LeaderboardMaintainer only has static methods.
+   */
+  private LeaderboardMaintainer() {
+  }
+
+  /**
+   * Returns the bucket a score is counted in.
+   *
+   * @param points The score
+   * @return The bucket number
+   */
+  public static int bucketOf(long points) {
+    return (int) (Math.max(0, points) / BUCKET_WIDTH);
+  }
+
+  /**
+   * Adds points to a user's statistics and records the resulting bucket move under the given key.
+   * Must be called from the transaction on userstats/{uid}. A change whose move is still recorded
+   * was already applied by an earlier attempt, so its points are not added again.
+   *
+   * @param stats   The user's statistics in the transaction
+   * @param userId  The ID of the user
+   * @param moveKey Key of the change, e.g. the discovery ID
+   * @param earned  The points added
+   * @return The result of the transaction
+   */
+  public static Transaction.Result addPoints(MutableData stats, String userId, String moveKey,
+      long earned) {
+    if (stats.child(FIELD_PENDING_MOVES).child(moveKey).getValue() != null) {
+      return Transaction.success(stats);
+    }
+    Long points = stats.child("points").getValue(Long.class);
+    Integer from = stats.child(FIELD_BUCKET).getValue(Integer.class);
+    long newPoints = (points != null ? points : 0) + earned;
+    int to = bucketOf(newPoints);
+    stats.child("userid").setValue(userId);
+    stats.child("points").setValue(newPoints);
+    stats.child(FIELD_BUCKET).setValue(to);
+    Map<String, Object> move = new HashMap<>();
+    if (from != null) {
+      move.put(FIELD_FROM, from);
+    }
+    move.put(FIELD_TO, to);
+    stats.child(FIELD_PENDING_MOVES).child(moveKey).setValue(move);
+    return Transaction.success(stats);
+  }
+
+  /**
+   * Counts a user who is not counted in any bucket yet. Must be called from the transaction on
+   * userstats/{uid}; a user who is already counted is left unchanged.
+   *
+   * @param stats   The user's statistics in the transaction
+   * @param userId  The ID of the user
+   * @param moveKey Key of the change
+   * @return The result of the transaction
+   */
+  public static Transaction.Result countUser(MutableData stats, String userId, String moveKey) {
+    // The first run may see an empty cache, committing no change lets the server run it again
+    if (stats.getValue() == null) {
+      return Transaction.success(stats);
+    }
+    if (stats.child(FIELD_BUCKET).getValue() != null
+        && stats.child(FIELD_PENDING_MOVES).child(moveKey).getValue() == null) {
+      return Transaction.abort();
+    }
+    return addPoints(stats, userId, moveKey, 0);
+  }
+
+  /**
+   * Checks whether a user still has to be counted by {@link #countUser}, either because they are
+   * not counted in any bucket or because the move recorded by an earlier attempt was not applied.
+   *
+   * @param stats   Snapshot of the user's statistics
+   * @param moveKey Key of the change
+   * @return true if the user has to be counted
+   */
+  public static boolean needsCounting(DataSnapshot stats, String moveKey) {
+    return !stats.hasChild(FIELD_BUCKET) || stats.child(FIELD_PENDING_MOVES).hasChild(moveKey);
+  }
+
+  /**
+   * Returns the bucket move recorded under the given key.
+   *
+   * @param stats   Snapshot of the user's statistics, e.g. as committed by the transaction
+   * @param moveKey Key of the change
+   * @return The move, or null if none is recorded
+   */
+  @Nullable
+  public static BucketMove pendingMove(@Nullable DataSnapshot stats, String moveKey) {
+    if (stats == null) {
+      return null;
+    }
+    DataSnapshot move = stats.child(FIELD_PENDING_MOVES).child(moveKey);
+    Integer to = move.child(FIELD_TO).getValue(Integer.class);
+    if (to == null) {
+      return null;
+    }
+    Long points = stats.child("points").getValue(Long.class);
+    return new BucketMove(points != null ? points : 0, move.child(FIELD_FROM).getValue(
+        Integer.class), to);
+  }
+
+  /**
+   * Adds the writes that apply a recorded bucket move to the counts and remove the record to a
+   * multi-path update.
+   *
+   * @param updates The multi-path update, relative to the database root
+   * @param userId  The ID of the user
+   * @param moveKey Key of the change
+   * @param move    The recorded move
+   */
+  public static void addMoveUpdates(Map<String, Object> updates, String userId, String moveKey,
+      BucketMove move) {
+    if (move.from == null) {
+      updates.put("leaderboard/buckets/" + move.to, ServerValue.increment(1));
+    } else if (move.from != move.to) {
+      updates.put("leaderboard/buckets/" + move.from, ServerValue.increment(-1));
+      updates.put("leaderboard/buckets/" + move.to, ServerValue.increment(1));
+    }
+    updates.put("userstats/" + userId + "/" + FIELD_PENDING_MOVES + "/" + moveKey, null);
+  }
+
+  /**
+   * Adds the write that counts a new user with no points to a multi-path update, and stores the
+   * bucket in the statistics written for the user.
+   *
+   * @param updates The multi-path update, relative to the database root
+   * @param stats   The statistics of the new user, written in the same update
+   */
+  public static void addNewUserUpdates(Map<String, Object> updates, Map<String, Object> stats) {
+    stats.put(FIELD_BUCKET, bucketOf(0));
+    updates.put("leaderboard/buckets/" + bucketOf(0), ServerValue.increment(1));
+  }
+
+  /**
+   * Places a user with their new points in the top list, if they belong there. The lowest points
+   * of the list are read first, so users who cannot enter it skip the contended transaction on the
+   * list. The profile is then read so the list can be shown without further reads.
+   *
+   * @param userId  The ID of the user
+   * @param points  The new points of the user
+   * @param onDone  Action run once the list was updated or left unchanged
+   * @param onError Callback receiving the error if the profile or the list could not be written
+   */
+  public static void updateTop(String userId, long points, Runnable onDone,
+      SnapshotDecoder.Callback<DatabaseError> onError) {
+    DatabaseReference rootRef = FirebaseDatabase.getInstance().getReference();
+    DatabaseReference leaderboardRef = rootRef.child("leaderboard");
+    leaderboardRef.child(FIELD_TOP_MIN).addListenerForSingleValueEvent(new ValueEventListener() {
+      @Override
+      public void onDataChange(@NonNull DataSnapshot snapshot) {
+        Long topMin = snapshot.getValue(Long.class);
+        if (topMin != null && points < topMin) {
+          onDone.run();
+          return;
+        }
+        rootRef.child("users").child(userId)
+            .addListenerForSingleValueEvent(new ValueEventListener() {
+              @Override
+              public void onDataChange(@NonNull DataSnapshot snapshot) {
+                UserProfileRecord profile = UserProfileRecord.fromSnapshot(snapshot);
+                leaderboardRef.child("top").runTransaction(
+                    new TopListHandler(leaderboardRef, userId, points, profile, onDone, onError));
+              }
+
+              @Override
+              public void onCancelled(@NonNull DatabaseError error) {
+                onError.onDecoded(error);
+              }
+            });
+      }
+
+      @Override
+      public void onCancelled(@NonNull DatabaseError error) {
+        onError.onDecoded(error);
+      }
+    });
+  }
+
+  /**
+   * Creates the value stored for a user in the top list.
+   *
+   * @param points  The points of the user
+   * @param profile The profile of the user
+   * @return The entry
+   */
+  public static Map<String, Object> topEntry(long points, UserProfileRecord profile) {
+    Map<String, Object> entry = new HashMap<>();
+    entry.put("points", points);
+    entry.put("firstname", profile.firstName);
+    entry.put("lastname", profile.lastName);
+    entry.putAll(profile.profileImage.toFields("profileImageUrl"));
+    return entry;
+  }
+
+  /**
+   * Transaction that inserts or moves one user in the top list and drops the lowest entry when the
+   * list grows beyond its size. Points only grow, so a user who does not beat the lowest entry of
+   * a full list leaves it unchanged. A committed change records the new lowest points of a full
+   * list for {@link #updateTop}.
+   */
+  private static final class TopListHandler implements Transaction.Handler {
+
+    private final DatabaseReference leaderboardRef;
+    private final String userId;
+    private final long points;
+    private final UserProfileRecord profile;
+    private final Runnable onDone;
+    private final SnapshotDecoder.Callback<DatabaseError> onError;
+
+    /**
+     * Constructor for TopListHandler.
+     *
+     * @param leaderboardRef Reference to the leaderboard node
+     * @param userId         The ID of the user
+     * @param points         The new points of the user
+     * @param profile        The profile of the user
+     * @param onDone         Action run once the list was updated or left unchanged
+     * @param onError        Callback receiving the error if the transaction failed
+     */
+    TopListHandler(DatabaseReference leaderboardRef, String userId, long points,
+        UserProfileRecord profile, Runnable onDone,
+        SnapshotDecoder.Callback<DatabaseError> onError) {
+      this.leaderboardRef = leaderboardRef;
+      this.userId = userId;
+      this.points = points;
+      this.profile = profile;
+      this.onDone = onDone;
+      this.onError = onError;
+    }
+
+    @NonNull
+    @Override
+    public Transaction.Result doTransaction(@NonNull MutableData top) {
+      MutableData own = top.child(userId);
+      if (own.getValue() != null) {
+        Long current = own.child("points").getValue(Long.class);
+        if (current != null && current >= points) {
+          return Transaction.abort();
+        }
+        own.setValue(topEntry(points, profile));
+        return Transaction.success(top);
+      }
+
+      // Find the lowest entry, ordered like the leaderboard by points and then key
+      String lowestKey = null;
+      long lowestPoints = Long.MAX_VALUE;
+      long count = 0;
+      for (MutableData entry : top.getChildren()) {
+        count++;
+        Long entryPoints = entry.child("points").getValue(Long.class);
+        long value = entryPoints != null ? entryPoints : 0;
+        if (value < lowestPoints || (value == lowestPoints && entry.getKey() != null
+            && (lowestKey == null || entry.getKey().compareTo(lowestKey) < 0))) {
+          lowestPoints = value;
+          lowestKey = entry.getKey();
+        }
+      }
+      if (count >= TOP_SIZE) {
+        if (points < lowestPoints || (points == lowestPoints && userId.compareTo(lowestKey) < 0)) {
+          return Transaction.abort();
+        }
+        top.child(lowestKey).setValue(null);
+      }
+      own.setValue(topEntry(points, profile));
+      return Transaction.success(top);
+    }
+
+    @Override
+    public void onComplete(@Nullable DatabaseError error, boolean committed,
+        @Nullable DataSnapshot currentData) {
+      // An aborted transaction left the list unchanged on purpose
+      if (error != null) {
+        onError.onDecoded(error);
+        return;
+      }
+      if (committed && currentData != null) {
+        leaderboardRef.child(FIELD_TOP_MIN).setValue(lowestPoints(currentData));
+      }
+      onDone.run();
+    }
+
+    /**
+     * Returns the lowest points of the top list if it is full.
+     *
+     * @param top The top list
+     * @return The lowest points, or 0 while the list has room for more users
+     */
+    private static long lowestPoints(DataSnapshot top) {
+      if (top.getChildrenCount() < TOP_SIZE) {
+        return 0;
+      }
+      long lowest = Long.MAX_VALUE;
+      for (DataSnapshot entry : top.getChildren()) {
+        Long points = entry.child("points").getValue(Long.class);
+        lowest = Math.min(lowest, points != null ? points : 0);
+      }
+      return lowest;
+    }
+  }
+}
@@ -0,0 +1,250 @@
+package edu.northeastern.numad25su_group6.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LeaderboardStore reads the leaderboard page by page, highest points first. The first page is the
+ * materialized top list maintained by {@link LeaderboardMaintainer}, which includes the profiles.
+ * Every further page is one query on userstats ordered by points that ends before the last entry
+ * of the previous page, so opening the leaderboard only downloads the rows that are shown.
+ */
+public class LeaderboardStore {
+
+  /**
+   * One page of the leaderboard, highest points first.
+   */
+  public static final class Page {
+
+    public final List<UserStatsRecord> entries;
+    public final boolean hasMore;
+
+    // Profiles stored along with the entries, only filled for the top list
+    public final List<UserProfileRecord> profiles;
+
+    // Position of the last entry on the page, where the next page ends
+    private final int lastPoints;
+    private final String lastKey;
+
+    /**
+     * Constructor for Page.
+     *
+     * @param entries    The statistics on the page
+     * @param profiles   The profiles stored with the entries
+     * @param hasMore    Whether more entries follow the page
+     * @param lastPoints Points of the last entry on the page
+     * @param lastKey    Key of the last entry on the page
+     */
+    Page(List<UserStatsRecord> entries, List<UserProfileRecord> profiles, boolean hasMore,
+        int lastPoints, String lastKey) {
+      this.entries = entries;
+      this.profiles = profiles;
+      this.hasMore = hasMore;
+      this.lastPoints = lastPoints;
+      this.lastKey = lastKey;
+    }
+  }
+
+  /**
+   * Receives live changes of the top list.
+   */
+  public interface TopListener {
+
+    /**
+     * Called when a user entered the top list or their entry changed.
+     *
+     * @param entry   The points of the user
+     * @param profile The profile stored with the entry
+     */
+    void onEntryChanged(UserStatsRecord entry, UserProfileRecord profile);
+
+    /**
+     * Called when a user dropped out of the top list.
+     *
+     * @param userId The ID of the user
+     */
+    void onEntryRemoved(String userId);
+  }
+
+  private final DatabaseReference statsRef =
+      FirebaseDatabase.getInstance().getReference("userstats");
+  private final DatabaseReference topRef =
+      FirebaseDatabase.getInstance().getReference("leaderboard").child("top");
+
+  /**
+   * Loads the first page of the leaderboard from the materialized top list. While the top list
+   * has not been built yet, the first page is read from userstats instead.
+   *
+   * @param size     The maximum number of entries on the page if it is read from userstats
+   * @param callback Callback receiving the page on the main thread
+   * @param onError  Callback receiving query errors, or null to ignore them
+   */
+  public void loadTop(int size, SnapshotDecoder.Callback<Page> callback,
+      @Nullable SnapshotDecoder.Callback<DatabaseError> onError) {
+    topRef.addListenerForSingleValueEvent(SnapshotDecoder.listener(
+        LeaderboardStore::decodeTop,
+        page -> {
+          if (page.entries.isEmpty()) {
+            loadPage(null, size, callback, onError);
+          } else {
+            callback.onDecoded(page);
+          }
+        },
+        onError));
+  }
+
+  /**
+   * Subscribes to changes of the top list. The entries already in the list are delivered first.
+   * Entries are a handful of fields, so they are decoded on the main thread.
+   *
+   * @param listener Listener receiving the changes on the main thread
+   * @return The registered listener, to be passed to {@link #removeTopListener}
+   */
+  public ChildEventListener addTopListener(TopListener listener) {
+    return topRef.addChildEventListener(new ChildEventListener() {
+      @Override
+      public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousKey) {
+        deliver(snapshot);
+      }
+
+      @Override
+      public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousKey) {
+        deliver(snapshot);
+      }
+
+      @Override
+      public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+        if (snapshot.getKey() != null) {
+          listener.onEntryRemoved(snapshot.getKey());
+        }
+      }
+
+      @Override
+      public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousKey) {
+      }
+
+      @Override
+      public void onCancelled(@NonNull DatabaseError error) {
+      }
+
+      /**
+       * Decodes an entry of the top list and passes it on.
+       *
+       * @param snapshot The snapshot of the entry
+       */
+      private void deliver(DataSnapshot snapshot) {
+        Map<?, ?> fields = SnapshotDecoder.fields(snapshot);
+        if (fields != null && snapshot.getKey() != null) {
+          listener.onEntryChanged(new UserStatsRecord(snapshot.getKey(),
+              (int) SnapshotDecoder.integer(fields, "points", 0)),
+              UserProfileRecord.fromSnapshot(snapshot));
+        }
+      }
+    });
+  }
+
+  /**
+   * Unsubscribes from changes of the top list.
+   *
+   * @param listener The listener returned by {@link #addTopListener}
+   */
+  public void removeTopListener(ChildEventListener listener) {
+    topRef.removeEventListener(listener);
+  }
+
+  /**
+   * Loads the page of the leaderboard that follows the given page.
+   *
+   * @param after    The previous page, or null for the top of the leaderboard
+   * @param size     The maximum number of entries on the page
+   * @param callback Callback receiving the page on the main thread
+   * @param onError  Callback receiving query errors, or null to ignore them
+   */
+  public void loadPage(@Nullable Page after, int size, SnapshotDecoder.Callback<Page> callback,
+      @Nullable SnapshotDecoder.Callback<DatabaseError> onError) {
+    Query query = statsRef.orderByChild("points");
+    if (after != null) {
+      query = query.endBefore(after.lastPoints, after.lastKey);
+    }
+
+    // One extra entry tells whether another page follows
+    query.limitToLast(size + 1).addListenerForSingleValueEvent(SnapshotDecoder.listener(
+        snapshot -> decodePage(snapshot, size), callback, onError));
+  }
+
+  /**
+   * Decodes a page of the leaderboard. Runs on the decoder thread.
+   *
+   * @param snapshot Snapshot of up to size + 1 entries in ascending order of points
+   * @param size     The maximum number of entries on the page
+   * @return The page
+   */
+  private static Page decodePage(DataSnapshot snapshot, int size) {
+    List<UserStatsRecord> entries = new ArrayList<>();
+    List<String> keys = new ArrayList<>();
+    for (DataSnapshot child : snapshot.getChildren()) {
+      UserStatsRecord record = UserStatsRecord.fromSnapshot(child);
+      if (record != null) {
+        entries.add(record);
+        keys.add(child.getKey());
+      }
+    }
+
+    // Firebase returns ascending, reverse for descending
+    Collections.reverse(entries);
+    Collections.reverse(keys);
+
+    // The extra entry has the fewest points and belongs to the next page
+    boolean hasMore = snapshot.getChildrenCount() > size;
+    if (entries.size() > size) {
+      entries.remove(size);
+      keys.remove(size);
+    }
+    if (entries.isEmpty()) {
+      return new Page(Collections.emptyList(), Collections.emptyList(), false, 0, null);
+    }
+    int last = entries.size() - 1;
+    return new Page(Collections.unmodifiableList(entries), Collections.emptyList(), hasMore,
+        entries.get(last).points, keys.get(last));
+  }
+
+  /**
+   * Decodes the materialized top list, keyed by user ID. Runs on the decoder thread.
+   *
+   * @param snapshot Snapshot of the top list
+   * @return The page, followed by the rest of the leaderboard in userstats
+   */
+  private static Page decodeTop(DataSnapshot snapshot) {
+    List<UserStatsRecord> entries = new ArrayList<>();
+    List<UserProfileRecord> profiles = new ArrayList<>();
+    for (DataSnapshot child : snapshot.getChildren()) {
+      Map<?, ?> fields = SnapshotDecoder.fields(child);
+      if (fields == null || child.getKey() == null) {
+        continue;
+      }
+      entries.add(new UserStatsRecord(child.getKey(),
+          (int) SnapshotDecoder.integer(fields, "points", 0)));
+      profiles.add(UserProfileRecord.fromSnapshot(child));
+    }
+
+    // Same order as userstats pages: descending by points, then by key
+    entries.sort((a, b) -> a.points != b.points ? Integer.compare(b.points, a.points)
+        : b.userId.compareTo(a.userId));
+    if (entries.isEmpty()) {
+      return new Page(Collections.emptyList(), Collections.emptyList(), false, 0, null);
+    }
+    UserStatsRecord last = entries.get(entries.size() - 1);
+    return new Page(Collections.unmodifiableList(entries), Collections.unmodifiableList(profiles),
+        true, last.points, last.userId);
+  }
+}
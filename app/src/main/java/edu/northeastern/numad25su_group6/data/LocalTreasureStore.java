@@ -0,0 +1,347 @@
+package edu.northeastern.numad25su_group6.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
+import edu.northeastern.numad25su_group6.images.ImageVariants;
+import edu.northeastern.numad25su_group6.utils.GeoHash;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * LocalTreasureStore keeps the last-seen treasures around the user, and the user's discoveries and
+ * bookmarks, in a local SQLite database. The map renders from it right away on launch, before or
+ * without a connection, and reconciles with the live data as it arrives. All database work runs on
+ * one background thread; results are posted to the main thread.
+ */
+public class LocalTreasureStore extends SQLiteOpenHelper {
+
+  /**
+   * Receives data loaded from the store on the main thread.
+   *
+   * @param <T> The type of the loaded data
+   */
+  public interface Callback<T> {
+
+    /**
+     * Called with the loaded data.
+     *
+     * @param result The loaded data
+     */
+    void onLoaded(T result);
+  }
+
+  private static final String DB_NAME = "treasure_cache.db";
+  private static final int DB_VERSION = 2;
+
+  // Version that added the smaller image variants, which older databases gain in place
+  private static final int VERSION_IMAGE_VARIANTS = 2;
+
+  // Least recently seen treasures beyond this count are evicted
+  private static final int MAX_CACHED_TREASURES = 2000;
+
+  // Tables and columns
+  private static final String TABLE_TREASURES = "treasures";
+  private static final String TABLE_DISCOVERIES = "discoveries";
+  private static final String TABLE_BOOKMARKS = "bookmarks";
+  private static final String COL_ID = "id";
+  private static final String COL_TITLE = "title";
+  private static final String COL_DESCRIPTION = "description";
+  private static final String COL_IMAGE_URL = "image_url";
+  private static final String COL_IMAGE_URL_SMALL = "image_url_small";
+  private static final String COL_IMAGE_URL_MEDIUM = "image_url_medium";
+  private static final String COL_LATITUDE = "latitude";
+  private static final String COL_LONGITUDE = "longitude";
+  private static final String COL_CREATED_BY = "created_by";
+  private static final String COL_TOTAL_DISCOVERIES = "total_discoveries";
+  private static final String COL_GEOHASH = "geohash";
+  private static final String COL_LAST_SEEN = "last_seen";
+  private static final String COL_USER_ID = "user_id";
+  private static final String COL_TREASURE_ID = "treasure_id";
+  private static final String COL_DISCOVERY_TIME = "discovery_time";
+  private static final String COL_POINTS_EARNED = "points_earned";
+
+  private static LocalTreasureStore instance;
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  // Treasure writes waiting to be flushed in one transaction, guarded by this
+  private final Map<String, TreasureRecord> pendingTreasures = new LinkedHashMap<>();
+  private boolean flushScheduled = false;
+
+  /**
+   * Returns the shared store.
+   *
+   * @param context Context used to open the database
+   * @return The store
+   */
+  public static synchronized LocalTreasureStore getInstance(Context context) {
+    if (instance == null) {
+      instance = new LocalTreasureStore(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  /**
+   * Constructor for LocalTreasureStore.
+   *
+   * @param context The application context
+   */
+  private LocalTreasureStore(Context context) {
+    super(context, DB_NAME, null, DB_VERSION);
+  }
+
+  @Override
+  public void onCreate(SQLiteDatabase db) {
+    db.execSQL("CREATE TABLE " + TABLE_TREASURES + " ("
+        + COL_ID + " TEXT PRIMARY KEY, "
+        + COL_TITLE + " TEXT, "
+        + COL_DESCRIPTION + " TEXT, "
+        + COL_IMAGE_URL + " TEXT, "
+        + COL_IMAGE_URL_SMALL + " TEXT, "
+        + COL_IMAGE_URL_MEDIUM + " TEXT, "
+        + COL_LATITUDE + " REAL NOT NULL, "
+        + COL_LONGITUDE + " REAL NOT NULL, "
+        + COL_CREATED_BY + " TEXT, "
+        + COL_TOTAL_DISCOVERIES + " INTEGER NOT NULL DEFAULT 0, "
+        + COL_GEOHASH + " TEXT NOT NULL, "
+        + COL_LAST_SEEN + " INTEGER NOT NULL)");
+    db.execSQL("CREATE INDEX idx_treasures_geohash ON " + TABLE_TREASURES
+        + " (" + COL_GEOHASH + ")");
+    db.execSQL("CREATE INDEX idx_treasures_last_seen ON " + TABLE_TREASURES
+        + " (" + COL_LAST_SEEN + ")");
+    db.execSQL("CREATE TABLE " + TABLE_DISCOVERIES + " ("
+        + COL_USER_ID + " TEXT NOT NULL, "
+        + COL_TREASURE_ID + " TEXT NOT NULL, "
+        + COL_DISCOVERY_TIME + " INTEGER NOT NULL, "
+        + COL_POINTS_EARNED + " INTEGER NOT NULL, "
+        + "PRIMARY KEY (" + COL_USER_ID + ", " + COL_TREASURE_ID + "))");
+    db.execSQL("CREATE TABLE " + TABLE_BOOKMARKS + " ("
+        + COL_USER_ID + " TEXT NOT NULL, "
+        + COL_TREASURE_ID + " TEXT NOT NULL, "
+        + "PRIMARY KEY (" + COL_USER_ID + ", " + COL_TREASURE_ID + "))");
+  }
+
+  @Override
+  public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    // Cached treasures lack the smaller variants until they are seen again
+    if (oldVersion == VERSION_IMAGE_VARIANTS - 1) {
+      db.execSQL("ALTER TABLE " + TABLE_TREASURES + " ADD COLUMN " + COL_IMAGE_URL_SMALL + " TEXT");
+      db.execSQL("ALTER TABLE " + TABLE_TREASURES + " ADD COLUMN " + COL_IMAGE_URL_MEDIUM
+          + " TEXT");
+      return;
+    }
+
+    // The store is only a cache, so it is rebuilt from live data after any other schema change
+    db.execSQL("DROP TABLE IF EXISTS " + TABLE_TREASURES);
+    db.execSQL("DROP TABLE IF EXISTS " + TABLE_DISCOVERIES);
+    db.execSQL("DROP TABLE IF EXISTS " + TABLE_BOOKMARKS);
+    onCreate(db);
+  }
+
+  /**
+   * Loads the cached treasures, most recently seen first.
+   *
+   * @param callback Callback receiving the treasures on the main thread
+   */
+  public void loadTreasures(Callback<List<TreasureRecord>> callback) {
+    executor.execute(() -> {
+      List<TreasureRecord> treasures = new ArrayList<>();
+      try (Cursor cursor = getReadableDatabase().query(TABLE_TREASURES,
+          new String[]{COL_ID, COL_TITLE, COL_DESCRIPTION, COL_IMAGE_URL_SMALL,
+              COL_IMAGE_URL_MEDIUM, COL_IMAGE_URL, COL_LATITUDE, COL_LONGITUDE, COL_CREATED_BY,
+              COL_TOTAL_DISCOVERIES},
+          null, null, null, null, COL_LAST_SEEN + " DESC")) {
+        while (cursor.moveToNext()) {
+          ImageVariants image = new ImageVariants(cursor.getString(3), cursor.getString(4),
+              cursor.getString(5));
+          treasures.add(new TreasureRecord(cursor.getString(0), cursor.getString(1),
+              cursor.getString(2), image, cursor.getDouble(6), cursor.getDouble(7),
+              cursor.getString(8), cursor.getInt(9)));
+        }
+      }
+      mainHandler.post(() -> callback.onLoaded(treasures));
+    });
+  }
+
+  /**
+   * Caches a treasure. Writes are batched, so a burst of treasures is stored in one transaction.
+   *
+   * @param treasure The treasure to cache
+   */
+  public void putTreasure(TreasureRecord treasure) {
+    if (!treasure.hasLocation()) {
+      return;
+    }
+    synchronized (this) {
+      pendingTreasures.put(treasure.id, treasure);
+      if (flushScheduled) {
+        return;
+      }
+      flushScheduled = true;
+    }
+    executor.execute(this::flushTreasures);
+  }
+
+  /**
+   * Removes cached treasures inside a geohash cell that the live data no longer contains.
+   *
+   * @param cell        The geohash prefix of the cell
+   * @param treasureIds IDs of the treasures the live data reported for the cell
+   */
+  public void removeStaleTreasures(String cell, Set<String> treasureIds) {
+    executor.execute(() -> {
+      SQLiteDatabase db = getWritableDatabase();
+      List<String> stale = new ArrayList<>();
+      try (Cursor cursor = db.query(TABLE_TREASURES, new String[]{COL_ID},
+          COL_GEOHASH + " >= ? AND " + COL_GEOHASH + " <= ?",
+          new String[]{cell, GeoHash.rangeEnd(cell)}, null, null, null)) {
+        while (cursor.moveToNext()) {
+          if (!treasureIds.contains(cursor.getString(0))) {
+            stale.add(cursor.getString(0));
+          }
+        }
+      }
+      for (String treasureId : stale) {
+        db.delete(TABLE_TREASURES, COL_ID + " = ?", new String[]{treasureId});
+      }
+    });
+  }
+
+  /**
+   * Loads the cached discoveries of a user.
+   *
+   * @param userId   The ID of the user
+   * @param callback Callback receiving the discoveries keyed by treasure ID on the main thread
+   */
+  public void loadDiscoveries(String userId,
+      Callback<Map<String, DiscoveredTreasuresStore.Discovery>> callback) {
+    executor.execute(() -> {
+      Map<String, DiscoveredTreasuresStore.Discovery> discoveries = new HashMap<>();
+      try (Cursor cursor = getReadableDatabase().query(TABLE_DISCOVERIES,
+          new String[]{COL_TREASURE_ID, COL_DISCOVERY_TIME, COL_POINTS_EARNED},
+          COL_USER_ID + " = ?", new String[]{userId}, null, null, null)) {
+        while (cursor.moveToNext()) {
+          discoveries.put(cursor.getString(0),
+              new DiscoveredTreasuresStore.Discovery(cursor.getLong(1), cursor.getInt(2)));
+        }
+      }
+      mainHandler.post(() -> callback.onLoaded(discoveries));
+    });
+  }
+
+  /**
+   * Caches a discovery of a user.
+   *
+   * @param userId     The ID of the user
+   * @param treasureId The ID of the discovered treasure
+   * @param discovery  The discovery details
+   */
+  public void putDiscovery(String userId, String treasureId,
+      DiscoveredTreasuresStore.Discovery discovery) {
+    executor.execute(() -> {
+      ContentValues values = new ContentValues();
+      values.put(COL_USER_ID, userId);
+      values.put(COL_TREASURE_ID, treasureId);
+      values.put(COL_DISCOVERY_TIME, discovery.discoveryTime);
+      values.put(COL_POINTS_EARNED, discovery.pointsEarned);
+      getWritableDatabase().insertWithOnConflict(TABLE_DISCOVERIES, null, values,
+          SQLiteDatabase.CONFLICT_REPLACE);
+    });
+  }
+
+  /**
+   * Loads whether a user bookmarked a treasure.
+   *
+   * @param userId     The ID of the user
+   * @param treasureId The ID of the treasure
+   * @param callback   Callback receiving the bookmark state on the main thread
+   */
+  public void loadBookmarked(String userId, String treasureId, Callback<Boolean> callback) {
+    executor.execute(() -> {
+      boolean bookmarked;
+      try (Cursor cursor = getReadableDatabase().query(TABLE_BOOKMARKS,
+          new String[]{COL_TREASURE_ID},
+          COL_USER_ID + " = ? AND " + COL_TREASURE_ID + " = ?",
+          new String[]{userId, treasureId}, null, null, null)) {
+        bookmarked = cursor.moveToFirst();
+      }
+      mainHandler.post(() -> callback.onLoaded(bookmarked));
+    });
+  }
+
+  /**
+   * Caches whether a user bookmarked a treasure.
+   *
+   * @param userId     The ID of the user
+   * @param treasureId The ID of the treasure
+   * @param bookmarked Whether the treasure is bookmarked
+   */
+  public void setBookmarked(String userId, String treasureId, boolean bookmarked) {
+    executor.execute(() -> {
+      SQLiteDatabase db = getWritableDatabase();
+      if (bookmarked) {
+        ContentValues values = new ContentValues();
+        values.put(COL_USER_ID, userId);
+        values.put(COL_TREASURE_ID, treasureId);
+        db.insertWithOnConflict(TABLE_BOOKMARKS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+      } else {
+        db.delete(TABLE_BOOKMARKS, COL_USER_ID + " = ? AND " + COL_TREASURE_ID + " = ?",
+            new String[]{userId, treasureId});
+      }
+    });
+  }
+
+  /**
+   * Writes all pending treasures in one transaction and evicts the least recently seen treasures
+   * beyond the cache size.
+   */
+  private void flushTreasures() {
+    List<TreasureRecord> batch;
+    synchronized (this) {
+      batch = new ArrayList<>(pendingTreasures.values());
+      pendingTreasures.clear();
+      flushScheduled = false;
+    }
+
+    SQLiteDatabase db = getWritableDatabase();
+    long now = System.currentTimeMillis();
+    db.beginTransaction();
+    try {
+      ContentValues values = new ContentValues();
+      for (TreasureRecord treasure : batch) {
+        values.clear();
+        values.put(COL_ID, treasure.id);
+        values.put(COL_TITLE, treasure.title);
+        values.put(COL_DESCRIPTION, treasure.description);
+        values.put(COL_IMAGE_URL, treasure.image.get(ImageVariants.Size.FULL));
+        values.put(COL_IMAGE_URL_SMALL, treasure.image.get(ImageVariants.Size.SMALL));
+        values.put(COL_IMAGE_URL_MEDIUM, treasure.image.get(ImageVariants.Size.MEDIUM));
+        values.put(COL_LATITUDE, treasure.latitude);
+        values.put(COL_LONGITUDE, treasure.longitude);
+        values.put(COL_CREATED_BY, treasure.createdByUserId);
+        values.put(COL_TOTAL_DISCOVERIES, treasure.totalDiscoveries);
+        values.put(COL_GEOHASH, GeoHash.encode(treasure.latitude, treasure.longitude));
+        values.put(COL_LAST_SEEN, now);
+        db.insertWithOnConflict(TABLE_TREASURES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+      }
+      db.execSQL("DELETE FROM " + TABLE_TREASURES + " WHERE " + COL_ID + " IN (SELECT " + COL_ID
+          + " FROM " + TABLE_TREASURES + " ORDER BY " + COL_LAST_SEEN + " DESC LIMIT -1 OFFSET "
+          + MAX_CACHED_TREASURES + ")");
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package edu.northeastern.numad25su_group6.data;
+
+import android.os.SystemClock;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import edu.northeastern.numad25su_group6.images.ImageVariants;
+import edu.northeastern.numad25su_group6.utils.ExpiringLruCache;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ProfileCache shares user profiles between screens for the whole process. A missing profile is
+ * fetched with a single-key read of users/{uid}; callers asking for a profile that is already
+ * being fetched wait for the same read, so every profile is read at most once until it expires.
+ * Profiles of different users are fetched in parallel. Must only be used on the main thread.
+ */
+public final class ProfileCache {
+
+  // Enough for a long scroll through the leaderboard, each profile is a few short strings
+  private static final int MAX_PROFILES = 1000;
+
+  // Names and pictures change rarely, so a profile is refreshed after half an hour
+  private static final long TTL_MILLIS = 30 * 60 * 1000;
+
+  private static ProfileCache instance;
+
+  private final DatabaseReference usersRef = FirebaseDatabase.getInstance().getReference("users");
+  private final ExpiringLruCache<String, UserProfileRecord> profiles =
+      new ExpiringLruCache<>(MAX_PROFILES, TTL_MILLIS);
+
+  // Callbacks waiting for profiles that are being fetched, keyed by user ID
+  private final Map<String, List<SnapshotDecoder.Callback<UserProfileRecord>>> pending =
+      new HashMap<>();
+
+  /**
+   * Returns the shared profile cache.
+   *
+   * @return The profile cache
+   */
+  public static ProfileCache getInstance() {
+    if (instance == null) {
+      instance = new ProfileCache();
+    }
+    return instance;
+  }
+
+  /**
+   * Private constructor, use {@link #getInstance()}.
+   */
+  private ProfileCache() {
+  }
+
+  /**
+   * Delivers the profile of a user. A cached profile is delivered right away, otherwise once it
+   * was fetched. If the fetch fails, a profile without any fields is delivered and not cached.
+   *
+   * @param userId   The ID of the user
+   * @param callback Callback receiving the profile on the main thread
+   */
+  public void get(String userId, SnapshotDecoder.Callback<UserProfileRecord> callback) {
+    UserProfileRecord profile = profiles.get(userId, SystemClock.elapsedRealtime());
+    if (profile != null) {
+      callback.onDecoded(profile);
+      return;
+    }
+
+    // Join a fetch that is already running
+    List<SnapshotDecoder.Callback<UserProfileRecord>> waiting = pending.get(userId);
+    if (waiting != null) {
+      waiting.add(callback);
+      return;
+    }
+    waiting = new ArrayList<>();
+    waiting.add(callback);
+    pending.put(userId, waiting);
+
+    usersRef.child(userId).addListenerForSingleValueEvent(SnapshotDecoder.listener(
+        UserProfileRecord::fromSnapshot,
+        fetched -> {
+          profiles.put(userId, fetched, SystemClock.elapsedRealtime());
+          deliver(userId, fetched);
+        },
+        error -> deliver(userId, new UserProfileRecord(userId, null, null, ImageVariants.NONE))));
+  }
+
+  /**
+   * Caches a profile that was read along with other data, e.g. the top of the leaderboard.
+   *
+   * @param profile The profile
+   */
+  public void put(UserProfileRecord profile) {
+    profiles.put(profile.userId, profile, SystemClock.elapsedRealtime());
+  }
+
+  /**
+   * Drops the cached profile of a user, e.g. after it was edited.
+   *
+   * @param userId The ID of the user
+   */
+  public void invalidate(String userId) {
+    profiles.remove(userId);
+  }
+
+  /**
+   * Delivers a fetched profile to every callback waiting for it.
+   *
+   * @param userId  The ID of the user
+   * @param profile The profile
+   */
+  private void deliver(String userId, UserProfileRecord profile) {
+    List<SnapshotDecoder.Callback<UserProfileRecord>> waiting = pending.remove(userId);
+    if (waiting != null) {
+      for (SnapshotDecoder.Callback<UserProfileRecord> callback : waiting) {
+        callback.onDecoded(profile);
+      }
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package edu.northeastern.numad25su_group6.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+import edu.northeastern.numad25su_group6.utils.RankIndex;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RankService answers rank lookups from a {@link RankIndex} over the leaderboard buckets that the
+ * {@link LeaderboardMaintainer} keeps up to date. The Realtime Database cannot count the users
+ * above a score on the server, so the service reads the small bucket node once per session and
+ * then applies every change incrementally; each lookup takes O(log B) for B buckets. Users in the
+ * same bucket share a rank, so ranks are only as precise as
+ * {@link LeaderboardMaintainer#BUCKET_WIDTH}. Must only be used on the main thread.
+ */
+public final class RankService {
+
+  private static RankService instance;
+
+  // Users counted per bucket, mirrored into the index
+  private final RankIndex index = new RankIndex();
+  private final Map<Integer, Integer> countsByBucket = new HashMap<>();
+
+  // Lookups waiting for the first full read of the buckets
+  private final List<Runnable> pending = new ArrayList<>();
+  private boolean isReady = false;
+  private boolean isStarted = false;
+
+  // Mirroring listener, detached when the service is reset
+  private DatabaseReference bucketsRef;
+  private ChildEventListener bucketsListener;
+
+  /**
+   * Returns the shared rank service.
+   *
+   * @return The rank service
+   */
+  public static RankService getInstance() {
+    if (instance == null) {
+      instance = new RankService();
+    }
+    return instance;
+  }
+
+  /**
+   * Private constructor, use {@link #getInstance()}.
+   */
+  private RankService() {
+  }
+
+  /**
+   * Delivers the rank of a score: one plus the number of users in higher buckets. The first lookup
+   * starts mirroring the buckets and is answered once the initial read completed.
+   *
+   * @param points   The score
+   * @param callback Callback receiving the rank on the main thread
+   * @param onError  Callback receiving query errors, or null to ignore them
+   */
+  public void rankOf(int points, SnapshotDecoder.Callback<Integer> callback,
+      @Nullable SnapshotDecoder.Callback<DatabaseError> onError) {
+    int bucket = LeaderboardMaintainer.bucketOf(points);
+    if (isReady) {
+      callback.onDecoded(index.rank(bucket));
+      return;
+    }
+    pending.add(() -> callback.onDecoded(index.rank(bucket)));
+    start(onError);
+  }
+
+  /**
+   * Starts mirroring the buckets. Value events are delivered after the child events of the same
+   * data, so the single value read marks the end of the initial load.
+   *
+   * @param onError Callback receiving query errors, or null to ignore them
+   */
+  private void start(@Nullable SnapshotDecoder.Callback<DatabaseError> onError) {
+    if (isStarted) {
+      return;
+    }
+    isStarted = true;
+    bucketsRef = FirebaseDatabase.getInstance().getReference("leaderboard").child("buckets");
+    bucketsListener = bucketsRef.addChildEventListener(new ChildEventListener() {
+      @Override
+      public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousKey) {
+        setCount(snapshot.getKey(), snapshot.getValue(Long.class));
+      }
+
+      @Override
+      public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousKey) {
+        setCount(snapshot.getKey(), snapshot.getValue(Long.class));
+      }
+
+      @Override
+      public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+        setCount(snapshot.getKey(), null);
+      }
+
+      @Override
+      public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousKey) {
+      }
+
+      @Override
+      public void onCancelled(@NonNull DatabaseError error) {
+        reset();
+      }
+    });
+    bucketsRef.addListenerForSingleValueEvent(new ValueEventListener() {
+      @Override
+      public void onDataChange(@NonNull DataSnapshot snapshot) {
+        isReady = true;
+        for (Runnable lookup : pending) {
+          lookup.run();
+        }
+        pending.clear();
+      }
+
+      @Override
+      public void onCancelled(@NonNull DatabaseError error) {
+        pending.clear();
+        reset();
+        if (onError != null) {
+          onError.onDecoded(error);
+        }
+      }
+    });
+  }
+
+  /**
+   * Updates the number of users in a bucket.
+   *
+   * @param key   The bucket number as stored
+   * @param count The number of users, or null if the bucket was removed
+   */
+  private void setCount(@Nullable String key, @Nullable Long count) {
+    int bucket;
+    try {
+      bucket = key != null ? Integer.parseInt(key) : -1;
+    } catch (NumberFormatException e) {
+      return;
+    }
+    if (bucket < 0) {
+      return;
+    }
+    int newCount = count != null ? (int) Math.max(0, count) : 0;
+    Integer oldCount = countsByBucket.put(bucket, newCount);
+    index.add(bucket, newCount - (oldCount != null ? oldCount : 0));
+  }
+
+  /**
+   * Forgets the mirrored data after a read was cancelled, so the next lookup starts over with a new
+   * service. The mirroring listener is detached, otherwise it would keep this instance alive and
+   * receive bucket changes for the rest of the process.
+   */
+  private void reset() {
+    if (bucketsListener != null) {
+      bucketsRef.removeEventListener(bucketsListener);
+      bucketsListener = null;
+    }
+    isReady = false;
+    isStarted = false;
+    if (instance == this) {
+      instance = null;
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package edu.northeastern.numad25su_group6.data;
+
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.ValueEventListener;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * SnapshotDecoder turns Firebase snapshots into immutable records on a background thread and posts
+ * only the finished result to the main thread. Firebase delivers every callback on the main thread,
+ * so walking large snapshots there stalls the UI. All work runs on one thread, so results are
+ * delivered in the order the snapshots arrived.
+ */
+public final class SnapshotDecoder {
+
+  /**
+   * Converts a snapshot into a result. Runs on the decoder thread and must not touch views.
+   *
+   * @param <T> The type of the result
+   */
+  public interface Decoder<T> {
+
+    /**
+     * Decodes the snapshot.
+     *
+     * @param snapshot The snapshot to decode
+     * @return The decoded result
+     */
+    T decode(@NonNull DataSnapshot snapshot);
+  }
+
+  /**
+   * Receives a decoded result on the main thread.
+   *
+   * @param <T> The type of the result
+   */
+  public interface Callback<T> {
+
+    /**
+     * Called with the decoded result.
+     *
+     * @param result The decoded result
+     */
+    void onDecoded(T result);
+  }
+
+  private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+  private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+  /**
+   * Private constructor, SnapshotDecoder only has static methods.
+   */
+  private SnapshotDecoder() {
+  }
+
+  /**
+   * Decodes a snapshot in the background and delivers the result on the main thread.
+   *
+   * @param snapshot The snapshot to decode
+   * @param decoder  Decoder converting the snapshot
+   * @param callback Callback receiving the result on the main thread
+   * @param <T>      The type of the result
+   */
+  public static <T> void decode(DataSnapshot snapshot, Decoder<T> decoder,
+      Callback<T> callback) {
+    EXECUTOR.execute(() -> {
+      T result = decoder.decode(snapshot);
+      MAIN_HANDLER.post(() -> callback.onDecoded(result));
+    });
+  }
+
+  /**
+   * Runs an action on the main thread after every decode queued so far has been delivered, e.g. a
+   * removal that must not overtake an earlier add.
+   *
+   * @param action The action to run on the main thread
+   */
+  public static void post(Runnable action) {
+    EXECUTOR.execute(() -> MAIN_HANDLER.post(action));
+  }
+
+  /**
+   * Creates a value listener that decodes every snapshot in the background.
+   *
+   * @param decoder  Decoder converting the snapshot
+   * @param callback Callback receiving the result on the main thread
+   * @param onError  Callback receiving query errors, or null to ignore them
+   * @param <T>      The type of the result
+   * @return The value listener
+   */
+  public static <T> ValueEventListener listener(Decoder<T> decoder, Callback<T> callback,
+      @Nullable Callback<DatabaseError> onError) {
+    return new ValueEventListener() {
+      @Override
+      public void onDataChange(@NonNull DataSnapshot snapshot) {
+        decode(snapshot, decoder, callback);
+      }
+
+      @Override
+      public void onCancelled(@NonNull DatabaseError error) {
+        if (onError != null) {
+          onError.onDecoded(error);
+        }
+      }
+    };
+  }
+
+  /**
+   * Returns the raw field map of an object snapshot. Reading the whole object once avoids a typed
+   * conversion per child.
+   *
+   * @param snapshot The snapshot of an object node
+   * @return The fields of the node, or null if it is not an object
+   */
+  @Nullable
+  static Map<?, ?> fields(DataSnapshot snapshot) {
+    Object value = snapshot.getValue();
+    return value instanceof Map ? (Map<?, ?>) value : null;
+  }
+
+  /**
+   * Reads a string field.
+   *
+   * @param fields The fields of a node
+   * @param key    The name of the field
+   * @return The value, or null if it is missing or not a string
+   */
+  @Nullable
+  static String string(Map<?, ?> fields, String key) {
+    Object value = fields.get(key);
+    return value instanceof String ? (String) value : null;
+  }
+
+  /**
+   * Reads a numeric field as a double.
+   *
+   * @param fields       The fields of a node
+   * @param key          The name of the field
+   * @param defaultValue The value used if the field is missing or not a number
+   * @return The value
+   */
+  static double number(Map<?, ?> fields, String key, double defaultValue) {
+    Object value = fields.get(key);
+    return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+  }
+
+  /**
+   * Reads a numeric field as a long.
+   *
+   * @param fields       The fields of a node
+   * @param key          The name of the field
+   * @param defaultValue The value used if the field is missing or not a number
+   * @return The value
+   */
+  static long integer(Map<?, ?> fields, String key, long defaultValue) {
+    Object value = fields.get(key);
+    return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+  }
+}
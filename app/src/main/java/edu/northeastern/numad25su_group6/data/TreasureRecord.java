@@ -0,0 +1,81 @@
+package edu.northeastern.numad25su_group6.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.database.DataSnapshot;
+import edu.northeastern.numad25su_group6.images.ImageVariants;
+import java.util.Map;
+
+/**
+ * TreasureRecord is an immutable, decoded copy of a treasure node. Missing coordinates are stored
+ * as NaN.
+ */
+public final class TreasureRecord {
+
+  public final String id;
+  public final String title;
+  public final String description;
+  public final ImageVariants image;
+  public final double latitude;
+  public final double longitude;
+  public final String createdByUserId;
+  public final int totalDiscoveries;
+
+  /**
+   * Constructor for TreasureRecord.
+   *
+   * @param id               The ID of the treasure
+   * @param title            The title of the treasure
+   * @param description      The description of the treasure
+   * @param image            The image variants of the treasure
+   * @param latitude         The latitude of the treasure
+   * @param longitude        The longitude of the treasure
+   * @param createdByUserId  The ID of the user who created the treasure
+   * @param totalDiscoveries Number of times the treasure was discovered
+   */
+  public TreasureRecord(String id, String title, String description, ImageVariants image,
+      double latitude, double longitude, String createdByUserId, int totalDiscoveries) {
+    this.id = id;
+    this.title = title;
+    this.description = description;
+    this.image = image;
+    this.latitude = latitude;
+    this.longitude = longitude;
+    this.createdByUserId = createdByUserId;
+    this.totalDiscoveries = totalDiscoveries;
+  }
+
+  /**
+   * Decodes a treasure snapshot.
+   *
+   * @param snapshot The snapshot of a treasure node
+   * @return The record, or null if the snapshot is not a treasure
+   */
+  @Nullable
+  public static TreasureRecord fromSnapshot(@NonNull DataSnapshot snapshot) {
+    Map<?, ?> fields = SnapshotDecoder.fields(snapshot);
+    if (fields == null || snapshot.getKey() == null) {
+      return null;
+    }
+    String description = SnapshotDecoder.string(fields, "description");
+    return new TreasureRecord(snapshot.getKey(),
+        SnapshotDecoder.string(fields, "title"),
+        description != null ? description : "",
+        new ImageVariants(SnapshotDecoder.string(fields, "imageUrlSmall"),
+            SnapshotDecoder.string(fields, "imageUrlMedium"),
+            SnapshotDecoder.string(fields, "imageUrl")),
+        SnapshotDecoder.number(fields, "latitude", Double.NaN),
+        SnapshotDecoder.number(fields, "longitude", Double.NaN),
+        SnapshotDecoder.string(fields, "createdByUserId"),
+        (int) SnapshotDecoder.integer(fields, "totalDiscoveries", 0));
+  }
+
+  /**
+   * Checks whether the treasure has coordinates.
+   *
+   * @return true if latitude and longitude are set
+   */
+  public boolean hasLocation() {
+    return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+  }
+}
@@ -0,0 +1,74 @@
+package edu.northeastern.numad25su_group6.data;
+
+import androidx.annotation.NonNull;
+import com.google.firebase.database.DataSnapshot;
+import edu.northeastern.numad25su_group6.images.ImageVariants;
+import java.util.Map;
+
+/**
+ * UserProfileRecord is an immutable, decoded copy of the public fields of a user node.
+ */
+public final class UserProfileRecord {
+
+  public final String userId;
+  public final String firstName;
+  public final String lastName;
+  public final ImageVariants profileImage;
+
+  /**
+   * Constructor for UserProfileRecord.
+   *
+   * @param userId          The ID of the user
+   * @param firstName       The first name of the user, or null
+   * @param lastName        The last name of the user, or null
+   * @param profileImage    The profile image variants of the user
+   */
+  public UserProfileRecord(String userId, String firstName, String lastName,
+      ImageVariants profileImage) {
+    this.userId = userId;
+    this.firstName = firstName;
+    this.lastName = lastName;
+    this.profileImage = profileImage;
+  }
+
+  /**
+   * Decodes a user snapshot. A missing node decodes to a profile without any fields.
+   *
+   * @param snapshot The snapshot of a user node
+   * @return The record
+   */
+  @NonNull
+  public static UserProfileRecord fromSnapshot(@NonNull DataSnapshot snapshot) {
+    Map<?, ?> fields = SnapshotDecoder.fields(snapshot);
+    if (fields == null) {
+      return new UserProfileRecord(snapshot.getKey(), null, null, ImageVariants.NONE);
+    }
+    return new UserProfileRecord(snapshot.getKey(),
+        SnapshotDecoder.string(fields, "firstname"),
+        SnapshotDecoder.string(fields, "lastname"),
+        new ImageVariants(SnapshotDecoder.string(fields, "profileImageUrlSmall"),
+            SnapshotDecoder.string(fields, "profileImageUrlMedium"),
+            SnapshotDecoder.string(fields, "profileImageUrl")));
+  }
+
+  /**
+   * Returns the name shown for the user.
+   *
+   * @return The full name, the first name, or "User" if neither is set
+   */
+  public String displayName() {
+    if (firstName != null && lastName != null) {
+      return firstName + " " + lastName;
+    }
+    return firstName != null ? firstName : "User";
+  }
+
+  /**
+   * Checks whether the user has a profile image.
+   *
+   * @return true if a profile image URL is set
+   */
+  public boolean hasProfileImage() {
+    return !profileImage.isEmpty();
+  }
+}
@@ -0,0 +1,59 @@
+package edu.northeastern.numad25su_group6.data;
+
+import com.google.firebase.database.ServerValue;
+import java.util.Map;
+
+/**
+ * UserStatsCounters keeps the aggregate counters of a user next to their points in
+ * userstats/{uid}: the number of treasures discovered and created. Counters are server-side
+ * increments written in the same multi-path update as the record they count, so reading a user's
+ * statistics is one small fetch instead of counting their records. Counted records are flagged, so
+ * the backfill only adds the records written before the counters were maintained.
+ */
+public final class UserStatsCounters {
+
+  // Fields of userstats/{uid}
+  public static final String FIELD_DISCOVERIES = "discoveries";
+  public static final String FIELD_TREASURES_CREATED = "treasuresCreated";
+
+  // Field of a discovery or treasure that is included in its user's counters
+  public static final String FIELD_COUNTED = "counted";
+
+  /**
+   * Private constructor, UserStatsCounters only has static methods.
+   */
+  private UserStatsCounters() {
+  }
+
+  /**
+   * Flags a record as included in the counters. Must be called for every record whose counter is
+   * incremented.
+   *
+   * @param record The fields of the record
+   */
+  public static void markCounted(Map<String, Object> record) {
+    record.put(FIELD_COUNTED, true);
+  }
+
+  /**
+   * Adds the writes that count a new discovery to a multi-path update.
+   *
+   * @param updates The multi-path update, relative to the database root
+   * @param userId  The ID of the user who discovered the treasure
+   */
+  public static void addDiscoveryUpdates(Map<String, Object> updates, String userId) {
+    updates.put("userstats/" + userId + "/userid", userId);
+    updates.put("userstats/" + userId + "/" + FIELD_DISCOVERIES, ServerValue.increment(1));
+  }
+
+  /**
+   * Adds the writes that count a new treasure to a multi-path update.
+   *
+   * @param updates The multi-path update, relative to the database root
+   * @param userId  The ID of the user who created the treasure
+   */
+  public static void addTreasureCreatedUpdates(Map<String, Object> updates, String userId) {
+    updates.put("userstats/" + userId + "/userid", userId);
+    updates.put("userstats/" + userId + "/" + FIELD_TREASURES_CREATED, ServerValue.increment(1));
+  }
+}
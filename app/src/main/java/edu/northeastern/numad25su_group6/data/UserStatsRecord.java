@@ -0,0 +1,65 @@
+package edu.northeastern.numad25su_group6.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.database.DataSnapshot;
+import java.util.Map;
+
+/**
+ * UserStatsRecord is an immutable, decoded copy of a userstats node.
+ */
+public final class UserStatsRecord {
+
+  public final String userId;
+  public final int points;
+  public final int discoveries;
+  public final int treasuresCreated;
+
+  /**
+   * Constructor for UserStatsRecord without counters, for leaderboard entries.
+   *
+   * @param userId The ID of the user
+   * @param points The points of the user
+   */
+  public UserStatsRecord(String userId, int points) {
+    this(userId, points, 0, 0);
+  }
+
+  /**
+   * Constructor for UserStatsRecord.
+   *
+   * @param userId           The ID of the user
+   * @param points           The points of the user
+   * @param discoveries      The number of treasures the user discovered
+   * @param treasuresCreated The number of treasures the user created
+   */
+  public UserStatsRecord(String userId, int points, int discoveries, int treasuresCreated) {
+    this.userId = userId;
+    this.points = points;
+    this.discoveries = discoveries;
+    this.treasuresCreated = treasuresCreated;
+  }
+
+  /**
+   * Decodes a userstats snapshot. Statistics are keyed by user ID, records that were not migrated
+   * yet carry it in the userid field instead.
+   *
+   * @param snapshot The snapshot of a userstats node
+   * @return The record, or null if the node does not exist
+   */
+  @Nullable
+  public static UserStatsRecord fromSnapshot(@NonNull DataSnapshot snapshot) {
+    Map<?, ?> fields = SnapshotDecoder.fields(snapshot);
+    if (fields == null) {
+      return null;
+    }
+    String userId = SnapshotDecoder.string(fields, "userid");
+    if (userId == null) {
+      userId = snapshot.getKey();
+    }
+    return new UserStatsRecord(userId,
+        (int) SnapshotDecoder.integer(fields, "points", 0),
+        (int) SnapshotDecoder.integer(fields, UserStatsCounters.FIELD_DISCOVERIES, 0),
+        (int) SnapshotDecoder.integer(fields, UserStatsCounters.FIELD_TREASURES_CREATED, 0));
+  }
+}
@@ -0,0 +1,111 @@
+package edu.northeastern.numad25su_group6.images;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import androidx.core.content.FileProvider;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * CameraCapture manages the files the camera app writes full-resolution photos to. Each capture
+ * gets a fresh file in the app's cache, shared with the camera app through a FileProvider, so
+ * photos never end up in the user's gallery. A capture is deleted once the image pipeline has
+ * compressed it, or when it is discarded; files left behind by an interrupted session are removed
+ * on the next launch.
+ */
+public final class CameraCapture {
+
+  private static final String TAG = "CameraCapture";
+
+  // Must match the cache-path in res/xml/file_paths.xml
+  private static final String CAPTURE_DIR = "captures";
+  private static final String AUTHORITY_SUFFIX = ".fileprovider";
+
+  // Captures older than this were abandoned, the pipeline handles a capture within seconds
+  private static final long STALE_AFTER_MILLIS = 24 * 60 * 60 * 1000L;
+
+  /**
+   * Private constructor, CameraCapture only has static methods.
+   */
+  private CameraCapture() {
+  }
+
+  /**
+   * Creates an empty file for the camera app to write a photo to.
+   *
+   * @param context Context used to locate the cache directory
+   * @return The file, or null if it could not be created
+   */
+  @Nullable
+  public static File createFile(Context context) {
+    File dir = directory(context);
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      return null;
+    }
+    try {
+      return File.createTempFile("capture_", ".jpg", dir);
+    } catch (IOException e) {
+      Log.w(TAG, "Could not create capture file", e);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the content Uri through which the camera app writes to a capture file.
+   *
+   * @param context Context used to resolve the FileProvider
+   * @param file    The capture file
+   * @return The content Uri to pass as EXTRA_OUTPUT
+   */
+  public static Uri outputUri(Context context, File file) {
+    return FileProvider.getUriForFile(context, context.getPackageName() + AUTHORITY_SUFFIX, file);
+  }
+
+  /**
+   * Deletes an image if it is a capture file. Other images, e.g. picked from the gallery, are
+   * left alone.
+   *
+   * @param context  Context used to locate the cache directory
+   * @param imageUri Uri of the image, or null
+   */
+  public static void release(Context context, @Nullable Uri imageUri) {
+    if (imageUri == null || !"file".equals(imageUri.getScheme()) || imageUri.getPath() == null) {
+      return;
+    }
+    File file = new File(imageUri.getPath());
+    if (directory(context).equals(file.getParentFile()) && file.exists() && !file.delete()) {
+      Log.w(TAG, "Could not delete capture " + file);
+    }
+  }
+
+  /**
+   * Deletes captures that were abandoned, e.g. because the app was closed while the camera was
+   * open.
+   *
+   * @param context Context used to locate the cache directory
+   */
+  public static void deleteStale(Context context) {
+    File[] files = directory(context).listFiles();
+    if (files == null) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    for (File file : files) {
+      if (now - file.lastModified() > STALE_AFTER_MILLIS && !file.delete()) {
+        Log.w(TAG, "Could not delete stale capture " + file);
+      }
+    }
+  }
+
+  /**
+   * Returns the directory capture files are created in.
+   *
+   * @param context Context used to locate the cache directory
+   * @return The directory
+   */
+  private static File directory(Context context) {
+    return new File(context.getCacheDir(), CAPTURE_DIR);
+  }
+}
@@ -0,0 +1,246 @@
+package edu.northeastern.numad25su_group6.images;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ImagePipeline prepares picked or captured photos for upload. A photo straight from the camera
+ * is several megabytes; the pipeline decodes it subsampled to about the target size, applies the
+ * EXIF orientation, scales the long edge down to {@link #MAX_EDGE_PX} and encodes it as JPEG, which
+ * typically leaves a few hundred kilobytes. The smaller {@link ImageVariants} sizes are scaled from
+ * the same decoded bitmap. Decoding and encoding never run on the main thread.
+ */
+public final class ImagePipeline {
+
+  /**
+   * Receives the encoded variants on the main thread.
+   */
+  public interface Callback {
+
+    /**
+     * Called with the encoded variants.
+     *
+     * @param variants The JPEG bytes of every size, or null if the image could not be read
+     */
+    void onCompressed(@Nullable Map<ImageVariants.Size, byte[]> variants);
+  }
+
+  private static final String TAG = "ImagePipeline";
+
+  // Long edge of the full-size image, enough for a full-screen view on common phones
+  public static final int MAX_EDGE_PX = ImageVariants.Size.FULL.edgePx;
+  private static final int JPEG_QUALITY = 85;
+
+  private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+  private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+  /**
+   * Private constructor, ImagePipeline only has static methods.
+   */
+  private ImagePipeline() {
+  }
+
+  /**
+   * Compresses an image into every size in the background and delivers the result on the main
+   * thread.
+   *
+   * @param context  Context used to open the image
+   * @param uri      Uri of the image
+   * @param callback Callback receiving the JPEG bytes on the main thread
+   */
+  public static void compressAsync(Context context, Uri uri, Callback callback) {
+    ContentResolver resolver = context.getApplicationContext().getContentResolver();
+    EXECUTOR.execute(() -> {
+      Map<ImageVariants.Size, byte[]> variants = compress(resolver, uri);
+      MAIN_HANDLER.post(() -> callback.onCompressed(variants));
+    });
+  }
+
+  /**
+   * Decodes, orients and downscales an image and encodes it in every size. Must not be called on
+   * the main thread.
+   *
+   * @param resolver Resolver used to open the image
+   * @param uri      Uri of the image
+   * @return The JPEG bytes keyed by size, or null if the image could not be read
+   */
+  @WorkerThread
+  @Nullable
+  public static Map<ImageVariants.Size, byte[]> compress(ContentResolver resolver, Uri uri) {
+    Bitmap full = decode(resolver, uri, MAX_EDGE_PX);
+    if (full == null) {
+      return null;
+    }
+    Map<ImageVariants.Size, byte[]> variants = new EnumMap<>(ImageVariants.Size.class);
+    try {
+      for (ImageVariants.Size size : ImageVariants.Size.values()) {
+        float scale = ImageSizing.scale(full.getWidth(), full.getHeight(), size.edgePx);
+        if (scale == 1f) {
+          variants.put(size, encode(full));
+          continue;
+        }
+        int width = Math.max(1, Math.round(full.getWidth() * scale));
+        int height = Math.max(1, Math.round(full.getHeight() * scale));
+        Bitmap scaled = Bitmap.createScaledBitmap(full, width, height, true);
+        variants.put(size, encode(scaled));
+        scaled.recycle();
+      }
+    } catch (OutOfMemoryError e) {
+      Log.w(TAG, "Could not scale image " + uri, e);
+      return null;
+    } finally {
+      full.recycle();
+    }
+    return variants;
+  }
+
+  /**
+   * Returns the URL of the smallest variant that covers a view.
+   *
+   * @param context Context used to convert the view size to pixels
+   * @param image   The variants of the image
+   * @param viewDp  The larger dimension of the view in dp
+   * @return The URL, or null if the image has no variant
+   */
+  @Nullable
+  public static String urlFor(Context context, ImageVariants image, int viewDp) {
+    float density = context.getResources().getDisplayMetrics().density;
+    return image.urlFor(Math.round(viewDp * density));
+  }
+
+  /**
+   * Decodes an image upright with its long edge scaled down to at most the given length.
+   *
+   * @param resolver Resolver used to open the image
+   * @param uri      Uri of the image
+   * @param maxEdge  The maximum length of the long edge in pixels
+   * @return The bitmap, or null if the image could not be read
+   */
+  @WorkerThread
+  @Nullable
+  static Bitmap decode(ContentResolver resolver, Uri uri, int maxEdge) {
+    try {
+      // Read the dimensions only, so the full-size image is never held in memory
+      BitmapFactory.Options bounds = new BitmapFactory.Options();
+      bounds.inJustDecodeBounds = true;
+      try (InputStream in = resolver.openInputStream(uri)) {
+        BitmapFactory.decodeStream(in, null, bounds);
+      }
+      if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+        return null;
+      }
+
+      BitmapFactory.Options options = new BitmapFactory.Options();
+      options.inSampleSize = ImageSizing.sampleSize(bounds.outWidth, bounds.outHeight, maxEdge);
+      Bitmap source;
+      try (InputStream in = resolver.openInputStream(uri)) {
+        source = BitmapFactory.decodeStream(in, null, options);
+      }
+      if (source == null) {
+        return null;
+      }
+
+      // Scale and rotate in one pass
+      float scale = ImageSizing.scale(source.getWidth(), source.getHeight(), maxEdge);
+      Matrix matrix = new Matrix();
+      matrix.setScale(scale, scale);
+      applyOrientation(matrix, readOrientation(resolver, uri));
+      if (matrix.isIdentity()) {
+        return source;
+      }
+      Bitmap result = Bitmap.createBitmap(source, 0, 0, source.getWidth(), source.getHeight(),
+          matrix, true);
+      if (result != source) {
+        source.recycle();
+      }
+      return result;
+    } catch (IOException | SecurityException | OutOfMemoryError e) {
+      Log.w(TAG, "Could not decode image " + uri, e);
+      return null;
+    }
+  }
+
+  /**
+   * Encodes a bitmap as JPEG.
+   *
+   * @param bitmap The bitmap
+   * @return The JPEG bytes
+   */
+  static byte[] encode(Bitmap bitmap) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+    return out.toByteArray();
+  }
+
+  /**
+   * Reads the EXIF orientation of an image.
+   *
+   * @param resolver Resolver used to open the image
+   * @param uri      Uri of the image
+   * @return The orientation, or {@link ExifInterface#ORIENTATION_NORMAL} if it is unknown
+   */
+  private static int readOrientation(ContentResolver resolver, Uri uri) {
+    try (InputStream in = resolver.openInputStream(uri)) {
+      if (in == null) {
+        return ExifInterface.ORIENTATION_NORMAL;
+      }
+      return new ExifInterface(in).getAttributeInt(ExifInterface.TAG_ORIENTATION,
+          ExifInterface.ORIENTATION_NORMAL);
+    } catch (IOException e) {
+      return ExifInterface.ORIENTATION_NORMAL;
+    }
+  }
+
+  /**
+   * Adds the transformation that turns an image with the given EXIF orientation upright.
+   *
+   * @param matrix      The matrix to add the transformation to
+   * @param orientation The EXIF orientation
+   */
+  private static void applyOrientation(Matrix matrix, int orientation) {
+    switch (orientation) {
+      case ExifInterface.ORIENTATION_ROTATE_90:
+        matrix.postRotate(90);
+        break;
+      case ExifInterface.ORIENTATION_ROTATE_180:
+        matrix.postRotate(180);
+        break;
+      case ExifInterface.ORIENTATION_ROTATE_270:
+        matrix.postRotate(270);
+        break;
+      case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+        matrix.postScale(-1, 1);
+        break;
+      case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+        matrix.postScale(1, -1);
+        break;
+      case ExifInterface.ORIENTATION_TRANSPOSE:
+        matrix.postRotate(90);
+        matrix.postScale(-1, 1);
+        break;
+      case ExifInterface.ORIENTATION_TRANSVERSE:
+        matrix.postRotate(270);
+        matrix.postScale(-1, 1);
+        break;
+      default:
+        break;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package edu.northeastern.numad25su_group6.images;
+
+/**
+ * ImageSizing computes how large an image is decoded and stored. Decoding subsamples by the
+ * largest power of two that still leaves the long edge at or above the target, and the decoded
+ * image is then scaled so its long edge matches the target exactly. Images that are already
+ * small enough keep their size.
+ */
+public final class ImageSizing {
+
+  /**
+   * Private constructor, ImageSizing only has static methods.
+   */
+  private ImageSizing() {
+  }
+
+  /**
+   * Returns the subsampling factor for decoding an image.
+   *
+   * @param width   The width of the source image in pixels
+   * @param height  The height of the source image in pixels
+   * @param maxEdge The maximum length of the long edge after scaling
+   * @return The power of two to pass as inSampleSize
+   */
+  public static int sampleSize(int width, int height, int maxEdge) {
+    int longEdge = Math.max(width, height);
+    int sampleSize = 1;
+    while (longEdge / (sampleSize * 2) >= maxEdge) {
+      sampleSize *= 2;
+    }
+    return sampleSize;
+  }
+
+  /**
+   * Returns the factor that scales an image so its long edge is at most the maximum.
+   *
+   * @param width   The width of the image in pixels
+   * @param height  The height of the image in pixels
+   * @param maxEdge The maximum length of the long edge
+   * @return The scale factor, at most 1
+   */
+  public static float scale(int width, int height, int maxEdge) {
+    int longEdge = Math.max(width, height);
+    return longEdge <= maxEdge ? 1f : (float) maxEdge / longEdge;
+  }
+}
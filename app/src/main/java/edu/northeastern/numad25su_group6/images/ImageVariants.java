@@ -0,0 +1,121 @@
+package edu.northeastern.numad25su_group6.images;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ImageVariants holds the download URLs of the sizes an uploaded image is stored in. A record
+ * stores the full-size URL under its original field, e.g. imageUrl, and the smaller sizes under
+ * the same name with the size appended, e.g. imageUrlSmall, so older clients keep working. Views
+ * request the smallest size that covers them; a missing size falls back to the next larger one.
+ */
+public final class ImageVariants {
+
+  /**
+   * The sizes an image is stored in, smallest first.
+   */
+  public enum Size {
+    // Avatars and list thumbnails
+    SMALL("Small", "_small", 256),
+    // Cards and profile pictures
+    MEDIUM("Medium", "_medium", 640),
+    // Full-screen views
+    FULL("", "", 1600);
+
+    public final String fieldSuffix;
+    public final String fileSuffix;
+    public final int edgePx;
+
+    Size(String fieldSuffix, String fileSuffix, int edgePx) {
+      this.fieldSuffix = fieldSuffix;
+      this.fileSuffix = fileSuffix;
+      this.edgePx = edgePx;
+    }
+  }
+
+  // An image that was never uploaded
+  public static final ImageVariants NONE = new ImageVariants(null, null, null);
+
+  private final Map<Size, String> urls = new EnumMap<>(Size.class);
+
+  /**
+   * Constructor for ImageVariants.
+   *
+   * @param small  The URL of the small variant, or null
+   * @param medium The URL of the medium variant, or null
+   * @param full   The URL of the full-size image, or null
+   */
+  public ImageVariants(String small, String medium, String full) {
+    put(Size.SMALL, small);
+    put(Size.MEDIUM, medium);
+    put(Size.FULL, full);
+  }
+
+  /**
+   * Returns the URL of a size.
+   *
+   * @param size The size
+   * @return The URL, or null if the image is not stored in that size
+   */
+  public String get(Size size) {
+    return urls.get(size);
+  }
+
+  /**
+   * Checks whether no size is stored.
+   *
+   * @return true if the record has no image
+   */
+  public boolean isEmpty() {
+    return urls.isEmpty();
+  }
+
+  /**
+   * Returns the URL of the smallest stored size whose long edge covers a view, or of the largest
+   * stored size if none does.
+   *
+   * @param viewPx The larger dimension of the view in pixels
+   * @return The URL, or null if no size is stored
+   */
+  public String urlFor(int viewPx) {
+    String largest = null;
+    for (Size size : Size.values()) {
+      String url = urls.get(size);
+      if (url == null) {
+        continue;
+      }
+      if (size.edgePx >= viewPx) {
+        return url;
+      }
+      largest = url;
+    }
+    return largest;
+  }
+
+  /**
+   * Returns the record fields holding the stored URLs.
+   *
+   * @param field The field of the full-size URL, e.g. imageUrl
+   * @return The URLs keyed by field name
+   */
+  public Map<String, Object> toFields(String field) {
+    Map<String, Object> fields = new HashMap<>();
+    for (Map.Entry<Size, String> entry : urls.entrySet()) {
+      fields.put(field + entry.getKey().fieldSuffix, entry.getValue());
+    }
+    return fields;
+  }
+
+  /**
+   * Stores the URL of a size, ignoring empty URLs.
+   *
+   * @param size The size
+   * @param url  The URL, or null
+   */
+  private void put(Size size, String url) {
+    if (url != null && !url.isEmpty()) {
+      urls.put(size, url);
+    }
+  }
+}
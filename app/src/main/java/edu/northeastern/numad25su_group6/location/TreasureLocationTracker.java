@@ -0,0 +1,246 @@
+package edu.northeastern.numad25su_group6.location;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.Looper;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+import edu.northeastern.numad25su_group6.map.TreasureSpatialIndex;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * TreasureLocationTracker keeps a stream of location fixes while its lifecycle is started. The
+ * update interval and priority follow how soon the user can reach the nearest undiscovered treasure,
+ * so the GPS runs at full rate only when a treasure is close and backs off while the user is far
+ * away or standing still. Every fix is checked against the spatial index and the listener is told
+ * once per session about each undiscovered treasure that comes within the discovery radius.
+ */
+public class TreasureLocationTracker implements DefaultLifecycleObserver {
+
+  /**
+   * Listener notified about location fixes and treasures in range.
+   */
+  public interface Listener {
+
+    /**
+     * Called when an undiscovered treasure is within the discovery radius for the first time this
+     * session.
+     *
+     * @param treasureId The ID of the treasure in range
+     */
+    void onTreasureInRange(String treasureId);
+  }
+
+  /**
+   * Update rates used by the tracker, from the most to the least power hungry.
+   */
+  private enum Mode {
+    NEAR(2_000, Priority.PRIORITY_HIGH_ACCURACY),
+    APPROACHING(5_000, Priority.PRIORITY_HIGH_ACCURACY),
+    FAR(15_000, Priority.PRIORITY_BALANCED_POWER_ACCURACY),
+    IDLE(30_000, Priority.PRIORITY_BALANCED_POWER_ACCURACY);
+
+    final long intervalMs;
+    final int priority;
+
+    Mode(long intervalMs, int priority) {
+      this.intervalMs = intervalMs;
+      this.priority = priority;
+    }
+  }
+
+  // Distance under which updates run at the highest rate
+  private static final double NEAR_DISTANCE_METERS = 100;
+
+  // Time to reach the nearest treasure under which updates run at the approaching rate
+  private static final double APPROACHING_SECONDS = 120;
+
+  // Walking speed assumed when the fix has no speed, and the speed below which the user is idle
+  private static final float WALKING_SPEED_MPS = 1.4f;
+  private static final float IDLE_SPEED_MPS = 0.5f;
+
+  // Fixes older than this are not returned as the current location
+  private static final long MAX_FIX_AGE_MS = 30_000;
+
+  private final Context context;
+  private final FusedLocationProviderClient client;
+  private final TreasureSpatialIndex spatialIndex;
+  private final Predicate<String> isUndiscovered;
+  private final double discoveryRadiusMeters;
+  private final Listener listener;
+
+  // Treasures the listener was already told about this session
+  private final Set<String> notifiedTreasureIds = new HashSet<>();
+
+  private Location lastFix;
+  private Mode mode;
+  private boolean started = false;
+
+  private final LocationCallback locationCallback = new LocationCallback() {
+    @Override
+    public void onLocationResult(@NonNull LocationResult result) {
+      Location location = result.getLastLocation();
+      if (location != null) {
+        lastFix = location;
+        evaluate();
+      }
+    }
+  };
+
+  /**
+   * Constructor for TreasureLocationTracker.
+   *
+   * @param context               Context used to check permissions and reach location services
+   * @param spatialIndex          Spatial index over the loaded treasures
+   * @param isUndiscovered        Filter that accepts treasures the user may still discover
+   * @param discoveryRadiusMeters Distance within which a treasure can be discovered
+   * @param listener              Listener notified about treasures in range
+   */
+  public TreasureLocationTracker(Context context, TreasureSpatialIndex spatialIndex,
+      Predicate<String> isUndiscovered, double discoveryRadiusMeters, Listener listener) {
+    this.context = context.getApplicationContext();
+    this.client = LocationServices.getFusedLocationProviderClient(context);
+    this.spatialIndex = spatialIndex;
+    this.isUndiscovered = isUndiscovered;
+    this.discoveryRadiusMeters = discoveryRadiusMeters;
+    this.listener = listener;
+  }
+
+  @Override
+  public void onStart(@NonNull LifecycleOwner owner) {
+    started = true;
+    requestUpdates(mode != null ? mode : Mode.APPROACHING);
+  }
+
+  @Override
+  public void onStop(@NonNull LifecycleOwner owner) {
+    started = false;
+    client.removeLocationUpdates(locationCallback);
+  }
+
+  @Override
+  public void onDestroy(@NonNull LifecycleOwner owner) {
+    owner.getLifecycle().removeObserver(this);
+  }
+
+  /**
+   * Starts the updates after the location permission was granted while the lifecycle is started.
+   */
+  public void onPermissionGranted() {
+    if (started) {
+      requestUpdates(mode != null ? mode : Mode.APPROACHING);
+    }
+  }
+
+  /**
+   * Re-checks the last fix, e.g. after treasures were loaded or discovered, since the nearest
+   * undiscovered treasure may have changed without the user moving.
+   */
+  public void recheck() {
+    if (lastFix != null) {
+      evaluate();
+    }
+  }
+
+  /**
+   * Returns the last fix if it is recent enough to be used as the current location.
+   *
+   * @return The last fix, or null if there is none or it is stale
+   */
+  @Nullable
+  public Location getFreshLocation() {
+    if (lastFix == null) {
+      return null;
+    }
+    long ageMs = (SystemClock.elapsedRealtimeNanos() - lastFix.getElapsedRealtimeNanos())
+        / 1_000_000;
+    return ageMs <= MAX_FIX_AGE_MS ? lastFix : null;
+  }
+
+  /**
+   * Checks the last fix for treasures in range and adapts the update rate.
+   */
+  private void evaluate() {
+    double latitude = lastFix.getLatitude();
+    double longitude = lastFix.getLongitude();
+
+    List<String> inRange = spatialIndex.withinRadius(latitude, longitude, discoveryRadiusMeters);
+    for (String treasureId : inRange) {
+      if (isUndiscovered.test(treasureId) && notifiedTreasureIds.add(treasureId)) {
+        listener.onTreasureInRange(treasureId);
+      }
+    }
+
+    if (started) {
+      Mode next = chooseMode();
+      if (next != mode) {
+        requestUpdates(next);
+      }
+    }
+  }
+
+  /**
+   * Picks the update rate for the last fix from the distance to the nearest undiscovered treasure
+   * and the current speed.
+   *
+   * @return The update rate to use
+   */
+  private Mode chooseMode() {
+    double latitude = lastFix.getLatitude();
+    double longitude = lastFix.getLongitude();
+    List<String> nearest = spatialIndex.nearest(latitude, longitude, 1, isUndiscovered);
+    if (nearest.isEmpty()) {
+      return Mode.IDLE;
+    }
+
+    double[] position = spatialIndex.get(nearest.get(0));
+    double distance = TreasureSpatialIndex.distanceMeters(latitude, longitude, position[0],
+        position[1]);
+    if (distance <= NEAR_DISTANCE_METERS) {
+      return Mode.NEAR;
+    }
+
+    float speed = lastFix.hasSpeed() ? lastFix.getSpeed() : WALKING_SPEED_MPS;
+    if (speed < IDLE_SPEED_MPS) {
+      return Mode.IDLE;
+    }
+    return distance / speed <= APPROACHING_SECONDS ? Mode.APPROACHING : Mode.FAR;
+  }
+
+  /**
+   * Replaces the current location request with one for the given update rate.
+   *
+   * @param next The update rate to use
+   */
+  private void requestUpdates(Mode next) {
+    if (ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+        != PackageManager.PERMISSION_GRANTED) {
+      return;
+    }
+
+    LocationRequest request = new LocationRequest.Builder(next.priority, next.intervalMs)
+        .setMinUpdateIntervalMillis(next.intervalMs / 2)
+        .build();
+    try {
+      client.requestLocationUpdates(request, locationCallback, Looper.getMainLooper());
+      mode = next;
+    } catch (SecurityException e) {
+      mode = null;
+    }
+  }
+}
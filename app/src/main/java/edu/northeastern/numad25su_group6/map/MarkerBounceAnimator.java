@@ -0,0 +1,169 @@
+package edu.northeastern.numad25su_group6.map;
+
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.view.animation.BounceInterpolator;
+import android.view.animation.Interpolator;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Marker;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MarkerBounceAnimator drives the bounce effect of every treasure marker from a single
+ * Choreographer frame callback. Only markers inside the visible bounds are stepped, at most
+ * {@link #MAX_ANIMATED_MARKERS} at a time, and the callback only runs while the owning lifecycle is
+ * started.
+ */
+public class MarkerBounceAnimator implements Choreographer.FrameCallback, DefaultLifecycleObserver {
+
+  // Bounce timing and height in degrees of latitude
+  private static final long BOUNCE_DURATION_MS = 800;
+  private static final long BOUNCE_PAUSE_MS = 300;
+  private static final double BOUNCE_HEIGHT = 0.00015;
+
+  // Upper limit of markers stepped per frame
+  private static final int MAX_ANIMATED_MARKERS = 30;
+
+  /**
+   * State of a single animated marker.
+   */
+  private static class Bounce {
+
+    final Marker marker;
+    LatLng base;
+    final long startTime;
+
+    // Whether the marker was moved off its base position
+    boolean displaced = false;
+
+    Bounce(Marker marker, long startTime) {
+      this.marker = marker;
+      this.base = marker.getPosition();
+      this.startTime = startTime;
+    }
+  }
+
+  private final Choreographer choreographer = Choreographer.getInstance();
+  private final Interpolator interpolator = new BounceInterpolator();
+
+  // Animated markers in the order they were added
+  private final Map<Marker, Bounce> bounces = new LinkedHashMap<>();
+  private LatLngBounds visibleBounds;
+  private boolean started = false;
+  private boolean frameScheduled = false;
+
+  /**
+   * Starts bouncing the given marker around its current position.
+   *
+   * @param marker The marker to animate
+   */
+  public void add(Marker marker) {
+    bounces.put(marker, new Bounce(marker, SystemClock.uptimeMillis()));
+    scheduleFrame();
+  }
+
+  /**
+   * Stops bouncing the given marker.
+   *
+   * @param marker The marker to stop animating
+   */
+  public void remove(Marker marker) {
+    bounces.remove(marker);
+  }
+
+  /**
+   * Moves the base position of an animated marker, e.g. when its treasure moved.
+   *
+   * @param marker   The animated marker
+   * @param position The new base position
+   */
+  public void setBasePosition(Marker marker, LatLng position) {
+    Bounce bounce = bounces.get(marker);
+    if (bounce != null) {
+      bounce.base = position;
+    }
+  }
+
+  /**
+   * Updates the bounds in which markers are animated. Should be called when the camera becomes
+   * idle.
+   *
+   * @param bounds The bounds currently visible on the map
+   */
+  public void setVisibleBounds(LatLngBounds bounds) {
+    this.visibleBounds = bounds;
+    scheduleFrame();
+  }
+
+  @Override
+  public void onStart(@NonNull LifecycleOwner owner) {
+    started = true;
+    scheduleFrame();
+  }
+
+  @Override
+  public void onStop(@NonNull LifecycleOwner owner) {
+    started = false;
+    if (frameScheduled) {
+      choreographer.removeFrameCallback(this);
+      frameScheduled = false;
+    }
+  }
+
+  @Override
+  public void onDestroy(@NonNull LifecycleOwner owner) {
+    owner.getLifecycle().removeObserver(this);
+    bounces.clear();
+  }
+
+  @Override
+  public void doFrame(long frameTimeNanos) {
+    frameScheduled = false;
+    if (!started || bounces.isEmpty()) {
+      return;
+    }
+
+    long now = SystemClock.uptimeMillis();
+    long cycle = BOUNCE_DURATION_MS + BOUNCE_PAUSE_MS;
+    List<Bounce> visible = new ArrayList<>();
+    for (Bounce bounce : bounces.values()) {
+      boolean inView = visibleBounds == null || visibleBounds.contains(bounce.base);
+      if (inView && visible.size() < MAX_ANIMATED_MARKERS) {
+        visible.add(bounce);
+      } else if (bounce.displaced) {
+        // Put markers that dropped out of the animated set back where they belong
+        bounce.marker.setPosition(bounce.base);
+        bounce.displaced = false;
+      }
+    }
+
+    for (Bounce bounce : visible) {
+      long elapsed = (now - bounce.startTime) % cycle;
+      float t = Math.min(1f, (float) elapsed / BOUNCE_DURATION_MS);
+      double offset = Math.sin(t * Math.PI) * BOUNCE_HEIGHT * interpolator.getInterpolation(t);
+      bounce.marker.setPosition(new LatLng(bounce.base.latitude + offset, bounce.base.longitude));
+      bounce.displaced = true;
+    }
+
+    if (!visible.isEmpty()) {
+      scheduleFrame();
+    }
+  }
+
+  /**
+   * Posts the frame callback if it is not posted yet and the lifecycle is started.
+   */
+  private void scheduleFrame() {
+    if (started && !frameScheduled && !bounces.isEmpty()) {
+      frameScheduled = true;
+      choreographer.postFrameCallback(this);
+    }
+  }
+}
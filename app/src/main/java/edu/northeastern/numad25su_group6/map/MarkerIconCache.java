@@ -0,0 +1,202 @@
+package edu.northeastern.numad25su_group6.map;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Handler;
+import android.os.Looper;
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import edu.northeastern.numad25su_group6.R;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * MarkerIconCache decodes each treasure marker icon once, sized for the screen density, and reuses
+ * the resulting BitmapDescriptor for every marker. Icons are decoded on a background thread when
+ * the map starts; an icon requested before that finishes is decoded on the spot. Cluster icons are
+ * drawn once per count label and reused as well.
+ */
+public class MarkerIconCache {
+
+  // Size of a marker icon on screen
+  private static final int ICON_SIZE_DP = 36;
+
+  // Size and label text size of a cluster icon on screen
+  private static final int CLUSTER_SIZE_DP = 44;
+  private static final int CLUSTER_TEXT_SP = 14;
+
+  /**
+   * The marker icon variants used on the map.
+   */
+  public enum Icon {
+    GOLD(R.drawable.ic_treasure_gold),
+    SILVER(R.drawable.ic_treasure_silver),
+    DISCOVERED(R.drawable.ic_treasure_discovered);
+
+    final int resId;
+
+    Icon(int resId) {
+      this.resId = resId;
+    }
+  }
+
+  private final Resources resources;
+  private final int sizePx;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  // Descriptors are only touched on the main thread
+  private final Map<Icon, BitmapDescriptor> descriptors = new EnumMap<>(Icon.class);
+  private final Map<String, BitmapDescriptor> clusterDescriptors = new HashMap<>();
+
+  /**
+   * Constructor for MarkerIconCache.
+   *
+   * @param resources Resources used to decode the icons
+   */
+  public MarkerIconCache(Resources resources) {
+    this.resources = resources;
+    this.sizePx = Math.round(ICON_SIZE_DP * resources.getDisplayMetrics().density);
+  }
+
+  /**
+   * Decodes all icons on a background thread. Must be called after the map is ready, since
+   * descriptors can only be created once the maps SDK is initialized.
+   */
+  public void preload() {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    for (Icon icon : Icon.values()) {
+      executor.execute(() -> {
+        Bitmap bitmap = decode(icon);
+        mainHandler.post(() -> {
+          if (!descriptors.containsKey(icon)) {
+            descriptors.put(icon, BitmapDescriptorFactory.fromBitmap(bitmap));
+          }
+        });
+      });
+    }
+    executor.shutdown();
+  }
+
+  /**
+   * Returns the descriptor for the given icon, decoding it now if it is not cached yet. Must be
+   * called on the main thread.
+   *
+   * @param icon The icon variant
+   * @return The cached descriptor
+   */
+  public BitmapDescriptor get(Icon icon) {
+    BitmapDescriptor descriptor = descriptors.get(icon);
+    if (descriptor == null) {
+      descriptor = BitmapDescriptorFactory.fromBitmap(decode(icon));
+      descriptors.put(icon, descriptor);
+    }
+    return descriptor;
+  }
+
+  /**
+   * Returns the icon for a cluster of the given size. Counts are bucketed into a few labels so only
+   * a handful of cluster bitmaps are ever drawn. Must be called on the main thread.
+   *
+   * @param count Number of treasures in the cluster
+   * @return The cached descriptor
+   */
+  public BitmapDescriptor getClusterIcon(int count) {
+    String label = clusterLabel(count);
+    BitmapDescriptor descriptor = clusterDescriptors.get(label);
+    if (descriptor == null) {
+      descriptor = BitmapDescriptorFactory.fromBitmap(drawCluster(label));
+      clusterDescriptors.put(label, descriptor);
+    }
+    return descriptor;
+  }
+
+  /**
+   * Returns the label shown on a cluster of the given size.
+   *
+   * @param count Number of treasures in the cluster
+   * @return The label
+   */
+  private static String clusterLabel(int count) {
+    if (count < 10) {
+      return String.valueOf(count);
+    } else if (count < 50) {
+      return "10+";
+    } else if (count < 100) {
+      return "50+";
+    } else if (count < 500) {
+      return "100+";
+    } else if (count < 1000) {
+      return "500+";
+    }
+    return "1k+";
+  }
+
+  /**
+   * Draws a round cluster bubble with the given label.
+   *
+   * @param label The label to draw
+   * @return The cluster bitmap
+   */
+  private Bitmap drawCluster(String label) {
+    float density = resources.getDisplayMetrics().density;
+    int size = Math.round(CLUSTER_SIZE_DP * density);
+    Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(bitmap);
+    float radius = size / 2f;
+
+    Paint fill = new Paint(Paint.ANTI_ALIAS_FLAG);
+    fill.setColor(resources.getColor(R.color.teal_700, null));
+    canvas.drawCircle(radius, radius, radius, fill);
+
+    Paint ring = new Paint(Paint.ANTI_ALIAS_FLAG);
+    ring.setStyle(Paint.Style.STROKE);
+    ring.setStrokeWidth(2 * density);
+    ring.setColor(Color.WHITE);
+    canvas.drawCircle(radius, radius, radius - density, ring);
+
+    Paint text = new Paint(Paint.ANTI_ALIAS_FLAG);
+    text.setColor(Color.WHITE);
+    text.setTextAlign(Paint.Align.CENTER);
+    text.setFakeBoldText(true);
+    text.setTextSize(CLUSTER_TEXT_SP * resources.getDisplayMetrics().scaledDensity);
+    float baseline = radius - (text.descent() + text.ascent()) / 2;
+    canvas.drawText(label, radius, baseline, text);
+    return bitmap;
+  }
+
+  /**
+   * Decodes the icon resource, subsampling large sources before scaling to the icon size.
+   *
+   * @param icon The icon variant
+   * @return The scaled bitmap
+   */
+  private Bitmap decode(Icon icon) {
+    BitmapFactory.Options bounds = new BitmapFactory.Options();
+    bounds.inJustDecodeBounds = true;
+    bounds.inScaled = false;
+    BitmapFactory.decodeResource(resources, icon.resId, bounds);
+
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inScaled = false;
+    int sampleSize = 1;
+    while (bounds.outWidth / (sampleSize * 2) >= sizePx
+        && bounds.outHeight / (sampleSize * 2) >= sizePx) {
+      sampleSize *= 2;
+    }
+    options.inSampleSize = sampleSize;
+
+    Bitmap source = BitmapFactory.decodeResource(resources, icon.resId, options);
+    Bitmap scaled = Bitmap.createScaledBitmap(source, sizePx, sizePx, true);
+    if (scaled != source) {
+      source.recycle();
+    }
+    return scaled;
+  }
+}
@@ -0,0 +1,330 @@
+package edu.northeastern.numad25su_group6.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TreasureClusterEngine groups treasures into clusters for a given zoom level. The world is split
+ * into a quadtree grid in Web Mercator space where every zoom level halves the cell size. Points are
+ * kept sorted by their Morton (Z-order) code, so all points inside a grid cell form one contiguous
+ * range that is found with two binary searches, and prefix sums give the cluster centre in constant
+ * time. Adding, moving or removing a point only marks the index dirty; it is rebuilt once on the
+ * next query.
+ */
+public class TreasureClusterEngine {
+
+  // Grid cells per axis at zoom 0 is 2^GRID_SHIFT, so a cell is 64px wide on a 256px tile
+  private static final int GRID_SHIFT = 2;
+
+  // Resolution of the Morton codes in bits per axis
+  private static final int LEVELS = 26;
+
+  // Above this zoom treasures are always shown individually
+  public static final int MAX_CLUSTER_ZOOM = 17;
+
+  // Upper limit of grid cells inspected for one query
+  private static final int MAX_CELLS_PER_QUERY = 4096;
+
+  /**
+   * A cluster of one or more treasures at a zoom level.
+   */
+  public static class Cluster {
+
+    // Stable key of the grid cell, used to diff clusters between queries
+    public final String key;
+    public final int count;
+    public final double latitude;
+    public final double longitude;
+
+    // Zoom level at which this cluster splits into several clusters or points
+    public final int expansionZoom;
+
+    // ID of the single treasure when count is 1, otherwise null
+    public final String itemId;
+
+    /**
+     * Constructor for Cluster.
+     *
+     * @param key           Key of the grid cell
+     * @param count         Number of treasures in the cluster
+     * @param latitude      Latitude of the cluster centre
+     * @param longitude     Longitude of the cluster centre
+     * @param expansionZoom Zoom level at which the cluster splits
+     * @param itemId        ID of the single treasure, or null
+     */
+    Cluster(String key, int count, double latitude, double longitude, int expansionZoom,
+        String itemId) {
+      this.key = key;
+      this.count = count;
+      this.latitude = latitude;
+      this.longitude = longitude;
+      this.expansionZoom = expansionZoom;
+      this.itemId = itemId;
+    }
+
+    /**
+     * Checks whether the cluster holds a single treasure.
+     *
+     * @return true if the cluster is a single treasure
+     */
+    public boolean isSingle() {
+      return itemId != null;
+    }
+  }
+
+  /**
+   * A point stored in the engine.
+   */
+  private static class Item {
+
+    final String id;
+    final double latitude;
+    final double longitude;
+    final long morton;
+
+    Item(String id, double latitude, double longitude) {
+      this.id = id;
+      this.latitude = latitude;
+      this.longitude = longitude;
+      this.morton = interleave(toGridX(longitude, LEVELS), toGridY(latitude, LEVELS));
+    }
+  }
+
+  private final Map<String, Item> items = new HashMap<>();
+  private boolean dirty = false;
+
+  // Sorted index, rebuilt lazily when dirty
+  private long[] mortonCodes = new long[0];
+  private String[] sortedIds = new String[0];
+  private double[] latPrefix = new double[1];
+  private double[] lngPrefix = new double[1];
+
+  /**
+   * Adds a point or moves an existing point.
+   *
+   * @param id        ID of the treasure
+   * @param latitude  Latitude of the treasure
+   * @param longitude Longitude of the treasure
+   */
+  public void put(String id, double latitude, double longitude) {
+    Item existing = items.get(id);
+    if (existing != null && existing.latitude == latitude && existing.longitude == longitude) {
+      return;
+    }
+    items.put(id, new Item(id, latitude, longitude));
+    dirty = true;
+  }
+
+  /**
+   * Removes a point.
+   *
+   * @param id ID of the treasure
+   */
+  public void remove(String id) {
+    if (items.remove(id) != null) {
+      dirty = true;
+    }
+  }
+
+  /**
+   * Removes every point.
+   */
+  public void clear() {
+    items.clear();
+    dirty = true;
+  }
+
+  /**
+   * Returns the number of points.
+   *
+   * @return The number of points
+   */
+  public int size() {
+    return items.size();
+  }
+
+  /**
+   * Returns the clusters and single points inside the given bounds at the given zoom level. Bounds
+   * crossing the antimeridian (west greater than east) are supported.
+   *
+   * @param south Southern latitude of the bounds
+   * @param west  Western longitude of the bounds
+   * @param north Northern latitude of the bounds
+   * @param east  Eastern longitude of the bounds
+   * @param zoom  The map zoom level
+   * @return Clusters and single points inside the bounds
+   */
+  public List<Cluster> getClusters(double south, double west, double north, double east,
+      int zoom) {
+    rebuildIfDirty();
+    List<Cluster> result = new ArrayList<>();
+    if (west > east) {
+      collect(south, west, north, 180, zoom, result);
+      collect(south, -180, north, east, zoom, result);
+    } else {
+      collect(south, west, north, east, zoom, result);
+    }
+    return result;
+  }
+
+  /**
+   * Collects the clusters inside bounds that do not cross the antimeridian.
+   */
+  private void collect(double south, double west, double north, double east, int zoom,
+      List<Cluster> result) {
+    int level = Math.max(0, Math.min(zoom, MAX_CLUSTER_ZOOM)) + GRID_SHIFT;
+    long xStart;
+    long xEnd;
+    long yStart;
+    long yEnd;
+
+    // Use coarser cells if the bounds are much larger than a screen at this zoom
+    while (true) {
+      xStart = toGridX(west, level);
+      xEnd = toGridX(east, level);
+      yStart = toGridY(north, level);
+      yEnd = toGridY(south, level);
+      if ((xEnd - xStart + 1) * (yEnd - yStart + 1) <= MAX_CELLS_PER_QUERY
+          || level == GRID_SHIFT) {
+        break;
+      }
+      level--;
+    }
+
+    int shift = 2 * (LEVELS - level);
+    boolean splitAll = zoom > MAX_CLUSTER_ZOOM;
+    for (long x = xStart; x <= xEnd; x++) {
+      for (long y = yStart; y <= yEnd; y++) {
+        long prefix = interleave(x, y);
+        int lo = lowerBound(prefix << shift);
+        int hi = lowerBound((prefix + 1) << shift);
+        if (lo >= hi) {
+          continue;
+        }
+        int count = hi - lo;
+        if (count == 1 || splitAll) {
+          for (int i = lo; i < hi; i++) {
+            Item item = items.get(sortedIds[i]);
+            result.add(new Cluster(item.id, 1, item.latitude, item.longitude, zoom, item.id));
+          }
+        } else {
+          double lat = (latPrefix[hi] - latPrefix[lo]) / count;
+          double lng = (lngPrefix[hi] - lngPrefix[lo]) / count;
+          result.add(new Cluster(level + "/" + x + "/" + y, count, lat, lng,
+              expansionZoom(lo, hi, zoom), null));
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes the zoom level at which the points in the sorted range stop sharing one grid cell.
+   * Since the range is sorted by Morton code, the first and last code share the longest common
+   * prefix of the whole range.
+   *
+   * @param lo   Start of the range, inclusive
+   * @param hi   End of the range, exclusive
+   * @param zoom The current zoom level
+   * @return The zoom level at which the cluster splits
+   */
+  private int expansionZoom(int lo, int hi, int zoom) {
+    long diff = mortonCodes[lo] ^ mortonCodes[hi - 1];
+    if (diff == 0) {
+      // All points share a location, only showing them individually splits the cluster
+      return MAX_CLUSTER_ZOOM + 1;
+    }
+    int leadingBits = Long.numberOfLeadingZeros(diff) - (64 - 2 * LEVELS);
+    int commonLevels = leadingBits / 2;
+    return Math.max(zoom + 1, Math.min(MAX_CLUSTER_ZOOM + 1, commonLevels + 1 - GRID_SHIFT));
+  }
+
+  /**
+   * Finds the first index in the sorted codes whose value is not less than the key.
+   */
+  private int lowerBound(long key) {
+    int lo = 0;
+    int hi = mortonCodes.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (mortonCodes[mid] < key) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Rebuilds the sorted index and prefix sums if points changed since the last query.
+   */
+  private void rebuildIfDirty() {
+    if (!dirty) {
+      return;
+    }
+    Item[] sorted = items.values().toArray(new Item[0]);
+    Arrays.sort(sorted, (a, b) -> Long.compare(a.morton, b.morton));
+
+    int n = sorted.length;
+    mortonCodes = new long[n];
+    sortedIds = new String[n];
+    latPrefix = new double[n + 1];
+    lngPrefix = new double[n + 1];
+    for (int i = 0; i < n; i++) {
+      mortonCodes[i] = sorted[i].morton;
+      sortedIds[i] = sorted[i].id;
+      latPrefix[i + 1] = latPrefix[i] + sorted[i].latitude;
+      lngPrefix[i + 1] = lngPrefix[i] + sorted[i].longitude;
+    }
+    dirty = false;
+  }
+
+  /**
+   * Converts a longitude into a grid column at the given level.
+   */
+  private static long toGridX(double longitude, int level) {
+    double x = (longitude + 180) / 360;
+    return clampToGrid(x, level);
+  }
+
+  /**
+   * Converts a latitude into a grid row at the given level using the Web Mercator projection.
+   */
+  private static long toGridY(double latitude, int level) {
+    double sin = Math.sin(Math.toRadians(Math.max(-85.05113, Math.min(85.05113, latitude))));
+    double y = 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    return clampToGrid(y, level);
+  }
+
+  /**
+   * Scales a normalized coordinate to a grid index at the given level.
+   */
+  private static long clampToGrid(double value, int level) {
+    long size = 1L << level;
+    long index = (long) Math.floor(value * size);
+    return Math.max(0, Math.min(size - 1, index));
+  }
+
+  /**
+   * Interleaves the bits of x and y into a Morton code, with x in the higher bit of each pair.
+   */
+  private static long interleave(long x, long y) {
+    return (spread(x) << 1) | spread(y);
+  }
+
+  /**
+   * Spreads the lower 32 bits of a value so that there is a zero bit between each of them.
+   */
+  private static long spread(long v) {
+    v &= 0xFFFFFFFFL;
+    v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+    v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+    v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+    v = (v | (v << 2)) & 0x3333333333333333L;
+    v = (v | (v << 1)) & 0x5555555555555555L;
+    return v;
+  }
+}
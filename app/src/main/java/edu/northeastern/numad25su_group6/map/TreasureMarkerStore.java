@@ -0,0 +1,131 @@
+package edu.northeastern.numad25su_group6.map;
+
+import androidx.annotation.Nullable;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * TreasureMarkerStore keeps the treasure markers on the map keyed by treasure ID, so a change to
+ * one treasure only touches its own marker instead of clearing and rebuilding the whole map.
+ */
+public class TreasureMarkerStore {
+
+  private final GoogleMap map;
+  private final Map<String, Marker> markers = new HashMap<>();
+
+  /**
+   * Constructor for TreasureMarkerStore.
+   *
+   * @param map The map the markers are drawn on
+   */
+  public TreasureMarkerStore(GoogleMap map) {
+    this.map = map;
+  }
+
+  /**
+   * Adds a marker for the given treasure, replacing an existing marker with the same ID.
+   *
+   * @param treasureId The ID of the treasure
+   * @param options    Options describing the marker
+   * @param tag        Tag attached to the marker
+   * @return The added marker, or null if the map refused to add it
+   */
+  @Nullable
+  public Marker add(String treasureId, MarkerOptions options, Object tag) {
+    remove(treasureId);
+    Marker marker = map.addMarker(options);
+    if (marker != null) {
+      marker.setTag(tag);
+      markers.put(treasureId, marker);
+    }
+    return marker;
+  }
+
+  /**
+   * Updates the marker of the given treasure. Properties that did not change are left untouched.
+   *
+   * @param treasureId The ID of the treasure
+   * @param position   The new position
+   * @param title      The new title
+   * @param snippet    The new snippet
+   * @param tag        The new tag
+   * @return The updated marker, or null if there is no marker for the treasure
+   */
+  @Nullable
+  public Marker update(String treasureId, LatLng position, String title, String snippet,
+      Object tag) {
+    Marker marker = markers.get(treasureId);
+    if (marker == null) {
+      return null;
+    }
+    if (!position.equals(marker.getPosition())) {
+      marker.setPosition(position);
+    }
+    if (!Objects.equals(title, marker.getTitle())) {
+      marker.setTitle(title);
+    }
+    if (!Objects.equals(snippet, marker.getSnippet())) {
+      marker.setSnippet(snippet);
+    }
+    marker.setTag(tag);
+    return marker;
+  }
+
+  /**
+   * Removes the marker of the given treasure from the map.
+   *
+   * @param treasureId The ID of the treasure
+   */
+  public void remove(String treasureId) {
+    Marker marker = markers.remove(treasureId);
+    if (marker != null) {
+      marker.remove();
+    }
+  }
+
+  /**
+   * Returns the marker of the given treasure.
+   *
+   * @param treasureId The ID of the treasure
+   * @return The marker, or null if the treasure has no marker
+   */
+  @Nullable
+  public Marker get(String treasureId) {
+    return markers.get(treasureId);
+  }
+
+  /**
+   * Checks whether the given treasure has a marker.
+   *
+   * @param treasureId The ID of the treasure
+   * @return true if a marker exists
+   */
+  public boolean contains(String treasureId) {
+    return markers.containsKey(treasureId);
+  }
+
+  /**
+   * Returns all markers currently on the map.
+   *
+   * @return The markers
+   */
+  public Collection<Marker> markers() {
+    return markers.values();
+  }
+
+  /**
+   * Removes every marker from the map.
+   */
+  public void clear() {
+    for (Marker marker : markers.values()) {
+      marker.remove();
+    }
+    markers.clear();
+  }
+}
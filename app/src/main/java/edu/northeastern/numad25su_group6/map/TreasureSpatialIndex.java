@@ -0,0 +1,376 @@
+package edu.northeastern.numad25su_group6.map;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * TreasureSpatialIndex is an in-memory k-d tree over treasure coordinates. It answers "treasures
+ * within a radius", "k nearest treasures" and "treasures in bounds" without scanning every loaded
+ * treasure. The tree is stored in flat arrays and rebuilt lazily on the next query after points
+ * change, like {@link TreasureClusterEngine}.
+ *
+ * <p>Distances are great-circle distances in meters. Pruning uses a local equirectangular
+ * approximation around the query point, which is accurate at city scale.
+ */
+public class TreasureSpatialIndex {
+
+  // Mean earth radius and meters per degree of latitude
+  private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+  private static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180;
+
+  // Leaves with at most this many points are scanned linearly
+  private static final int NODE_SIZE = 16;
+
+  private final Map<String, double[]> points = new HashMap<>();
+  private boolean dirty = false;
+
+  // Flat tree: ids[i] is at (coords[2i] = longitude, coords[2i + 1] = latitude)
+  private String[] ids = new String[0];
+  private double[] coords = new double[0];
+
+  /**
+   * Adds a point or moves an existing point.
+   *
+   * @param id        ID of the treasure
+   * @param latitude  Latitude of the treasure
+   * @param longitude Longitude of the treasure
+   */
+  public void put(String id, double latitude, double longitude) {
+    double[] existing = points.get(id);
+    if (existing != null && existing[0] == latitude && existing[1] == longitude) {
+      return;
+    }
+    points.put(id, new double[]{latitude, longitude});
+    dirty = true;
+  }
+
+  /**
+   * Removes a point.
+   *
+   * @param id ID of the treasure
+   */
+  public void remove(String id) {
+    if (points.remove(id) != null) {
+      dirty = true;
+    }
+  }
+
+  /**
+   * Returns the position of a point.
+   *
+   * @param id ID of the treasure
+   * @return The latitude and longitude of the treasure, or null if it is not indexed
+   */
+  public double[] get(String id) {
+    double[] point = points.get(id);
+    return point != null ? point.clone() : null;
+  }
+
+  /**
+   * Returns the number of points.
+   *
+   * @return The number of points
+   */
+  public int size() {
+    return points.size();
+  }
+
+  /**
+   * Returns the treasures inside the given bounds. Bounds crossing the antimeridian (west greater
+   * than east) are supported.
+   *
+   * @param south Southern latitude of the bounds
+   * @param west  Western longitude of the bounds
+   * @param north Northern latitude of the bounds
+   * @param east  Eastern longitude of the bounds
+   * @return IDs of the treasures inside the bounds
+   */
+  public List<String> inBounds(double south, double west, double north, double east) {
+    rebuildIfDirty();
+    List<String> result = new ArrayList<>();
+    if (west > east) {
+      range(0, ids.length - 1, 0, west, south, 180, north, result);
+      range(0, ids.length - 1, 0, -180, south, east, north, result);
+    } else {
+      range(0, ids.length - 1, 0, west, south, east, north, result);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the treasures within the given distance of a location.
+   *
+   * @param latitude     Latitude of the location
+   * @param longitude    Longitude of the location
+   * @param radiusMeters Radius in meters
+   * @return IDs of the treasures within the radius
+   */
+  public List<String> withinRadius(double latitude, double longitude, double radiusMeters) {
+    double dLat = radiusMeters / METERS_PER_DEGREE;
+    double dLng = Math.min(180, dLat / Math.max(1e-6, Math.cos(Math.toRadians(latitude))));
+    List<String> candidates = inBounds(latitude - dLat, wrap(longitude - dLng),
+        latitude + dLat, wrap(longitude + dLng));
+    List<String> result = new ArrayList<>();
+    for (String id : candidates) {
+      double[] point = points.get(id);
+      if (distanceMeters(latitude, longitude, point[0], point[1]) <= radiusMeters) {
+        result.add(id);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns up to k treasures nearest to a location that match the filter, closest first.
+   *
+   * @param latitude  Latitude of the location
+   * @param longitude Longitude of the location
+   * @param k         Maximum number of treasures to return
+   * @param filter    Filter on treasure IDs, e.g. to skip discovered treasures
+   * @return IDs of the nearest matching treasures
+   */
+  public List<String> nearest(double latitude, double longitude, int k, Predicate<String> filter) {
+    rebuildIfDirty();
+    List<String> result = new ArrayList<>();
+    if (k <= 0 || ids.length == 0) {
+      return result;
+    }
+
+    // Max-heap of the best k candidates so far, ordered by distance
+    PriorityQueue<Candidate> best = new PriorityQueue<>(k,
+        (a, b) -> Double.compare(b.distance, a.distance));
+    double lngScale = Math.cos(Math.toRadians(latitude));
+    knn(0, ids.length - 1, 0, latitude, longitude, lngScale, k, filter, best);
+
+    while (!best.isEmpty()) {
+      result.add(0, best.poll().id);
+    }
+    return result;
+  }
+
+  /**
+   * Computes the great-circle distance between two coordinates.
+   *
+   * @param lat1 Latitude of the first point
+   * @param lng1 Longitude of the first point
+   * @param lat2 Latitude of the second point
+   * @param lng2 Longitude of the second point
+   * @return Distance in meters
+   */
+  public static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+    double dLat = Math.toRadians(lat2 - lat1);
+    double dLng = Math.toRadians(lng2 - lng1);
+    double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+        + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+        * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+    return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  /**
+   * A candidate result of a nearest neighbour search.
+   */
+  private static class Candidate {
+
+    final String id;
+    final double distance;
+
+    Candidate(String id, double distance) {
+      this.id = id;
+      this.distance = distance;
+    }
+  }
+
+  /**
+   * Collects the points of the subtree [left, right] that fall inside the box.
+   */
+  private void range(int left, int right, int axis, double minX, double minY, double maxX,
+      double maxY, List<String> result) {
+    if (left > right) {
+      return;
+    }
+    if (right - left <= NODE_SIZE) {
+      for (int i = left; i <= right; i++) {
+        double x = coords[2 * i];
+        double y = coords[2 * i + 1];
+        if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+          result.add(ids[i]);
+        }
+      }
+      return;
+    }
+
+    int mid = (left + right) >>> 1;
+    double x = coords[2 * mid];
+    double y = coords[2 * mid + 1];
+    if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+      result.add(ids[mid]);
+    }
+    double value = axis == 0 ? x : y;
+    double min = axis == 0 ? minX : minY;
+    double max = axis == 0 ? maxX : maxY;
+    if (min <= value) {
+      range(left, mid - 1, 1 - axis, minX, minY, maxX, maxY, result);
+    }
+    if (max >= value) {
+      range(mid + 1, right, 1 - axis, minX, minY, maxX, maxY, result);
+    }
+  }
+
+  /**
+   * Searches the subtree [left, right] for the nearest matching points.
+   */
+  private void knn(int left, int right, int axis, double latitude, double longitude,
+      double lngScale, int k, Predicate<String> filter, PriorityQueue<Candidate> best) {
+    if (left > right) {
+      return;
+    }
+    if (right - left <= NODE_SIZE) {
+      for (int i = left; i <= right; i++) {
+        offer(i, latitude, longitude, k, filter, best);
+      }
+      return;
+    }
+
+    int mid = (left + right) >>> 1;
+    offer(mid, latitude, longitude, k, filter, best);
+
+    // Visit the side containing the query first, then the other side if it can still be closer
+    double delta = axis == 0 ? longitude - coords[2 * mid] : latitude - coords[2 * mid + 1];
+    double planeMeters = Math.abs(delta) * METERS_PER_DEGREE * (axis == 0 ? lngScale : 1);
+    if (delta < 0) {
+      knn(left, mid - 1, 1 - axis, latitude, longitude, lngScale, k, filter, best);
+      if (best.size() < k || planeMeters < best.peek().distance) {
+        knn(mid + 1, right, 1 - axis, latitude, longitude, lngScale, k, filter, best);
+      }
+    } else {
+      knn(mid + 1, right, 1 - axis, latitude, longitude, lngScale, k, filter, best);
+      if (best.size() < k || planeMeters < best.peek().distance) {
+        knn(left, mid - 1, 1 - axis, latitude, longitude, lngScale, k, filter, best);
+      }
+    }
+  }
+
+  /**
+   * Offers the point at the given index to the candidate heap.
+   */
+  private void offer(int index, double latitude, double longitude, int k,
+      Predicate<String> filter, PriorityQueue<Candidate> best) {
+    String id = ids[index];
+    if (filter != null && !filter.test(id)) {
+      return;
+    }
+    double distance = distanceMeters(latitude, longitude, coords[2 * index + 1],
+        coords[2 * index]);
+    if (best.size() < k) {
+      best.add(new Candidate(id, distance));
+    } else if (distance < best.peek().distance) {
+      best.poll();
+      best.add(new Candidate(id, distance));
+    }
+  }
+
+  /**
+   * Rebuilds the tree if points changed since the last query.
+   */
+  private void rebuildIfDirty() {
+    if (!dirty) {
+      return;
+    }
+    int n = points.size();
+    ids = new String[n];
+    coords = new double[2 * n];
+    int i = 0;
+    for (Map.Entry<String, double[]> entry : points.entrySet()) {
+      ids[i] = entry.getKey();
+      coords[2 * i] = entry.getValue()[1];
+      coords[2 * i + 1] = entry.getValue()[0];
+      i++;
+    }
+    build(0, n - 1, 0);
+    dirty = false;
+  }
+
+  /**
+   * Arranges the subtree [left, right] so its median on the axis sits in the middle.
+   */
+  private void build(int left, int right, int axis) {
+    if (right - left <= NODE_SIZE) {
+      return;
+    }
+    int mid = (left + right) >>> 1;
+    select(mid, left, right, axis);
+    build(left, mid - 1, 1 - axis);
+    build(mid + 1, right, 1 - axis);
+  }
+
+  /**
+   * Partially sorts [left, right] so the element at k is in its sorted position on the axis
+   * (quickselect).
+   */
+  private void select(int k, int left, int right, int axis) {
+    while (right > left) {
+      double pivot = coords[2 * k + axis];
+      int i = left;
+      int j = right;
+      swap(left, k);
+      if (coords[2 * right + axis] > pivot) {
+        swap(left, right);
+      }
+      while (i < j) {
+        swap(i, j);
+        i++;
+        j--;
+        while (coords[2 * i + axis] < pivot) {
+          i++;
+        }
+        while (coords[2 * j + axis] > pivot) {
+          j--;
+        }
+      }
+      if (coords[2 * left + axis] == pivot) {
+        swap(left, j);
+      } else {
+        j++;
+        swap(j, right);
+      }
+      if (j <= k) {
+        left = j + 1;
+      }
+      if (k <= j) {
+        right = j - 1;
+      }
+    }
+  }
+
+  /**
+   * Swaps two points in the flat arrays.
+   */
+  private void swap(int i, int j) {
+    String id = ids[i];
+    ids[i] = ids[j];
+    ids[j] = id;
+    double x = coords[2 * i];
+    double y = coords[2 * i + 1];
+    coords[2 * i] = coords[2 * j];
+    coords[2 * i + 1] = coords[2 * j + 1];
+    coords[2 * j] = x;
+    coords[2 * j + 1] = y;
+  }
+
+  /**
+   * Wraps a longitude into the range [-180, 180].
+   */
+  private static double wrap(double longitude) {
+    if (longitude > 180) {
+      return longitude - 360;
+    }
+    if (longitude < -180) {
+      return longitude + 360;
+    }
+    return longitude;
+  }
+}
@@ -0,0 +1,341 @@
+package edu.northeastern.numad25su_group6.map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+import edu.northeastern.numad25su_group6.data.SnapshotDecoder;
+import edu.northeastern.numad25su_group6.data.TreasureRecord;
+import edu.northeastern.numad25su_group6.utils.GeoHash;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * TreasureViewportLoader loads only the treasures inside the visible map area. The visible bounds
+ * (plus a margin) are covered by geohash cells and one range query is attached per cell. Cells
+ * that scroll out of view are detached so the device only keeps listening to nearby treasures.
+ * Changes are reported per treasure so the map can update single markers. Snapshots are decoded
+ * into records on the {@link SnapshotDecoder} thread, and removals are queued behind pending
+ * decodes so the listener sees events in their original order.
+ */
+public class TreasureViewportLoader {
+
+  // Extra area loaded around the viewport, as a fraction of the viewport size on each side
+  private static final double VIEWPORT_MARGIN = 0.25;
+
+  /**
+   * Listener notified whenever a treasure enters, changes in, or leaves the loaded area.
+   */
+  public interface Listener {
+
+    /**
+     * Called when a treasure is loaded for the first time.
+     *
+     * @param treasure The decoded treasure
+     */
+    void onTreasureAdded(TreasureRecord treasure);
+
+    /**
+     * Called when a loaded treasure changes.
+     *
+     * @param treasure The decoded treasure
+     */
+    void onTreasureChanged(TreasureRecord treasure);
+
+    /**
+     * Called when a treasure was deleted or is no longer in the loaded area.
+     *
+     * @param treasureId The ID of the treasure
+     */
+    void onTreasureRemoved(String treasureId);
+
+    /**
+     * Called once the initial treasures of a cell have been reported, with every treasure the cell
+     * contains.
+     *
+     * @param cell        The geohash prefix of the cell
+     * @param treasureIds IDs of the treasures in the cell
+     */
+    void onCellLoaded(String cell, Set<String> treasureIds);
+
+    /**
+     * Called when a cell query fails.
+     *
+     * @param message The error message
+     */
+    void onLoadFailed(String message);
+  }
+
+  private final DatabaseReference treasuresRef;
+  private final Listener listener;
+
+  // Active cell queries and their listeners, keyed by geohash prefix
+  private final Map<String, Query> cellQueries = new HashMap<>();
+  private final Map<String, ChildEventListener> cellListeners = new HashMap<>();
+
+  // Treasure IDs reported by each cell
+  private final Map<String, Set<String>> cellTreasures = new HashMap<>();
+
+  // Number of cells that currently report each treasure. Cells overlap briefly while the query
+  // precision changes, so a treasure is only removed when no cell reports it anymore.
+  private final Map<String, Integer> treasureRefCounts = new HashMap<>();
+
+  // Bounds that were last loaded, including the margin
+  private LatLngBounds loadedBounds;
+
+  // Set once stopped, so decodes still in flight are dropped
+  private boolean stopped = false;
+
+  /**
+   * Constructor for TreasureViewportLoader.
+   *
+   * @param treasuresRef Reference to the treasures node
+   * @param listener     Listener notified with the loaded treasures
+   */
+  public TreasureViewportLoader(DatabaseReference treasuresRef, Listener listener) {
+    this.treasuresRef = treasuresRef;
+    this.listener = listener;
+  }
+
+  /**
+   * Updates the loaded cells for the given visible bounds. Should be called when the camera becomes
+   * idle. Nothing is requeried while the viewport stays inside the previously loaded area at a
+   * similar zoom level.
+   *
+   * @param visibleBounds The bounds currently visible on the map
+   */
+  public void onViewportChanged(LatLngBounds visibleBounds) {
+    if (loadedBounds != null && loadedBounds.contains(visibleBounds.southwest)
+        && loadedBounds.contains(visibleBounds.northeast)
+        && latitudeSpan(visibleBounds) * 4 > latitudeSpan(loadedBounds)) {
+      return;
+    }
+
+    LatLngBounds expanded = expand(visibleBounds);
+    List<String> cells = GeoHash.coveringCells(expanded.southwest.latitude,
+        expanded.southwest.longitude, expanded.northeast.latitude, expanded.northeast.longitude);
+    loadedBounds = expanded;
+
+    // Attach new cells before detaching old ones so overlapping treasures do not flicker
+    for (String cell : cells) {
+      if (!cellQueries.containsKey(cell)) {
+        attachCell(cell);
+      }
+    }
+
+    // Detach cells that are no longer needed
+    Set<String> wanted = new HashSet<>(cells);
+    for (String cell : new ArrayList<>(cellQueries.keySet())) {
+      if (!wanted.contains(cell)) {
+        detachCell(cell);
+      }
+    }
+  }
+
+  /**
+   * Attaches a range query for all treasures whose geohash starts with the given cell.
+   *
+   * @param cell The geohash prefix of the cell
+   */
+  private void attachCell(String cell) {
+    Query query = treasuresRef.orderByChild("geohash")
+        .startAt(cell)
+        .endAt(GeoHash.rangeEnd(cell));
+    Set<String> treasureIds = new HashSet<>();
+    ChildEventListener cellListener = new ChildEventListener() {
+      @Override
+      public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+        String treasureId = snapshot.getKey();
+        if (treasureIds.add(treasureId) && retain(treasureId)) {
+          SnapshotDecoder.decode(snapshot, TreasureRecord::fromSnapshot, treasure -> {
+            if (!stopped && treasure != null) {
+              listener.onTreasureAdded(treasure);
+            }
+          });
+        }
+      }
+
+      @Override
+      public void onChildChanged(@NonNull DataSnapshot snapshot,
+          @Nullable String previousChildName) {
+        SnapshotDecoder.decode(snapshot, TreasureRecord::fromSnapshot, treasure -> {
+          if (!stopped && treasure != null) {
+            listener.onTreasureChanged(treasure);
+          }
+        });
+      }
+
+      @Override
+      public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+        String treasureId = snapshot.getKey();
+        if (treasureIds.remove(treasureId) && release(treasureId)) {
+          notifyRemoved(treasureId);
+        }
+      }
+
+      @Override
+      public void onChildMoved(@NonNull DataSnapshot snapshot,
+          @Nullable String previousChildName) {
+        // Ordering within a cell does not matter for markers
+      }
+
+      @Override
+      public void onCancelled(@NonNull DatabaseError error) {
+        listener.onLoadFailed(error.getMessage());
+      }
+    };
+    cellQueries.put(cell, query);
+    cellListeners.put(cell, cellListener);
+    cellTreasures.put(cell, treasureIds);
+    query.addChildEventListener(cellListener);
+
+    // The value event fires after all initial child events of the same query
+    query.addListenerForSingleValueEvent(new ValueEventListener() {
+      @Override
+      public void onDataChange(@NonNull DataSnapshot snapshot) {
+        if (cellQueries.get(cell) == query) {
+          Set<String> loadedIds = new HashSet<>(treasureIds);
+          SnapshotDecoder.post(() -> {
+            if (!stopped) {
+              listener.onCellLoaded(cell, loadedIds);
+            }
+          });
+        }
+      }
+
+      @Override
+      public void onCancelled(@NonNull DatabaseError error) {
+        // Reported by the child listener
+      }
+    });
+  }
+
+  /**
+   * Detaches the query of the given cell and releases its treasures.
+   *
+   * @param cell The geohash prefix of the cell
+   */
+  private void detachCell(String cell) {
+    Query query = cellQueries.remove(cell);
+    ChildEventListener cellListener = cellListeners.remove(cell);
+    if (query != null && cellListener != null) {
+      query.removeEventListener(cellListener);
+    }
+    Set<String> treasureIds = cellTreasures.remove(cell);
+    if (treasureIds != null) {
+      for (String treasureId : treasureIds) {
+        if (release(treasureId)) {
+          notifyRemoved(treasureId);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reports a removed treasure once every decode queued before it has been delivered.
+   *
+   * @param treasureId The ID of the treasure
+   */
+  private void notifyRemoved(String treasureId) {
+    SnapshotDecoder.post(() -> {
+      if (!stopped) {
+        listener.onTreasureRemoved(treasureId);
+      }
+    });
+  }
+
+  /**
+   * Increments the reference count of a treasure.
+   *
+   * @param treasureId The ID of the treasure
+   * @return true if this is the first cell reporting the treasure
+   */
+  private boolean retain(String treasureId) {
+    Integer count = treasureRefCounts.get(treasureId);
+    treasureRefCounts.put(treasureId, count == null ? 1 : count + 1);
+    return count == null;
+  }
+
+  /**
+   * Decrements the reference count of a treasure.
+   *
+   * @param treasureId The ID of the treasure
+   * @return true if no cell reports the treasure anymore
+   */
+  private boolean release(String treasureId) {
+    Integer count = treasureRefCounts.get(treasureId);
+    if (count == null || count <= 1) {
+      treasureRefCounts.remove(treasureId);
+      return count != null;
+    }
+    treasureRefCounts.put(treasureId, count - 1);
+    return false;
+  }
+
+  /**
+   * Detaches every cell query. Should be called when the map is destroyed.
+   */
+  public void stop() {
+    for (Map.Entry<String, Query> entry : cellQueries.entrySet()) {
+      entry.getValue().removeEventListener(cellListeners.get(entry.getKey()));
+    }
+    cellQueries.clear();
+    cellListeners.clear();
+    cellTreasures.clear();
+    treasureRefCounts.clear();
+    loadedBounds = null;
+    stopped = true;
+  }
+
+  /**
+   * Expands the bounds by the viewport margin on each side.
+   *
+   * @param bounds The bounds to expand
+   * @return The expanded bounds
+   */
+  private static LatLngBounds expand(LatLngBounds bounds) {
+    double latMargin = latitudeSpan(bounds) * VIEWPORT_MARGIN;
+    double lngSpan = bounds.northeast.longitude - bounds.southwest.longitude;
+    if (lngSpan < 0) {
+      lngSpan += 360;
+    }
+    double lngMargin = lngSpan * VIEWPORT_MARGIN;
+    double south = Math.max(-90, bounds.southwest.latitude - latMargin);
+    double north = Math.min(90, bounds.northeast.latitude + latMargin);
+    if (lngSpan + 2 * lngMargin >= 360) {
+      return new LatLngBounds(new LatLng(south, -180), new LatLng(north, 180));
+    }
+    return new LatLngBounds(new LatLng(south, wrap(bounds.southwest.longitude - lngMargin)),
+        new LatLng(north, wrap(bounds.northeast.longitude + lngMargin)));
+  }
+
+  /**
+   * Returns the latitude span of the bounds in degrees.
+   */
+  private static double latitudeSpan(LatLngBounds bounds) {
+    return bounds.northeast.latitude - bounds.southwest.latitude;
+  }
+
+  /**
+   * Wraps a longitude into the range [-180, 180].
+   */
+  private static double wrap(double longitude) {
+    if (longitude > 180) {
+      return longitude - 360;
+    }
+    if (longitude < -180) {
+      return longitude + 360;
+    }
+    return longitude;
+  }
+}
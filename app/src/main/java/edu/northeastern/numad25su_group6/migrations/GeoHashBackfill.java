@@ -0,0 +1,83 @@
+package edu.northeastern.numad25su_group6.migrations;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import androidx.annotation.NonNull;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+import edu.northeastern.numad25su_group6.utils.GeoHash;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * GeoHashBackfill adds the geohash field to treasures that were created before viewport loading
+ * existed. Treasures without a geohash are fetched in small batches and updated until none are
+ * left, so the backfill can be interrupted and resumed safely. Treasures without a location get an
+ * empty geohash, which no viewport cell matches, so they leave the batch query as well.
+ */
+public final class GeoHashBackfill {
+
+  // Preferences used to remember completed migrations on this device
+  static final String PREFS_NAME = "migrations";
+  static final String KEY_DONE = "geohash_backfill_done";
+  private static final int BATCH_SIZE = 200;
+
+  // Geohash of a treasure without a location, outside every viewport cell
+  private static final String NO_LOCATION = "";
+
+  private GeoHashBackfill() {
+  }
+
+  /**
+   * Runs the backfill unless this device has already completed it.
+   *
+   * @param context Context used to read and write the migration flag
+   */
+  public static void runOnce(Context context) {
+    SharedPreferences prefs = context.getApplicationContext()
+        .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    if (prefs.getBoolean(KEY_DONE, false)) {
+      return;
+    }
+    DatabaseReference treasuresRef = FirebaseDatabase.getInstance().getReference("treasures");
+    backfillBatch(treasuresRef, prefs);
+  }
+
+  /**
+   * Backfills one batch of treasures that have no geohash and continues with the next batch.
+   *
+   * @param treasuresRef Reference to the treasures node
+   * @param prefs        Preferences where completion is recorded
+   */
+  private static void backfillBatch(DatabaseReference treasuresRef, SharedPreferences prefs) {
+    treasuresRef.orderByChild("geohash").equalTo(null).limitToFirst(BATCH_SIZE)
+        .addListenerForSingleValueEvent(new ValueEventListener() {
+          @Override
+          public void onDataChange(@NonNull DataSnapshot snapshot) {
+            Map<String, Object> updates = new HashMap<>();
+            for (DataSnapshot data : snapshot.getChildren()) {
+              Double lat = data.child("latitude").getValue(Double.class);
+              Double lng = data.child("longitude").getValue(Double.class);
+              updates.put(data.getKey() + "/geohash",
+                  lat != null && lng != null ? GeoHash.encode(lat, lng) : NO_LOCATION);
+            }
+
+            // Nothing left to update
+            if (updates.isEmpty()) {
+              prefs.edit().putBoolean(KEY_DONE, true).apply();
+              return;
+            }
+            treasuresRef.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> backfillBatch(treasuresRef, prefs));
+          }
+
+          @Override
+          public void onCancelled(@NonNull DatabaseError error) {
+            // Retried on next launch
+          }
+        });
+  }
+}
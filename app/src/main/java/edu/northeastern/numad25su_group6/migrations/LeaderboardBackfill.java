@@ -0,0 +1,218 @@
+package edu.northeastern.numad25su_group6.migrations;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+import edu.northeastern.numad25su_group6.data.LeaderboardMaintainer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LeaderboardBackfill builds the materialized leaderboard from userstats for data written before
+ * it was maintained. It waits until the userstats re-key has completed, so every user has one
+ * record keyed by their ID. The node is paged by key and every user who is not counted in a bucket
+ * yet is counted by a transaction on their record and a server-side increment, the same way
+ * discoveries move users between buckets, so counts written concurrently are never overwritten.
+ * The users with the most points are then placed in the top list one by one. The paging position
+ * is saved so an interrupted run resumes where it stopped, and the completed backfill writes a
+ * marker so it runs once per database rather than once per device.
+ */
+public final class LeaderboardBackfill {
+
+  static final String KEY_DONE = "leaderboard_backfill_done";
+  private static final String KEY_CURSOR = "leaderboard_backfill_cursor";
+  private static final String FIELD_BACKFILLED_AT = "backfilledAt";
+  private static final int BATCH_SIZE = 500;
+
+  // Key under which the backfill records the bucket move of a user it counts
+  private static final String MOVE_KEY = "backfill";
+
+  private LeaderboardBackfill() {
+  }
+
+  /**
+   * Runs the backfill unless this device or any other has already completed it.
+   *
+   * @param context Context used to read and write the migration state
+   */
+  public static void runOnce(Context context) {
+    SharedPreferences prefs = context.getApplicationContext()
+        .getSharedPreferences(GeoHashBackfill.PREFS_NAME, Context.MODE_PRIVATE);
+    if (prefs.getBoolean(KEY_DONE, false) || !prefs.getBoolean(UserStatsRekey.KEY_DONE, false)) {
+      return;
+    }
+    DatabaseReference rootRef = FirebaseDatabase.getInstance().getReference();
+    rootRef.child("leaderboard").child(FIELD_BACKFILLED_AT)
+        .addListenerForSingleValueEvent(new ValueEventListener() {
+          @Override
+          public void onDataChange(@NonNull DataSnapshot snapshot) {
+            if (snapshot.exists()) {
+              prefs.edit().putBoolean(KEY_DONE, true).remove(KEY_CURSOR).apply();
+              return;
+            }
+            countBatch(rootRef, prefs, prefs.getString(KEY_CURSOR, null));
+          }
+
+          @Override
+          public void onCancelled(@NonNull DatabaseError error) {
+            // Retried on next launch
+          }
+        });
+  }
+
+  /**
+   * Counts the uncounted users of one page of userstats and continues with the next page.
+   *
+   * @param rootRef Reference to the database root
+   * @param prefs   Preferences where progress is recorded
+   * @param cursor  Key of the last record of the previous page, or null to start at the beginning
+   */
+  private static void countBatch(DatabaseReference rootRef, SharedPreferences prefs,
+      @Nullable String cursor) {
+    DatabaseReference statsRef = rootRef.child("userstats");
+    (cursor == null ? statsRef.orderByKey() : statsRef.orderByKey().startAfter(cursor))
+        .limitToFirst(BATCH_SIZE)
+        .addListenerForSingleValueEvent(new ValueEventListener() {
+          @Override
+          public void onDataChange(@NonNull DataSnapshot snapshot) {
+            List<String> userIds = new ArrayList<>();
+            String lastKey = null;
+            long count = 0;
+            for (DataSnapshot child : snapshot.getChildren()) {
+              lastKey = child.getKey();
+              count++;
+              if (LeaderboardMaintainer.needsCounting(child, MOVE_KEY)) {
+                userIds.add(lastKey);
+              }
+            }
+
+            // Nothing left to page through
+            if (count < BATCH_SIZE) {
+              countUsers(rootRef, userIds, 0, () -> buildTop(rootRef, prefs));
+              return;
+            }
+            String nextCursor = lastKey;
+            countUsers(rootRef, userIds, 0, () -> {
+              prefs.edit().putString(KEY_CURSOR, nextCursor).apply();
+              countBatch(rootRef, prefs, nextCursor);
+            });
+          }
+
+          @Override
+          public void onCancelled(@NonNull DatabaseError error) {
+            // Retried on next launch
+          }
+        });
+  }
+
+  /**
+   * Counts the users one after another, then runs the given action.
+   *
+   * @param rootRef Reference to the database root
+   * @param userIds IDs of the users to count
+   * @param index   Index of the next user to count
+   * @param onDone  Action run once every user is counted
+   */
+  private static void countUsers(DatabaseReference rootRef, List<String> userIds, int index,
+      Runnable onDone) {
+    if (index >= userIds.size()) {
+      onDone.run();
+      return;
+    }
+    String userId = userIds.get(index);
+    rootRef.child("userstats").child(userId).runTransaction(new Transaction.Handler() {
+      @NonNull
+      @Override
+      public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+        return LeaderboardMaintainer.countUser(currentData, userId, MOVE_KEY);
+      }
+
+      @Override
+      public void onComplete(@Nullable DatabaseError error, boolean committed,
+          @Nullable DataSnapshot currentData) {
+        if (error != null) {
+          // Retried on next launch
+          return;
+        }
+
+        // Counted concurrently, e.g. by a discovery or another device
+        LeaderboardMaintainer.BucketMove move =
+            LeaderboardMaintainer.pendingMove(currentData, MOVE_KEY);
+        if (!committed || move == null) {
+          countUsers(rootRef, userIds, index + 1, onDone);
+          return;
+        }
+        Map<String, Object> updates = new HashMap<>();
+        LeaderboardMaintainer.addMoveUpdates(updates, userId, MOVE_KEY, move);
+        rootRef.updateChildren(updates)
+            .addOnSuccessListener(aVoid -> countUsers(rootRef, userIds, index + 1, onDone));
+      }
+    });
+  }
+
+  /**
+   * Places the users with the most points in the top list, then marks the leaderboard as
+   * backfilled.
+   *
+   * @param rootRef Reference to the database root
+   * @param prefs   Preferences where completion is recorded
+   */
+  private static void buildTop(DatabaseReference rootRef, SharedPreferences prefs) {
+    rootRef.child("userstats").orderByChild("points").limitToLast(LeaderboardMaintainer.TOP_SIZE)
+        .addListenerForSingleValueEvent(new ValueEventListener() {
+          @Override
+          public void onDataChange(@NonNull DataSnapshot snapshot) {
+            List<String> userIds = new ArrayList<>();
+            Map<String, Long> pointsByUser = new HashMap<>();
+            for (DataSnapshot child : snapshot.getChildren()) {
+              Long points = child.child("points").getValue(Long.class);
+              userIds.add(child.getKey());
+              pointsByUser.put(child.getKey(), points != null ? points : 0);
+            }
+            placeInTop(userIds, pointsByUser, 0, () -> rootRef.child("leaderboard")
+                .child(FIELD_BACKFILLED_AT).setValue(ServerValue.TIMESTAMP)
+                .addOnSuccessListener(aVoid -> prefs.edit().putBoolean(KEY_DONE, true)
+                    .remove(KEY_CURSOR).apply()));
+          }
+
+          @Override
+          public void onCancelled(@NonNull DatabaseError error) {
+            // Retried on next launch
+          }
+        });
+  }
+
+  /**
+   * Places the users in the top list one after another, so their transactions on the list do not
+   * contend, then runs the given action.
+   *
+   * @param userIds      IDs of the users to place
+   * @param pointsByUser Points of the users
+   * @param index        Index of the next user to place
+   * @param onDone       Action run once every user is placed
+   */
+  private static void placeInTop(List<String> userIds, Map<String, Long> pointsByUser, int index,
+      Runnable onDone) {
+    if (index >= userIds.size()) {
+      onDone.run();
+      return;
+    }
+    String userId = userIds.get(index);
+    LeaderboardMaintainer.updateTop(userId, pointsByUser.get(userId),
+        () -> placeInTop(userIds, pointsByUser, index + 1, onDone),
+        error -> {
+          // Retried on next launch
+        });
+  }
+}
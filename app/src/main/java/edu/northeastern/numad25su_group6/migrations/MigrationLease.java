@@ -0,0 +1,101 @@
+package edu.northeastern.numad25su_group6.migrations;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Transaction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MigrationLease lets a single client run the migrations that scan whole nodes, instead of every
+ * device scanning them on every launch until they are done. The lease is one node holding the ID of
+ * the user who holds it and when it expires, taken in a transaction when it is free, expired or
+ * already held by the same user. Other clients only run the per-user parts of the migrations. The
+ * migrations are idempotent, so a holder that outlives its lease only repeats work another client
+ * also does. An admin script or a Cloud Function would avoid client scans altogether.
+ */
+public final class MigrationLease {
+
+  /**
+   * Callback notified whether the lease is held.
+   */
+  public interface Callback {
+
+    /**
+     * Called once the lease was requested.
+     *
+     * @param held true if the current user holds the lease and should run the scans
+     */
+    void onResult(boolean held);
+  }
+
+  private static final String LEASE_PATH = "migrations/lease";
+  private static final String FIELD_HOLDER = "holder";
+  private static final String FIELD_EXPIRES_AT = "expiresAt";
+
+  // Time the holder has to finish the scans before another client may take over
+  private static final long DURATION_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  // Migrations that scan whole nodes, recorded as done on this device once completed
+  private static final String[] KEYS_DONE = {
+      GeoHashBackfill.KEY_DONE,
+      UserStatsRekey.KEY_DONE,
+      UserDiscoveriesBackfill.KEY_DONE,
+      SavedTreasuresRekey.KEY_DONE,
+      LeaderboardBackfill.KEY_DONE,
+      UserStatsCountersBackfill.KEY_DONE
+  };
+
+  private MigrationLease() {
+  }
+
+  /**
+   * Takes or renews the lease for the current user. A device that has completed every migration
+   * does not request it.
+   *
+   * @param context  Context used to read the migration state
+   * @param userId   The ID of the current user
+   * @param callback Callback notified whether the lease is held
+   */
+  public static void acquire(Context context, String userId, Callback callback) {
+    SharedPreferences prefs = context.getApplicationContext()
+        .getSharedPreferences(GeoHashBackfill.PREFS_NAME, Context.MODE_PRIVATE);
+    boolean pending = false;
+    for (String key : KEYS_DONE) {
+      pending |= !prefs.getBoolean(key, false);
+    }
+    if (!pending) {
+      callback.onResult(false);
+      return;
+    }
+    FirebaseDatabase.getInstance().getReference(LEASE_PATH)
+        .runTransaction(new Transaction.Handler() {
+          @NonNull
+          @Override
+          public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+            // Expiry uses the device clock, a skewed clock only moves the takeover
+            long now = System.currentTimeMillis();
+            String holder = currentData.child(FIELD_HOLDER).getValue(String.class);
+            Long expiresAt = currentData.child(FIELD_EXPIRES_AT).getValue(Long.class);
+            if (holder != null && !holder.equals(userId) && expiresAt != null
+                && expiresAt > now) {
+              return Transaction.abort();
+            }
+            currentData.child(FIELD_HOLDER).setValue(userId);
+            currentData.child(FIELD_EXPIRES_AT).setValue(now + DURATION_MILLIS);
+            return Transaction.success(currentData);
+          }
+
+          @Override
+          public void onComplete(@Nullable DatabaseError error, boolean committed,
+              @Nullable DataSnapshot currentData) {
+            callback.onResult(error == null && committed);
+          }
+        });
+  }
+}
@@ -0,0 +1,98 @@
+package edu.northeastern.numad25su_group6.migrations;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import androidx.annotation.NonNull;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SavedTreasuresRekey moves bookmarks that were stored as push-keyed rows with a userId field to
+ * savedTreasures/{uid}/{treasureId}. Rows are fetched in small batches, and each batch is moved
+ * and deleted in one multi-path update, so the migration can be interrupted and resumed safely.
+ * Duplicate rows for the same treasure collapse into one bookmark.
+ */
+public final class SavedTreasuresRekey {
+
+  static final String KEY_DONE = "saved_treasures_rekey_done";
+  private static final int BATCH_SIZE = 200;
+
+  // Characters of a push key, whose first eight encode the creation time
+  private static final String PUSH_CHARS =
+      "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+
+  private SavedTreasuresRekey() {
+  }
+
+  /**
+   * Runs the migration unless this device has already completed it.
+   *
+   * @param context Context used to read and write the migration flag
+   */
+  public static void runOnce(Context context) {
+    SharedPreferences prefs = context.getApplicationContext()
+        .getSharedPreferences(GeoHashBackfill.PREFS_NAME, Context.MODE_PRIVATE);
+    if (prefs.getBoolean(KEY_DONE, false)) {
+      return;
+    }
+    DatabaseReference savedRef = FirebaseDatabase.getInstance().getReference("savedTreasures");
+    migrateBatch(savedRef, prefs);
+  }
+
+  /**
+   * Moves one batch of push-keyed rows and continues with the next batch. Only the old rows have a
+   * userId field, so the per-user nodes are never returned.
+   *
+   * @param savedRef Reference to the saved treasures node
+   * @param prefs    Preferences where completion is recorded
+   */
+  private static void migrateBatch(DatabaseReference savedRef, SharedPreferences prefs) {
+    savedRef.orderByChild("userId").startAt("").limitToFirst(BATCH_SIZE)
+        .addListenerForSingleValueEvent(new ValueEventListener() {
+          @Override
+          public void onDataChange(@NonNull DataSnapshot snapshot) {
+            Map<String, Object> updates = new HashMap<>();
+            for (DataSnapshot row : snapshot.getChildren()) {
+              String userId = row.child("userId").getValue(String.class);
+              String treasureId = row.child("treasureId").getValue(String.class);
+              if (userId != null && treasureId != null) {
+                updates.put(userId + "/" + treasureId + "/savedAt", pushTime(row.getKey()));
+              }
+              updates.put(row.getKey(), null);
+            }
+
+            // Nothing left to move
+            if (updates.isEmpty()) {
+              prefs.edit().putBoolean(KEY_DONE, true).apply();
+              return;
+            }
+            savedRef.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> migrateBatch(savedRef, prefs));
+          }
+
+          @Override
+          public void onCancelled(@NonNull DatabaseError error) {
+            // Retried on next launch
+          }
+        });
+  }
+
+  /**
+   * Decodes the creation time of a push key, so moved bookmarks keep their original order.
+   *
+   * @param pushKey The push key
+   * @return The creation time in milliseconds
+   */
+  private static long pushTime(String pushKey) {
+    long time = 0;
+    for (int i = 0; i < 8 && i < pushKey.length(); i++) {
+      time = time * 64 + Math.max(0, PUSH_CHARS.indexOf(pushKey.charAt(i)));
+    }
+    return time;
+  }
+}
@@ -0,0 +1,183 @@
+package edu.northeastern.numad25su_group6.migrations;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+import edu.northeastern.numad25su_group6.data.DiscoveredTreasuresStore;
+import edu.northeastern.numad25su_group6.data.DiscoveryRecord;
+import edu.northeastern.numad25su_group6.data.UserStatsCounters;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * UserDiscoveriesBackfill builds the userDiscoveries/{uid}/{treasureId} index from discoveries
+ * that were recorded before the index existed. Discoveries are paged from newest to oldest, so
+ * when a user discovered a treasure more than once the earliest discovery is written last and
+ * wins. The paging position is saved after every batch so an interrupted run resumes where it
+ * stopped. The current user's discoveries are indexed first with one query on their user ID, so
+ * their own checks are right while the scan runs, and the completed scan writes a marker so the
+ * node is scanned once per database rather than once per device.
+ */
+public final class UserDiscoveriesBackfill {
+
+  static final String KEY_DONE = "user_discoveries_backfill_done";
+  private static final String KEY_CURSOR = "user_discoveries_backfill_cursor";
+  private static final int BATCH_SIZE = 200;
+
+  private UserDiscoveriesBackfill() {
+  }
+
+  /**
+   * Indexes the current user's discoveries, then runs the backfill unless this device or any other
+   * has already completed it.
+   *
+   * @param context Context used to read and write the migration state
+   * @param userId  The ID of the current user
+   * @param scan    Whether this client holds the {@link MigrationLease} and scans the whole node
+   */
+  public static void runOnce(Context context, String userId, boolean scan) {
+    SharedPreferences prefs = context.getApplicationContext()
+        .getSharedPreferences(GeoHashBackfill.PREFS_NAME, Context.MODE_PRIVATE);
+    if (prefs.getBoolean(KEY_DONE, false)) {
+      return;
+    }
+    DatabaseReference rootRef = FirebaseDatabase.getInstance().getReference();
+    rootRef.child(DiscoveredTreasuresStore.INDEX_COMPLETE_PATH)
+        .addListenerForSingleValueEvent(new ValueEventListener() {
+          @Override
+          public void onDataChange(@NonNull DataSnapshot snapshot) {
+            if (snapshot.exists()) {
+              prefs.edit().putBoolean(KEY_DONE, true).remove(KEY_CURSOR).apply();
+              return;
+            }
+            indexUser(rootRef, userId, () -> {
+              if (scan) {
+                backfillBatch(rootRef, prefs, prefs.getString(KEY_CURSOR, null));
+              }
+            });
+          }
+
+          @Override
+          public void onCancelled(@NonNull DatabaseError error) {
+            // Retried on next launch
+          }
+        });
+  }
+
+  /**
+   * Indexes all discoveries of one user.
+   *
+   * @param rootRef Reference to the database root
+   * @param userId  The ID of the user
+   * @param onDone  Action run once the discoveries are indexed
+   */
+  private static void indexUser(DatabaseReference rootRef, String userId, Runnable onDone) {
+    rootRef.child("discoveries").orderByChild("userId").equalTo(userId)
+        .addListenerForSingleValueEvent(new ValueEventListener() {
+          @Override
+          public void onDataChange(@NonNull DataSnapshot snapshot) {
+            Map<String, Object> updates = new HashMap<>();
+            for (DataSnapshot child : snapshot.getChildren()) {
+              addIndexEntry(updates, child);
+            }
+            if (updates.isEmpty()) {
+              onDone.run();
+              return;
+            }
+            rootRef.updateChildren(updates).addOnSuccessListener(aVoid -> onDone.run());
+          }
+
+          @Override
+          public void onCancelled(@NonNull DatabaseError error) {
+            // Retried on next launch
+          }
+        });
+  }
+
+  /**
+   * Indexes one batch of discoveries older than the cursor and continues with the next batch.
+   *
+   * @param rootRef Reference to the database root
+   * @param prefs   Preferences where progress is recorded
+   * @param cursor  Key of the oldest discovery of the previous batch, or null to start at the
+   *                newest
+   */
+  private static void backfillBatch(DatabaseReference rootRef, SharedPreferences prefs,
+      @Nullable String cursor) {
+    DatabaseReference discoveriesRef = rootRef.child("discoveries");
+    (cursor == null ? discoveriesRef.orderByKey()
+        : discoveriesRef.orderByKey().endBefore(cursor))
+        .limitToLast(BATCH_SIZE)
+        .addListenerForSingleValueEvent(new ValueEventListener() {
+          @Override
+          public void onDataChange(@NonNull DataSnapshot snapshot) {
+            Map<String, Object> updates = new HashMap<>();
+            String oldestKey = null;
+            for (DataSnapshot child : snapshot.getChildren()) {
+              if (oldestKey == null) {
+                oldestKey = child.getKey();
+              }
+              addIndexEntry(updates, child);
+            }
+
+            boolean last = snapshot.getChildrenCount() < BATCH_SIZE;
+            String nextCursor = oldestKey;
+            Runnable next = () -> {
+              if (last) {
+                rootRef.child(DiscoveredTreasuresStore.INDEX_COMPLETE_PATH)
+                    .setValue(ServerValue.TIMESTAMP)
+                    .addOnSuccessListener(aVoid -> prefs.edit().putBoolean(KEY_DONE, true)
+                        .remove(KEY_CURSOR).apply());
+              } else {
+                prefs.edit().putString(KEY_CURSOR, nextCursor).apply();
+                backfillBatch(rootRef, prefs, nextCursor);
+              }
+            };
+            if (updates.isEmpty()) {
+              next.run();
+              return;
+            }
+            rootRef.updateChildren(updates).addOnSuccessListener(aVoid -> next.run());
+          }
+
+          @Override
+          public void onCancelled(@NonNull DatabaseError error) {
+            // Retried on next launch
+          }
+        });
+  }
+
+  /**
+   * Adds the index entry of a discovery to an update. Discoveries arrive oldest first, so the
+   * earliest discovery of a treasure is kept.
+   *
+   * @param updates  The update, relative to the database root
+   * @param snapshot The snapshot of the discovery
+   */
+  private static void addIndexEntry(Map<String, Object> updates, DataSnapshot snapshot) {
+    DiscoveryRecord discovery = DiscoveryRecord.fromSnapshot(snapshot);
+    if (discovery == null || discovery.userId == null) {
+      return;
+    }
+    String path = "userDiscoveries/" + discovery.userId + "/" + discovery.treasureId;
+    if (!updates.containsKey(path)) {
+      Map<String, Object> entry = new HashMap<>();
+      entry.put("discoveryId", discovery.key);
+      entry.put("discoveryTime", discovery.discoveryTime);
+      entry.put("pointsEarned", discovery.pointsEarned);
+
+      // Keep the flag of a discovery committed while the backfill runs, or it is counted twice
+      if (snapshot.hasChild(UserStatsCounters.FIELD_COUNTED)) {
+        UserStatsCounters.markCounted(entry);
+      }
+      updates.put(path, entry);
+    }
+  }
+}
@@ -0,0 +1,242 @@
+package edu.northeastern.numad25su_group6.migrations;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+import edu.northeastern.numad25su_group6.data.UserStatsCounters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * UserStatsCountersBackfill adds the discoveries and treasures written before the counters were
+ * maintained to the counters of every user. It waits until the userstats re-key and the discovery
+ * index backfill have completed, so every discovery is indexed under its user. Both nodes are
+ * scanned paged by key, and only records without the counted flag are counted, since the others
+ * are already included by the live increments. Each user's count is then added to their counters
+ * in a transaction that flags the record, so increments written during the scan are kept and a
+ * retry never adds the count twice. The completed backfill writes a marker, so it runs once per
+ * database rather than once per device. An interrupted scan starts over on the next launch and
+ * skips the users it already updated.
+ */
+public final class UserStatsCountersBackfill {
+
+  static final String KEY_DONE = "userstats_counters_backfill_done";
+  private static final String MARKER_PATH = "migrations/userStatsCounters";
+
+  // Field of a userstats record whose counters include the records written before
+  private static final String FIELD_BACKFILLED = "countersBackfilled";
+
+  // Each discovery index node holds all discoveries of one user, so fewer are read per page
+  private static final int USER_BATCH_SIZE = 100;
+  private static final int TREASURE_BATCH_SIZE = 500;
+
+  private UserStatsCountersBackfill() {
+  }
+
+  /**
+   * Runs the backfill unless this device or any other has already completed it.
+   *
+   * @param context Context used to read and write the migration state
+   */
+  public static void runOnce(Context context) {
+    SharedPreferences prefs = context.getApplicationContext()
+        .getSharedPreferences(GeoHashBackfill.PREFS_NAME, Context.MODE_PRIVATE);
+    if (prefs.getBoolean(KEY_DONE, false) || !prefs.getBoolean(UserStatsRekey.KEY_DONE, false)
+        || !prefs.getBoolean(UserDiscoveriesBackfill.KEY_DONE, false)) {
+      return;
+    }
+    DatabaseReference rootRef = FirebaseDatabase.getInstance().getReference();
+    rootRef.child(MARKER_PATH).addListenerForSingleValueEvent(new ValueEventListener() {
+      @Override
+      public void onDataChange(@NonNull DataSnapshot snapshot) {
+        if (snapshot.exists()) {
+          prefs.edit().putBoolean(KEY_DONE, true).apply();
+          return;
+        }
+        countDiscoveries(rootRef, prefs, null, new HashMap<>());
+      }
+
+      @Override
+      public void onCancelled(@NonNull DatabaseError error) {
+        // Retried on next launch
+      }
+    });
+  }
+
+  /**
+   * Counts the discoveries of one page of users and continues with the next page.
+   *
+   * @param rootRef     Reference to the database root
+   * @param prefs       Preferences where completion is recorded
+   * @param cursor      Key of the last user of the previous page, or null to start at the
+   *                    beginning
+   * @param discoveries Uncounted discoveries found so far, keyed by user ID
+   */
+  private static void countDiscoveries(DatabaseReference rootRef, SharedPreferences prefs,
+      @Nullable String cursor, Map<String, Long> discoveries) {
+    DatabaseReference indexRef = rootRef.child("userDiscoveries");
+    (cursor == null ? indexRef.orderByKey() : indexRef.orderByKey().startAfter(cursor))
+        .limitToFirst(USER_BATCH_SIZE)
+        .addListenerForSingleValueEvent(new ValueEventListener() {
+          @Override
+          public void onDataChange(@NonNull DataSnapshot snapshot) {
+            String lastKey = null;
+            for (DataSnapshot child : snapshot.getChildren()) {
+              lastKey = child.getKey();
+              long uncounted = 0;
+              for (DataSnapshot entry : child.getChildren()) {
+                if (!entry.hasChild(UserStatsCounters.FIELD_COUNTED)) {
+                  uncounted++;
+                }
+              }
+              if (uncounted > 0) {
+                discoveries.put(lastKey, uncounted);
+              }
+            }
+
+            // Nothing left to page through
+            if (snapshot.getChildrenCount() < USER_BATCH_SIZE) {
+              countTreasures(rootRef, prefs, null, discoveries, new HashMap<>());
+            } else {
+              countDiscoveries(rootRef, prefs, lastKey, discoveries);
+            }
+          }
+
+          @Override
+          public void onCancelled(@NonNull DatabaseError error) {
+            // Retried on next launch
+          }
+        });
+  }
+
+  /**
+   * Counts the creators of one page of treasures and continues with the next page.
+   *
+   * @param rootRef     Reference to the database root
+   * @param prefs       Preferences where completion is recorded
+   * @param cursor      Key of the last treasure of the previous page, or null to start at the
+   *                    beginning
+   * @param discoveries Uncounted discoveries per user
+   * @param created     Uncounted treasures found so far, keyed by the ID of their creator
+   */
+  private static void countTreasures(DatabaseReference rootRef, SharedPreferences prefs,
+      @Nullable String cursor, Map<String, Long> discoveries, Map<String, Long> created) {
+    DatabaseReference treasuresRef = rootRef.child("treasures");
+    (cursor == null ? treasuresRef.orderByKey() : treasuresRef.orderByKey().startAfter(cursor))
+        .limitToFirst(TREASURE_BATCH_SIZE)
+        .addListenerForSingleValueEvent(new ValueEventListener() {
+          @Override
+          public void onDataChange(@NonNull DataSnapshot snapshot) {
+            String lastKey = null;
+            for (DataSnapshot child : snapshot.getChildren()) {
+              lastKey = child.getKey();
+              String creatorId = child.child("createdByUserId").getValue(String.class);
+              if (creatorId != null && !child.hasChild(UserStatsCounters.FIELD_COUNTED)) {
+                created.merge(creatorId, 1L, Long::sum);
+              }
+            }
+
+            // Nothing left to page through
+            if (snapshot.getChildrenCount() < TREASURE_BATCH_SIZE) {
+              write(rootRef, prefs, discoveries, created);
+            } else {
+              countTreasures(rootRef, prefs, lastKey, discoveries, created);
+            }
+          }
+
+          @Override
+          public void onCancelled(@NonNull DatabaseError error) {
+            // Retried on next launch
+          }
+        });
+  }
+
+  /**
+   * Adds the uncounted records to the counters of every user found, then marks the counters as
+   * backfilled.
+   *
+   * @param rootRef     Reference to the database root
+   * @param prefs       Preferences where completion is recorded
+   * @param discoveries Uncounted discoveries per user
+   * @param created     Uncounted treasures per creator
+   */
+  private static void write(DatabaseReference rootRef, SharedPreferences prefs,
+      Map<String, Long> discoveries, Map<String, Long> created) {
+    Set<String> userIds = new HashSet<>(discoveries.keySet());
+    userIds.addAll(created.keySet());
+    addCounts(rootRef, new ArrayList<>(userIds), 0, discoveries, created,
+        () -> rootRef.child(MARKER_PATH).setValue(ServerValue.TIMESTAMP)
+            .addOnSuccessListener(aVoid -> prefs.edit().putBoolean(KEY_DONE, true).apply()));
+  }
+
+  /**
+   * Adds the uncounted records to the counters of the users one after another, then runs the
+   * given action.
+   *
+   * @param rootRef     Reference to the database root
+   * @param userIds     IDs of the users to update
+   * @param index       Index of the next user to update
+   * @param discoveries Uncounted discoveries per user
+   * @param created     Uncounted treasures per creator
+   * @param onDone      Action run once every user is updated
+   */
+  private static void addCounts(DatabaseReference rootRef, List<String> userIds, int index,
+      Map<String, Long> discoveries, Map<String, Long> created, Runnable onDone) {
+    if (index >= userIds.size()) {
+      onDone.run();
+      return;
+    }
+    String userId = userIds.get(index);
+    long discovered = discoveries.getOrDefault(userId, 0L);
+    long treasures = created.getOrDefault(userId, 0L);
+    rootRef.child("userstats").child(userId).runTransaction(new Transaction.Handler() {
+      @NonNull
+      @Override
+      public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+        // Already updated by an earlier run or another device
+        if (currentData.child(FIELD_BACKFILLED).getValue() != null) {
+          return Transaction.abort();
+        }
+        add(currentData.child(UserStatsCounters.FIELD_DISCOVERIES), discovered);
+        add(currentData.child(UserStatsCounters.FIELD_TREASURES_CREATED), treasures);
+        currentData.child("userid").setValue(userId);
+        currentData.child(FIELD_BACKFILLED).setValue(true);
+        return Transaction.success(currentData);
+      }
+
+      @Override
+      public void onComplete(@Nullable DatabaseError error, boolean committed,
+          @Nullable DataSnapshot currentData) {
+        if (error != null) {
+          // Retried on next launch
+          return;
+        }
+        addCounts(rootRef, userIds, index + 1, discoveries, created, onDone);
+      }
+    });
+  }
+
+  /**
+   * Adds a count to a counter in a transaction.
+   *
+   * @param counter The counter
+   * @param count   The count to add
+   */
+  private static void add(MutableData counter, long count) {
+    Long value = counter.getValue(Long.class);
+    counter.setValue((value != null ? value : 0) + count);
+  }
+}
@@ -0,0 +1,224 @@
+package edu.northeastern.numad25su_group6.migrations;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+import edu.northeastern.numad25su_group6.data.LeaderboardMaintainer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * UserStatsRekey moves user statistics that were stored under random push keys to userstats/{uid}.
+ * The node is paged by key and every user with push-keyed records is merged in turn: duplicates are
+ * merged by their highest points, added once to any points already earned under the new key, and
+ * then deleted together with the move of the user between leaderboard buckets. The merge is
+ * recorded as a pending move until that delete, so a retried merge never adds the same points
+ * twice, and the paging position is saved so an interrupted run resumes where it stopped. The
+ * current user is merged first, so their points are never split between two records while the scan
+ * runs, and the completed scan writes a marker so the node is scanned once per database rather than
+ * once per device.
+ */
+public final class UserStatsRekey {
+
+  static final String KEY_DONE = "userstats_rekey_done";
+  private static final String KEY_CURSOR = "userstats_rekey_cursor";
+  private static final String MARKER_PATH = "migrations/userStatsRekey";
+
+  // Key under which the merge records the bucket move of a user
+  private static final String MOVE_KEY = "rekey";
+  private static final int BATCH_SIZE = 200;
+
+  private UserStatsRekey() {
+  }
+
+  /**
+   * Merges the current user's records, then runs the migration unless this device or any other
+   * has already completed it.
+   *
+   * @param context Context used to read and write the migration state
+   * @param userId  The ID of the current user
+   * @param scan    Whether this client holds the {@link MigrationLease} and scans the whole node
+   */
+  public static void runOnce(Context context, String userId, boolean scan) {
+    SharedPreferences prefs = context.getApplicationContext()
+        .getSharedPreferences(GeoHashBackfill.PREFS_NAME, Context.MODE_PRIVATE);
+    if (prefs.getBoolean(KEY_DONE, false)) {
+      return;
+    }
+    DatabaseReference rootRef = FirebaseDatabase.getInstance().getReference();
+    rootRef.child(MARKER_PATH).addListenerForSingleValueEvent(new ValueEventListener() {
+      @Override
+      public void onDataChange(@NonNull DataSnapshot snapshot) {
+        if (snapshot.exists()) {
+          prefs.edit().putBoolean(KEY_DONE, true).remove(KEY_CURSOR).apply();
+          return;
+        }
+        mergeUser(rootRef.child("userstats"), userId, () -> {
+          if (scan) {
+            migrateBatch(rootRef, prefs, prefs.getString(KEY_CURSOR, null));
+          }
+        });
+      }
+
+      @Override
+      public void onCancelled(@NonNull DatabaseError error) {
+        // Retried on next launch
+      }
+    });
+  }
+
+  /**
+   * Migrates the users with push-keyed records in one page and continues with the next page.
+   *
+   * @param rootRef Reference to the database root
+   * @param prefs   Preferences where progress is recorded
+   * @param cursor  Key of the last record of the previous page, or null to start at the beginning
+   */
+  private static void migrateBatch(DatabaseReference rootRef, SharedPreferences prefs,
+      @Nullable String cursor) {
+    DatabaseReference statsRef = rootRef.child("userstats");
+    (cursor == null ? statsRef.orderByKey() : statsRef.orderByKey().startAfter(cursor))
+        .limitToFirst(BATCH_SIZE)
+        .addListenerForSingleValueEvent(new ValueEventListener() {
+          @Override
+          public void onDataChange(@NonNull DataSnapshot snapshot) {
+            Set<String> userIds = new LinkedHashSet<>();
+            String lastKey = null;
+            long count = 0;
+            for (DataSnapshot child : snapshot.getChildren()) {
+              lastKey = child.getKey();
+              count++;
+              String userId = child.child("userid").getValue(String.class);
+              if (userId != null && !userId.equals(lastKey)) {
+                userIds.add(userId);
+              }
+            }
+
+            // Nothing left to page through
+            if (count < BATCH_SIZE) {
+              Runnable finish = () -> rootRef.child(MARKER_PATH).setValue(ServerValue.TIMESTAMP)
+                  .addOnSuccessListener(aVoid -> prefs.edit().putBoolean(KEY_DONE, true)
+                      .remove(KEY_CURSOR).apply());
+              mergeUsers(statsRef, new ArrayList<>(userIds), 0, finish);
+              return;
+            }
+            String nextCursor = lastKey;
+            mergeUsers(statsRef, new ArrayList<>(userIds), 0, () -> {
+              prefs.edit().putString(KEY_CURSOR, nextCursor).apply();
+              migrateBatch(rootRef, prefs, nextCursor);
+            });
+          }
+
+          @Override
+          public void onCancelled(@NonNull DatabaseError error) {
+            // Retried on next launch
+          }
+        });
+  }
+
+  /**
+   * Merges the users one after another, then runs the given action.
+   *
+   * @param statsRef Reference to the userstats node
+   * @param userIds  IDs of the users to merge
+   * @param index    Index of the next user to merge
+   * @param onDone   Action run once every user is merged
+   */
+  private static void mergeUsers(DatabaseReference statsRef, List<String> userIds, int index,
+      Runnable onDone) {
+    if (index >= userIds.size()) {
+      onDone.run();
+      return;
+    }
+    mergeUser(statsRef, userIds.get(index),
+        () -> mergeUsers(statsRef, userIds, index + 1, onDone));
+  }
+
+  /**
+   * Merges all push-keyed records of one user into userstats/{uid} and deletes them.
+   *
+   * @param statsRef Reference to the userstats node
+   * @param userId   The ID of the user
+   * @param onDone   Action run once the user is merged
+   */
+  private static void mergeUser(DatabaseReference statsRef, String userId, Runnable onDone) {
+    statsRef.orderByChild("userid").equalTo(userId)
+        .addListenerForSingleValueEvent(new ValueEventListener() {
+          @Override
+          public void onDataChange(@NonNull DataSnapshot snapshot) {
+            List<String> legacyKeys = new ArrayList<>();
+            long legacyPoints = 0;
+            for (DataSnapshot child : snapshot.getChildren()) {
+              if (userId.equals(child.getKey())) {
+                continue;
+              }
+              legacyKeys.add(child.getKey());
+              Long points = child.child("points").getValue(Long.class);
+              if (points != null) {
+                legacyPoints = Math.max(legacyPoints, points);
+              }
+            }
+            if (legacyKeys.isEmpty()) {
+              onDone.run();
+              return;
+            }
+            long mergedPoints = legacyPoints;
+            statsRef.child(userId).runTransaction(new Transaction.Handler() {
+              @NonNull
+              @Override
+              public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                // A merge whose delete did not complete is still recorded as a pending move
+                return LeaderboardMaintainer.addPoints(currentData, userId, MOVE_KEY,
+                    mergedPoints);
+              }
+
+              @Override
+              public void onComplete(@Nullable DatabaseError error, boolean committed,
+                  @Nullable DataSnapshot currentData) {
+                if (error != null || !committed) {
+                  // Retried on next launch
+                  return;
+                }
+                Map<String, Object> updates = new HashMap<>();
+                for (String key : legacyKeys) {
+                  updates.put("userstats/" + key, null);
+                }
+                LeaderboardMaintainer.BucketMove move =
+                    LeaderboardMaintainer.pendingMove(currentData, MOVE_KEY);
+                if (move != null) {
+                  LeaderboardMaintainer.addMoveUpdates(updates, userId, MOVE_KEY, move);
+                }
+                statsRef.getRoot().updateChildren(updates).addOnSuccessListener(aVoid -> {
+                  if (move == null || move.points == 0) {
+                    onDone.run();
+                    return;
+                  }
+
+                  // A top list built before the merge misses the merged points
+                  LeaderboardMaintainer.updateTop(userId, move.points, onDone,
+                      error -> onDone.run());
+                });
+              }
+            });
+          }
+
+          @Override
+          public void onCancelled(@NonNull DatabaseError error) {
+            // Retried on next launch
+          }
+        });
+  }
+}
@@ -1,22 +1,24 @@
 package edu.northeastern.numad25su_group6.pojo;
 
+import edu.northeastern.numad25su_group6.images.ImageVariants;
+
 /**
- * Treasure is a simple POJO class that represents a treasure item with a title and an image URL.
+ * Treasure is a simple POJO class that represents a treasure item with a title and an image.
  */
 public class Treasure {
 
   // Fields of the Treasure class
   public String title;
   public String description;
-  public String imageUrl;
+  public ImageVariants image;
 
   /**
    * Default constructor required for calls to DataSnapshot.getValue(Treasure.class)
    */
-  public Treasure(String title, String description, String imageUrl) {
+  public Treasure(String title, String description, ImageVariants image) {
     this.title = title;
     this.description = description;
-    this.imageUrl = imageUrl;
+    this.image = image;
   }
 
   /**
@@ -29,12 +31,12 @@ public class Treasure {
   }
 
   /**
-   * Gets the image URL of the treasure.
+   * Gets the image variants of the treasure.
    *
-   * @return the image URL of the treasure
+   * @return the image variants of the treasure
    */
-  public String getImageUrl() {
-    return imageUrl;
+  public ImageVariants getImage() {
+    return image;
   }
 
   /**
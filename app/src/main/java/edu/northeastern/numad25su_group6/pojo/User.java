@@ -12,6 +12,10 @@ public class User {
   private String email;
   private String profileImageUrl;
 
+  // Smaller variants of the profile image, see ImageVariants
+  private String profileImageUrlSmall;
+  private String profileImageUrlMedium;
+
   /**
    * Default constructor required for Firebase Realtime Database. It is needed to deserialize the
    * object from DataSnapshot.
@@ -94,4 +98,40 @@ public class User {
   public void setProfileImageUrl(String profileImageUrl) {
     this.profileImageUrl = profileImageUrl;
   }
+
+  /**
+   * Getter for the URL of the small profile image variant.
+   *
+   * @return The URL, or null if there is none.
+   */
+  public String getProfileImageUrlSmall() {
+    return profileImageUrlSmall;
+  }
+
+  /**
+   * Setter for the URL of the small profile image variant.
+   *
+   * @param profileImageUrlSmall The URL, or null if there is none.
+   */
+  public void setProfileImageUrlSmall(String profileImageUrlSmall) {
+    this.profileImageUrlSmall = profileImageUrlSmall;
+  }
+
+  /**
+   * Getter for the URL of the medium profile image variant.
+   *
+   * @return The URL, or null if there is none.
+   */
+  public String getProfileImageUrlMedium() {
+    return profileImageUrlMedium;
+  }
+
+  /**
+   * Setter for the URL of the medium profile image variant.
+   *
+   * @param profileImageUrlMedium The URL, or null if there is none.
+   */
+  public void setProfileImageUrlMedium(String profileImageUrlMedium) {
+    this.profileImageUrlMedium = profileImageUrlMedium;
+  }
 }
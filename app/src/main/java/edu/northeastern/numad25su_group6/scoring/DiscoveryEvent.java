@@ -0,0 +1,52 @@
+package edu.northeastern.numad25su_group6.scoring;
+
+/**
+ * DiscoveryEvent describes one discovery for scoring. Fields that are not known where the event is
+ * scored are left at 0, and policies that depend on them award no points.
+ */
+public final class DiscoveryEvent {
+
+  public final String userId;
+  public final String treasureId;
+
+  // Finder place, 1 for the first discovery of the treasure
+  public final int place;
+
+  // Times in milliseconds
+  public final long discoveryTime;
+  public final long treasureCreatedAt;
+
+  // Distance the user travelled since their previous discovery
+  public final double distanceTravelledMeters;
+
+  /**
+   * Constructor for DiscoveryEvent.
+   *
+   * @param userId                  The ID of the user who made the discovery
+   * @param treasureId              The ID of the discovered treasure
+   * @param place                   The finder place, starting at 1
+   * @param discoveryTime           The time of discovery in milliseconds
+   * @param treasureCreatedAt       The time the treasure was created in milliseconds, or 0
+   * @param distanceTravelledMeters Distance travelled since the previous discovery, or 0
+   */
+  public DiscoveryEvent(String userId, String treasureId, int place, long discoveryTime,
+      long treasureCreatedAt, double distanceTravelledMeters) {
+    this.userId = userId;
+    this.treasureId = treasureId;
+    this.place = place;
+    this.discoveryTime = discoveryTime;
+    this.treasureCreatedAt = treasureCreatedAt;
+    this.distanceTravelledMeters = distanceTravelledMeters;
+  }
+
+  /**
+   * Returns a copy of the event with another finder place.
+   *
+   * @param place The finder place, starting at 1
+   * @return The copy
+   */
+  public DiscoveryEvent withPlace(int place) {
+    return new DiscoveryEvent(userId, treasureId, place, discoveryTime, treasureCreatedAt,
+        distanceTravelledMeters);
+  }
+}
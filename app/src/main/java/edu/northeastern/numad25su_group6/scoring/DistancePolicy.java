@@ -0,0 +1,31 @@
+package edu.northeastern.numad25su_group6.scoring;
+
+/**
+ * DistancePolicy rewards walking: it awards points per full kilometer travelled since the
+ * previous discovery, up to a cap.
+ */
+public final class DistancePolicy implements ScoringPolicy {
+
+  private final int pointsPerKilometer;
+  private final int maxPoints;
+
+  /**
+   * Constructor for DistancePolicy.
+   *
+   * @param pointsPerKilometer The points for each full kilometer
+   * @param maxPoints          The most points a single discovery can earn
+   */
+  public DistancePolicy(int pointsPerKilometer, int maxPoints) {
+    this.pointsPerKilometer = pointsPerKilometer;
+    this.maxPoints = maxPoints;
+  }
+
+  @Override
+  public int points(DiscoveryEvent event) {
+    if (!(event.distanceTravelledMeters > 0)) {
+      return 0;
+    }
+    double points = Math.floor(event.distanceTravelledMeters / 1000) * pointsPerKilometer;
+    return (int) Math.min(maxPoints, points);
+  }
+}
@@ -0,0 +1,26 @@
+package edu.northeastern.numad25su_group6.scoring;
+
+/**
+ * FirstFindersPolicy awards a fixed bonus to the first finders of a treasure.
+ */
+public final class FirstFindersPolicy implements ScoringPolicy {
+
+  private final int finders;
+  private final int bonus;
+
+  /**
+   * Constructor for FirstFindersPolicy.
+   *
+   * @param finders The number of finders that earn the bonus
+   * @param bonus   The points each of them earns
+   */
+  public FirstFindersPolicy(int finders, int bonus) {
+    this.finders = finders;
+    this.bonus = bonus;
+  }
+
+  @Override
+  public int points(DiscoveryEvent event) {
+    return event.place >= 1 && event.place <= finders ? bonus : 0;
+  }
+}
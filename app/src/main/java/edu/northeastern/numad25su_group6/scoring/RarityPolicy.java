@@ -0,0 +1,24 @@
+package edu.northeastern.numad25su_group6.scoring;
+
+/**
+ * RarityPolicy awards more points for treasures that few users found before. The first finder
+ * earns the full points, the n-th finder earns the full points divided by n, rounded down.
+ */
+public final class RarityPolicy implements ScoringPolicy {
+
+  private final int maxPoints;
+
+  /**
+   * Constructor for RarityPolicy.
+   *
+   * @param maxPoints The points of the first finder
+   */
+  public RarityPolicy(int maxPoints) {
+    this.maxPoints = maxPoints;
+  }
+
+  @Override
+  public int points(DiscoveryEvent event) {
+    return event.place >= 1 ? maxPoints / event.place : 0;
+  }
+}
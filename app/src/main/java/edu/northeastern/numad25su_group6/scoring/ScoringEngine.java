@@ -0,0 +1,83 @@
+package edu.northeastern.numad25su_group6.scoring;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ScoringEngine adds up the points of its policies for a discovery. It is plain Java, so the
+ * device, unit tests and offline replays of a discovery log all score with the same code.
+ *
+ * <p>Ranks outside the top of the leaderboard are counted per bucket of
+ * {@code LeaderboardMaintainer.BUCKET_WIDTH} points, so they are only exact while every score is a
+ * multiple of that width, as under the default rules. Policies awarding other amounts make users up
+ * to one bucket apart share a rank unless the width is lowered to their greatest common step.
+ */
+public final class ScoringEngine {
+
+  private final ScoringPolicy[] policies;
+
+  /**
+   * Constructor for ScoringEngine.
+   *
+   * @param policies The policies whose points are added up
+   */
+  public ScoringEngine(List<ScoringPolicy> policies) {
+    this.policies = policies.toArray(new ScoringPolicy[0]);
+  }
+
+  /**
+   * Creates the engine with the rules the game uses: the first three finders of a treasure earn 10
+   * points.
+   *
+   * @return The engine
+   */
+  public static ScoringEngine defaultRules() {
+    return new ScoringEngine(
+        Collections.<ScoringPolicy>singletonList(new FirstFindersPolicy(3, 10)));
+  }
+
+  /**
+   * Scores a discovery.
+   *
+   * @param event The discovery
+   * @return The sum of the points of all policies
+   */
+  public int score(DiscoveryEvent event) {
+    int points = 0;
+    for (ScoringPolicy policy : policies) {
+      points += policy.points(event);
+    }
+    return points;
+  }
+
+  /**
+   * Replays a discovery log and returns the points of every user. Finder places are assigned in
+   * log order, which must be chronological; the places stored in the events are ignored. Repeated
+   * discoveries of a treasure by the same user earn nothing.
+   *
+   * @param log The discoveries, oldest first
+   * @return The total points keyed by user ID
+   */
+  public Map<String, Long> replay(List<DiscoveryEvent> log) {
+    Map<String, Long> totals = new HashMap<>();
+    Map<String, Set<String>> findersByTreasure = new HashMap<>();
+    for (DiscoveryEvent event : log) {
+      Set<String> finders = findersByTreasure.get(event.treasureId);
+      if (finders == null) {
+        finders = new HashSet<>();
+        findersByTreasure.put(event.treasureId, finders);
+      }
+      if (!finders.add(event.userId)) {
+        continue;
+      }
+      int points = score(event.withPlace(finders.size()));
+      Long total = totals.get(event.userId);
+      totals.put(event.userId, (total != null ? total : 0) + points);
+    }
+    return totals;
+  }
+}
@@ -0,0 +1,16 @@
+package edu.northeastern.numad25su_group6.scoring;
+
+/**
+ * ScoringPolicy awards points for a discovery. Policies must be pure functions of the event, so
+ * the same rules give the same points on the device, in tests and in offline replays.
+ */
+public interface ScoringPolicy {
+
+  /**
+   * Returns the points this policy awards for a discovery.
+   *
+   * @param event The discovery
+   * @return The points, never negative
+   */
+  int points(DiscoveryEvent event);
+}
@@ -0,0 +1,31 @@
+package edu.northeastern.numad25su_group6.scoring;
+
+/**
+ * TimeDecayPolicy rewards finding new treasures quickly: the points halve every half-life after
+ * the treasure was created and are rounded down.
+ */
+public final class TimeDecayPolicy implements ScoringPolicy {
+
+  private final int maxPoints;
+  private final long halfLifeMillis;
+
+  /**
+   * Constructor for TimeDecayPolicy.
+   *
+   * @param maxPoints      The points for a discovery right after creation
+   * @param halfLifeMillis The time after which the points halve, in milliseconds
+   */
+  public TimeDecayPolicy(int maxPoints, long halfLifeMillis) {
+    this.maxPoints = maxPoints;
+    this.halfLifeMillis = halfLifeMillis;
+  }
+
+  @Override
+  public int points(DiscoveryEvent event) {
+    if (event.treasureCreatedAt <= 0) {
+      return 0;
+    }
+    long age = Math.max(0, event.discoveryTime - event.treasureCreatedAt);
+    return (int) (maxPoints * Math.pow(0.5, (double) age / halfLifeMillis));
+  }
+}
@@ -0,0 +1,357 @@
+package edu.northeastern.numad25su_group6.sync;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import edu.northeastern.numad25su_group6.data.LocalTreasureStore;
+import edu.northeastern.numad25su_group6.images.CameraCapture;
+import edu.northeastern.numad25su_group6.images.ImagePipeline;
+import edu.northeastern.numad25su_group6.images.ImageVariants;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Outbox journals writes in a local SQLite database before they are sent, so discoveries,
+ * bookmarks and new treasures survive process death and missing connectivity. Enqueuing returns
+ * right away; the journal is written on a background thread and {@link OutboxWorker} is scheduled
+ * to flush it once the device is online. Repeated operations on the same target are coalesced:
+ * only the first discovery of a treasure and the last bookmark state are kept.
+ */
+public class Outbox extends SQLiteOpenHelper {
+
+  private static final String TAG = "Outbox";
+
+  /**
+   * Types of journaled operations.
+   */
+  enum Type {
+    DISCOVERY, BOOKMARK, TREASURE
+  }
+
+  /**
+   * A journaled operation waiting to be sent.
+   */
+  static final class Operation {
+
+    final long id;
+    final Type type;
+    final JSONObject payload;
+    final long createdAt;
+    final int attempts;
+
+    /**
+     * Constructor for Operation.
+     *
+     * @param id        The row ID of the operation
+     * @param type      The type of the operation
+     * @param payload   The data of the operation
+     * @param createdAt The time the operation was journaled in milliseconds
+     * @param attempts  The number of failed attempts to send the operation
+     */
+    Operation(long id, Type type, JSONObject payload, long createdAt, int attempts) {
+      this.id = id;
+      this.type = type;
+      this.payload = payload;
+      this.createdAt = createdAt;
+      this.attempts = attempts;
+    }
+  }
+
+  private static final String DB_NAME = "outbox.db";
+  private static final int DB_VERSION = 1;
+
+  // Table and columns
+  private static final String TABLE_OPERATIONS = "operations";
+  private static final String COL_ID = "id";
+  private static final String COL_TYPE = "type";
+  private static final String COL_TARGET = "target";
+  private static final String COL_PAYLOAD = "payload";
+  private static final String COL_CREATED_AT = "created_at";
+  private static final String COL_ATTEMPTS = "attempts";
+
+  // Directory for images of treasures that were not uploaded yet
+  private static final String IMAGE_DIR = "outbox_images";
+
+  // Payload field of the full-size image path, smaller sizes append their field suffix
+  static final String IMAGE_PATH = "imagePath";
+
+  private static Outbox instance;
+
+  private final Context context;
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  /**
+   * Returns the shared outbox.
+   *
+   * @param context Context used to open the database
+   * @return The outbox
+   */
+  public static synchronized Outbox getInstance(Context context) {
+    if (instance == null) {
+      instance = new Outbox(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  /**
+   * Constructor for Outbox.
+   *
+   * @param context The application context
+   */
+  private Outbox(Context context) {
+    super(context, DB_NAME, null, DB_VERSION);
+    this.context = context;
+  }
+
+  @Override
+  public void onCreate(SQLiteDatabase db) {
+    db.execSQL("CREATE TABLE " + TABLE_OPERATIONS + " ("
+        + COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+        + COL_TYPE + " TEXT NOT NULL, "
+        + COL_TARGET + " TEXT NOT NULL, "
+        + COL_PAYLOAD + " TEXT NOT NULL, "
+        + COL_CREATED_AT + " INTEGER NOT NULL, "
+        + COL_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, "
+        + "UNIQUE (" + COL_TYPE + ", " + COL_TARGET + "))");
+  }
+
+  @Override
+  public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    // Pending operations must not be lost, so future schema changes have to migrate the table
+  }
+
+  /**
+   * Journals a discovery. A treasure already waiting to be discovered by the user is kept as is.
+   *
+   * @param userId        The ID of the user
+   * @param treasureId    The ID of the discovered treasure
+   * @param discoveryId   Key of the discovery record, generated up front so retries reuse it
+   * @param discoveryTime The time of discovery in milliseconds
+   */
+  public void enqueueDiscovery(String userId, String treasureId, String discoveryId,
+      long discoveryTime) {
+    executor.execute(() -> {
+      try {
+        JSONObject payload = new JSONObject()
+            .put("userId", userId)
+            .put("treasureId", treasureId)
+            .put("discoveryId", discoveryId)
+            .put("discoveryTime", discoveryTime);
+        insert(Type.DISCOVERY, userId + "/" + treasureId, payload,
+            SQLiteDatabase.CONFLICT_IGNORE);
+      } catch (JSONException e) {
+        Log.e(TAG, "Could not journal discovery", e);
+      }
+    });
+  }
+
+  /**
+   * Journals a bookmark change. It replaces any change of the same bookmark that was not sent yet.
+   *
+   * @param userId     The ID of the user
+   * @param treasureId The ID of the treasure
+   * @param bookmarked Whether the treasure should be saved
+   */
+  public void enqueueBookmark(String userId, String treasureId, boolean bookmarked) {
+    executor.execute(() -> {
+      try {
+        JSONObject payload = new JSONObject()
+            .put("userId", userId)
+            .put("treasureId", treasureId)
+            .put("bookmarked", bookmarked);
+        insert(Type.BOOKMARK, userId + "/" + treasureId, payload,
+            SQLiteDatabase.CONFLICT_REPLACE);
+      } catch (JSONException e) {
+        Log.e(TAG, "Could not journal bookmark", e);
+      }
+    });
+  }
+
+  /**
+   * Loads the bookmark state of a treasure that is waiting to be sent. The query runs after every
+   * change journaled before it, so a toggle the user just made is included.
+   *
+   * @param userId     The ID of the user
+   * @param treasureId The ID of the treasure
+   * @param callback   Callback receiving the pending state on the main thread, or null if no change
+   *                   of the bookmark is pending
+   */
+  public void loadPendingBookmark(String userId, String treasureId,
+      LocalTreasureStore.Callback<Boolean> callback) {
+    executor.execute(() -> {
+      Boolean bookmarked = null;
+      try (Cursor cursor = getReadableDatabase().query(TABLE_OPERATIONS,
+          new String[]{COL_PAYLOAD}, COL_TYPE + " = ? AND " + COL_TARGET + " = ?",
+          new String[]{Type.BOOKMARK.name(), userId + "/" + treasureId},
+          null, null, null)) {
+        if (cursor.moveToFirst()) {
+          bookmarked = new JSONObject(cursor.getString(0)).getBoolean("bookmarked");
+        }
+      } catch (JSONException e) {
+        Log.e(TAG, "Could not read pending bookmark", e);
+      }
+      Boolean result = bookmarked;
+      mainHandler.post(() -> callback.onLoaded(result));
+    });
+  }
+
+  /**
+   * Journals a new treasure. The image, if any, is compressed into app storage first, so it can
+   * still be uploaded after the picked content is no longer accessible.
+   *
+   * @param treasureId The key of the new treasure
+   * @param fields     The fields of the treasure
+   * @param imageUri   Uri of the treasure image, or null if there is none
+   */
+  public void enqueueTreasure(String treasureId, Map<String, Object> fields,
+      @Nullable Uri imageUri) {
+    executor.execute(() -> {
+      try {
+        JSONObject payload = new JSONObject()
+            .put("treasureId", treasureId)
+            .put("fields", new JSONObject(fields));
+        if (imageUri != null) {
+          Map<ImageVariants.Size, File> images = compressImage(imageUri, treasureId);
+          for (Map.Entry<ImageVariants.Size, File> image : images.entrySet()) {
+            payload.put(IMAGE_PATH + image.getKey().fieldSuffix,
+                image.getValue().getAbsolutePath());
+          }
+        }
+        insert(Type.TREASURE, treasureId, payload, SQLiteDatabase.CONFLICT_REPLACE);
+      } catch (JSONException e) {
+        Log.e(TAG, "Could not journal treasure", e);
+      }
+    });
+  }
+
+  /**
+   * Inserts an operation and schedules the worker that sends it.
+   *
+   * @param type       The type of the operation
+   * @param target     The target used to coalesce operations of the same type
+   * @param payload    The data of the operation
+   * @param onConflict The conflict algorithm for an operation on the same target
+   */
+  private void insert(Type type, String target, JSONObject payload, int onConflict) {
+    ContentValues values = new ContentValues();
+    values.put(COL_TYPE, type.name());
+    values.put(COL_TARGET, target);
+    values.put(COL_PAYLOAD, payload.toString());
+    values.put(COL_CREATED_AT, System.currentTimeMillis());
+    getWritableDatabase().insertWithOnConflict(TABLE_OPERATIONS, null, values, onConflict);
+    OutboxWorker.schedule(context);
+  }
+
+  /**
+   * Compresses an image into every variant size and stores the variants in the outbox directory.
+   *
+   * @param imageUri   Uri of the image
+   * @param treasureId The key of the treasure the image belongs to
+   * @return The stored files keyed by size, empty if the image could not be read
+   */
+  private Map<ImageVariants.Size, File> compressImage(Uri imageUri, String treasureId) {
+    Map<ImageVariants.Size, File> files = new EnumMap<>(ImageVariants.Size.class);
+    File dir = new File(context.getFilesDir(), IMAGE_DIR);
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      return files;
+    }
+    Map<ImageVariants.Size, byte[]> variants =
+        ImagePipeline.compress(context.getContentResolver(), imageUri);
+
+    // A camera capture is only needed until it is compressed
+    CameraCapture.release(context, imageUri);
+    if (variants == null) {
+      return files;
+    }
+    for (Map.Entry<ImageVariants.Size, byte[]> variant : variants.entrySet()) {
+      File file = new File(dir, treasureId + variant.getKey().fileSuffix + ".jpg");
+      try (OutputStream out = new FileOutputStream(file)) {
+        out.write(variant.getValue());
+        files.put(variant.getKey(), file);
+      } catch (IOException e) {
+        Log.e(TAG, "Could not store treasure image", e);
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Returns the oldest pending operations. Called on the worker thread.
+   *
+   * @param limit The maximum number of operations
+   * @return The operations, oldest first
+   */
+  List<Operation> pending(int limit) {
+    List<Operation> operations = new ArrayList<>();
+    try (Cursor cursor = getReadableDatabase().query(TABLE_OPERATIONS,
+        new String[]{COL_ID, COL_TYPE, COL_PAYLOAD, COL_CREATED_AT, COL_ATTEMPTS},
+        null, null, null, null, COL_ID, String.valueOf(limit))) {
+      while (cursor.moveToNext()) {
+        try {
+          operations.add(new Operation(cursor.getLong(0), Type.valueOf(cursor.getString(1)),
+              new JSONObject(cursor.getString(2)), cursor.getLong(3), cursor.getInt(4)));
+        } catch (JSONException | IllegalArgumentException e) {
+          // A row that cannot be read will never be sent
+          remove(cursor.getLong(0));
+        }
+      }
+    }
+    return operations;
+  }
+
+  /**
+   * Removes a sent operation. Called on the worker thread.
+   *
+   * @param id The row ID of the operation
+   */
+  void remove(long id) {
+    getWritableDatabase().delete(TABLE_OPERATIONS, COL_ID + " = ?",
+        new String[]{String.valueOf(id)});
+  }
+
+  /**
+   * Counts a failed attempt to send an operation. Called on the worker thread.
+   *
+   * @param id The row ID of the operation
+   */
+  void markFailed(long id) {
+    getWritableDatabase().execSQL("UPDATE " + TABLE_OPERATIONS + " SET " + COL_ATTEMPTS + " = "
+        + COL_ATTEMPTS + " + 1 WHERE " + COL_ID + " = ?", new Object[]{id});
+  }
+
+  /**
+   * Converts a JSON object of treasure fields back into a map for the database.
+   *
+   * @param json The JSON object
+   * @return The fields
+   */
+  static Map<String, Object> toMap(JSONObject json) {
+    Map<String, Object> map = new HashMap<>();
+    Iterator<String> keys = json.keys();
+    while (keys.hasNext()) {
+      String key = keys.next();
+      map.put(key, json.opt(key));
+    }
+    return map;
+  }
+}
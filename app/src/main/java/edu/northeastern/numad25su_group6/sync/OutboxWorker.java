@@ -0,0 +1,351 @@
+package edu.northeastern.numad25su_group6.sync;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageReference;
+import edu.northeastern.numad25su_group6.data.DiscoveryCommitter;
+import edu.northeastern.numad25su_group6.data.UserStatsCounters;
+import edu.northeastern.numad25su_group6.images.ImageVariants;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * OutboxWorker sends the operations journaled in the {@link Outbox}. It only runs with a network
+ * connection and drains the outbox batch by batch: bookmark changes of a batch are coalesced into
+ * one multi-path update, discoveries and new treasures are sent one by one. If the database rejects
+ * the coalesced update, its changes are sent one by one, so a single rejected path cannot hold back
+ * the others. Sent operations are removed; if any operation fails the work is retried with
+ * exponential backoff.
+ */
+public class OutboxWorker extends Worker {
+
+  private static final String TAG = "OutboxWorker";
+  private static final String UNIQUE_WORK_NAME = "outbox";
+  private static final int BATCH_SIZE = 50;
+
+  // Operations that keep failing, e.g. because they are rejected, are dropped eventually
+  private static final int MAX_ATTEMPTS = 10;
+
+  // Time to wait for a single write before the attempt counts as failed
+  private static final long WRITE_TIMEOUT_SECONDS = 30;
+  private static final long BACKOFF_SECONDS = 15;
+
+  /**
+   * Constructor for OutboxWorker.
+   *
+   * @param context The application context
+   * @param params  Parameters of the work
+   */
+  public OutboxWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+    super(context, params);
+  }
+
+  /**
+   * Schedules a flush of the outbox once the device is online. A flush requested while another is
+   * scheduled or running is appended after it, so an operation journaled after the running flush
+   * read the outbox for the last time is still sent. An appended flush that finds the outbox empty
+   * finishes right away.
+   *
+   * @param context Context used to reach the work manager
+   */
+  public static void schedule(Context context) {
+    OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(OutboxWorker.class)
+        .setConstraints(new Constraints.Builder()
+            .setRequiredNetworkType(NetworkType.CONNECTED)
+            .build())
+        .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+        .build();
+    WorkManager.getInstance(context)
+        .enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+  }
+
+  @NonNull
+  @Override
+  public Result doWork() {
+    Outbox outbox = Outbox.getInstance(getApplicationContext());
+    DatabaseReference rootRef = FirebaseDatabase.getInstance().getReference();
+    boolean failed = false;
+
+    // Failed operations stay in the outbox and are skipped for the rest of this run
+    List<Long> skipped = new ArrayList<>();
+    while (true) {
+      List<Outbox.Operation> batch = new ArrayList<>();
+      for (Outbox.Operation operation : outbox.pending(BATCH_SIZE + skipped.size())) {
+        if (!skipped.contains(operation.id)) {
+          batch.add(operation);
+        }
+      }
+      if (batch.isEmpty()) {
+        break;
+      }
+
+      List<Outbox.Operation> bookmarks = new ArrayList<>();
+      Map<String, Object> bookmarkUpdates = new HashMap<>();
+      for (Outbox.Operation operation : batch) {
+        boolean sent;
+        try {
+          switch (operation.type) {
+            case BOOKMARK:
+              addBookmarkUpdate(operation, bookmarkUpdates);
+              bookmarks.add(operation);
+              continue;
+            case DISCOVERY:
+              sent = sendDiscovery(operation.payload);
+              break;
+            default:
+              sent = sendTreasure(operation.payload);
+              break;
+          }
+        } catch (JSONException e) {
+          // The payload is corrupt and can never be sent
+          dropOperation(outbox, operation);
+          continue;
+        }
+        if (sent) {
+          outbox.remove(operation.id);
+        } else {
+          failed = true;
+          skipped.add(operation.id);
+          recordFailure(outbox, operation);
+        }
+      }
+
+      if (!bookmarks.isEmpty()) {
+        Task<Void> batchWrite = rootRef.updateChildren(bookmarkUpdates);
+        boolean batchSent = await(batchWrite);
+
+        // A completed but failed write was rejected, e.g. by a rule on one of its paths
+        boolean rejected = !batchSent && batchWrite.isComplete() && bookmarks.size() > 1;
+        for (Outbox.Operation operation : bookmarks) {
+          boolean sent = batchSent;
+          if (rejected) {
+            try {
+              Map<String, Object> update = new HashMap<>();
+              addBookmarkUpdate(operation, update);
+              sent = await(rootRef.updateChildren(update));
+            } catch (JSONException e) {
+              // Cannot happen, the payload was read for the batch already
+              sent = false;
+            }
+          }
+          if (sent) {
+            outbox.remove(operation.id);
+          } else {
+            failed = true;
+            skipped.add(operation.id);
+            recordFailure(outbox, operation);
+          }
+        }
+      }
+    }
+    return failed ? Result.retry() : Result.success();
+  }
+
+  /**
+   * Adds the write for a bookmark change to the batched update.
+   *
+   * @param operation The bookmark operation
+   * @param updates   The batched update
+   */
+  private static void addBookmarkUpdate(Outbox.Operation operation, Map<String, Object> updates)
+      throws JSONException {
+    JSONObject payload = operation.payload;
+    String path = "savedTreasures/" + payload.getString("userId") + "/"
+        + payload.getString("treasureId");
+    if (payload.getBoolean("bookmarked")) {
+      Map<String, Object> bookmark = new HashMap<>();
+      bookmark.put("savedAt", operation.createdAt);
+      updates.put(path, bookmark);
+    } else {
+      updates.put(path, null);
+    }
+  }
+
+  /**
+   * Commits a discovery and waits for the result.
+   *
+   * @param payload The discovery operation data
+   * @return true if the discovery was committed
+   */
+  private static boolean sendDiscovery(JSONObject payload) throws JSONException {
+    DiscoveryCommitter committer = new DiscoveryCommitter(payload.getString("userId"));
+    CountDownLatch done = new CountDownLatch(1);
+    boolean[] committed = {false};
+    boolean started = committer.commit(payload.getString("treasureId"),
+        payload.getString("discoveryId"), payload.getLong("discoveryTime"),
+        new DiscoveryCommitter.Callback() {
+          @Override
+          public void onCommitted(int pointsEarned, long discoveryTime) {
+            committed[0] = true;
+            done.countDown();
+          }
+
+          @Override
+          public void onFailed(String message) {
+            Log.w(TAG, "Discovery not committed: " + message);
+            done.countDown();
+          }
+        });
+    if (!started) {
+      return false;
+    }
+    try {
+      return done.await(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS) && committed[0];
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Uploads the image variants of a new treasure, if any, and writes the treasure together with
+   * the creator's treasure counter.
+   *
+   * @param payload The treasure operation data
+   * @return true if the treasure was written
+   */
+  private static boolean sendTreasure(JSONObject payload) throws JSONException {
+    String treasureId = payload.getString("treasureId");
+    Map<String, Object> fields = Outbox.toMap(payload.getJSONObject("fields"));
+
+    // Every size is stored next to the full image, entries journaled earlier only have the latter
+    List<File> images = new ArrayList<>();
+    for (ImageVariants.Size size : ImageVariants.Size.values()) {
+      String pathField = Outbox.IMAGE_PATH + size.fieldSuffix;
+      File image = payload.has(pathField) ? new File(payload.getString(pathField)) : null;
+      if (image == null || !image.exists()) {
+        continue;
+      }
+
+      // The file name is derived from the key, so a retried upload replaces the earlier one
+      StorageReference imageRef = FirebaseStorage.getInstance().getReference()
+          .child("treasure_images/" + treasureId + size.fileSuffix + ".jpg");
+      if (!await(imageRef.putFile(Uri.fromFile(image)))) {
+        return false;
+      }
+      Uri downloadUrl = awaitResult(imageRef.getDownloadUrl());
+      if (downloadUrl == null) {
+        return false;
+      }
+      fields.put("imageUrl" + size.fieldSuffix, downloadUrl.toString());
+      images.add(image);
+    }
+
+    // A retry may follow a write whose result was lost, so the creator is only counted once
+    DatabaseReference rootRef = FirebaseDatabase.getInstance().getReference();
+    DataSnapshot existing = awaitResult(rootRef.child("treasures").child(treasureId).get());
+    if (existing == null) {
+      return false;
+    }
+    // The creator is counted now or was by the earlier write, either way the flag is kept
+    Map<String, Object> updates = new HashMap<>();
+    Object creatorId = fields.get("createdByUserId");
+    if (creatorId instanceof String) {
+      UserStatsCounters.markCounted(fields);
+      if (!existing.exists()) {
+        UserStatsCounters.addTreasureCreatedUpdates(updates, (String) creatorId);
+      }
+    }
+    updates.put("treasures/" + treasureId, fields);
+    if (!await(rootRef.updateChildren(updates))) {
+      return false;
+    }
+    for (File image : images) {
+      if (!image.delete()) {
+        Log.w(TAG, "Could not delete uploaded image " + image);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Counts a failed attempt and drops the operation once it failed too often.
+   *
+   * @param outbox    The outbox
+   * @param operation The operation that failed
+   */
+  private static void recordFailure(Outbox outbox, Outbox.Operation operation) {
+    if (operation.attempts + 1 >= MAX_ATTEMPTS) {
+      Log.w(TAG, "Dropping " + operation.type + " after " + MAX_ATTEMPTS + " attempts");
+      dropOperation(outbox, operation);
+    } else {
+      outbox.markFailed(operation.id);
+    }
+  }
+
+  /**
+   * Removes an operation that will never be sent, together with the image files of a new
+   * treasure, which nothing else would delete.
+   *
+   * @param outbox    The outbox
+   * @param operation The operation to drop
+   */
+  private static void dropOperation(Outbox outbox, Outbox.Operation operation) {
+    outbox.remove(operation.id);
+    if (operation.type != Outbox.Type.TREASURE) {
+      return;
+    }
+    for (ImageVariants.Size size : ImageVariants.Size.values()) {
+      String path = operation.payload.optString(Outbox.IMAGE_PATH + size.fieldSuffix, null);
+      File image = path != null ? new File(path) : null;
+      if (image != null && image.exists() && !image.delete()) {
+        Log.w(TAG, "Could not delete image of dropped treasure " + image);
+      }
+    }
+  }
+
+  /**
+   * Waits for a task to complete.
+   *
+   * @param task The task
+   * @return true if the task succeeded in time
+   */
+  private static boolean await(Task<?> task) {
+    try {
+      Tasks.await(task, WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      return true;
+    } catch (Exception e) {
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      Log.w(TAG, "Write failed", e);
+      return false;
+    }
+  }
+
+  /**
+   * Waits for a task to complete and returns its result.
+   *
+   * @param task The task
+   * @param <T>  The type of the result
+   * @return The result, or null if the task failed or timed out
+   */
+  @Nullable
+  private static <T> T awaitResult(Task<T> task) {
+    return await(task) ? task.getResult() : null;
+  }
+}
@@ -0,0 +1,104 @@
+package edu.northeastern.numad25su_group6.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ExpiringLruCache is a bounded map whose entries expire a fixed time after they were stored.
+ * When the cache is full, the least recently used entry is evicted. Callers pass the current time,
+ * so the cache has no clock of its own and is not thread-safe.
+ *
+ * @param <K> The type of the keys
+ * @param <V> The type of the values
+ */
+public class ExpiringLruCache<K, V> {
+
+  /**
+   * A cached value and the time it expires.
+   */
+  private static final class Entry<V> {
+
+    final V value;
+    final long expiresAt;
+
+    /**
+     * Constructor for Entry.
+     *
+     * @param value     The cached value
+     * @param expiresAt The time the value expires in milliseconds
+     */
+    Entry(V value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final long ttlMillis;
+
+  // Access order, so the eldest entry is the least recently used one
+  private final LinkedHashMap<K, Entry<V>> entries;
+
+  /**
+   * Constructor for ExpiringLruCache.
+   *
+   * @param maxSize   The maximum number of entries
+   * @param ttlMillis The time an entry stays valid after it was stored, in milliseconds
+   */
+  public ExpiringLruCache(int maxSize, long ttlMillis) {
+    this.ttlMillis = ttlMillis;
+    this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Returns the value stored for a key and marks it as recently used. Expired values are removed.
+   *
+   * @param key The key
+   * @param now The current time in milliseconds
+   * @return The value, or null if there is none or it expired
+   */
+  public V get(K key, long now) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (now >= entry.expiresAt) {
+      entries.remove(key);
+      return null;
+    }
+    return entry.value;
+  }
+
+  /**
+   * Stores a value, evicting the least recently used entry if the cache is full.
+   *
+   * @param key   The key
+   * @param value The value
+   * @param now   The current time in milliseconds
+   */
+  public void put(K key, V value, long now) {
+    entries.put(key, new Entry<>(value, now + ttlMillis));
+  }
+
+  /**
+   * Removes the value stored for a key.
+   *
+   * @param key The key
+   */
+  public void remove(K key) {
+    entries.remove(key);
+  }
+
+  /**
+   * Returns the number of stored entries, including expired ones not removed yet.
+   *
+   * @return The number of entries
+   */
+  public int size() {
+    return entries.size();
+  }
+}
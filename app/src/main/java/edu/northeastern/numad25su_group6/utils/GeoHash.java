@@ -0,0 +1,192 @@
+package edu.northeastern.numad25su_group6.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * GeoHash encodes latitude/longitude pairs into base32 geohash strings and computes the set of
+ * geohash cells that cover a bounding box. Treasures store their geohash so that the map can query
+ * only the cells that are visible instead of the whole treasures node.
+ */
+public final class GeoHash {
+
+  // Base32 alphabet used by geohash (no a, i, l, o)
+  private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+  // Precision stored on every treasure, roughly 1.2m x 0.6m cells
+  public static final int STORED_PRECISION = 10;
+
+  // Bounds for the precision used when covering a viewport
+  private static final int MIN_QUERY_PRECISION = 1;
+  private static final int MAX_QUERY_PRECISION = 9;
+
+  // Upper limit of cells (and therefore database queries) for one viewport
+  public static final int MAX_QUERY_CELLS = 16;
+
+  private GeoHash() {
+  }
+
+  /**
+   * Encodes the given coordinates into a geohash string.
+   *
+   * @param latitude  Latitude in degrees
+   * @param longitude Longitude in degrees
+   * @param precision Number of characters in the resulting geohash
+   * @return Geohash string of the given precision
+   */
+  public static String encode(double latitude, double longitude, int precision) {
+    double minLat = -90, maxLat = 90;
+    double minLng = -180, maxLng = 180;
+    StringBuilder hash = new StringBuilder(precision);
+    boolean evenBit = true;
+    int bit = 0;
+    int ch = 0;
+
+    while (hash.length() < precision) {
+      if (evenBit) {
+        double mid = (minLng + maxLng) / 2;
+        if (longitude >= mid) {
+          ch = (ch << 1) | 1;
+          minLng = mid;
+        } else {
+          ch = ch << 1;
+          maxLng = mid;
+        }
+      } else {
+        double mid = (minLat + maxLat) / 2;
+        if (latitude >= mid) {
+          ch = (ch << 1) | 1;
+          minLat = mid;
+        } else {
+          ch = ch << 1;
+          maxLat = mid;
+        }
+      }
+      evenBit = !evenBit;
+
+      if (++bit == 5) {
+        hash.append(BASE32.charAt(ch));
+        bit = 0;
+        ch = 0;
+      }
+    }
+    return hash.toString();
+  }
+
+  /**
+   * Encodes the given coordinates at the precision stored on treasures.
+   *
+   * @param latitude  Latitude in degrees
+   * @param longitude Longitude in degrees
+   * @return Geohash string
+   */
+  public static String encode(double latitude, double longitude) {
+    return encode(latitude, longitude, STORED_PRECISION);
+  }
+
+  /**
+   * Height in degrees of a geohash cell with the given precision.
+   *
+   * @param precision Geohash precision
+   * @return Cell height in degrees of latitude
+   */
+  static double cellHeight(int precision) {
+    int latBits = (5 * precision) / 2;
+    return 180.0 / (1L << latBits);
+  }
+
+  /**
+   * Width in degrees of a geohash cell with the given precision.
+   *
+   * @param precision Geohash precision
+   * @return Cell width in degrees of longitude
+   */
+  static double cellWidth(int precision) {
+    int lngBits = (5 * precision + 1) / 2;
+    return 360.0 / (1L << lngBits);
+  }
+
+  /**
+   * Computes the geohash cells that cover the given bounding box. The precision is chosen so the
+   * box is covered by at most {@link #MAX_QUERY_CELLS} cells, which keeps the number of database
+   * queries per viewport small. A box crossing the antimeridian (west greater than east) is split
+   * into two boxes.
+   *
+   * @param south Southern latitude of the box
+   * @param west  Western longitude of the box
+   * @param north Northern latitude of the box
+   * @param east  Eastern longitude of the box
+   * @return Geohash prefixes covering the box
+   */
+  public static List<String> coveringCells(double south, double west, double north, double east) {
+    south = clampLatitude(south);
+    north = clampLatitude(north);
+    if (west > east) {
+      Set<String> cells = new LinkedHashSet<>();
+      cells.addAll(coveringCells(south, west, north, 180));
+      cells.addAll(coveringCells(south, -180, north, east));
+      return new ArrayList<>(cells);
+    }
+
+    for (int precision = MAX_QUERY_PRECISION; precision >= MIN_QUERY_PRECISION; precision--) {
+      if (countCells(south, west, north, east, precision) <= MAX_QUERY_CELLS) {
+        return cellsAtPrecision(south, west, north, east, precision);
+      }
+    }
+    return cellsAtPrecision(south, west, north, east, MIN_QUERY_PRECISION);
+  }
+
+  /**
+   * Counts the cells of the given precision that intersect the box.
+   */
+  private static long countCells(double south, double west, double north, double east,
+      int precision) {
+    double h = cellHeight(precision);
+    double w = cellWidth(precision);
+    long rows = (long) Math.floor((north + 90) / h) - (long) Math.floor((south + 90) / h) + 1;
+    long cols = (long) Math.floor((east + 180) / w) - (long) Math.floor((west + 180) / w) + 1;
+    return rows * cols;
+  }
+
+  /**
+   * Lists the cells of the given precision that intersect the box.
+   */
+  private static List<String> cellsAtPrecision(double south, double west, double north,
+      double east, int precision) {
+    double h = cellHeight(precision);
+    double w = cellWidth(precision);
+    long rowStart = (long) Math.floor((south + 90) / h);
+    long rowEnd = (long) Math.floor((north + 90) / h);
+    long colStart = (long) Math.floor((west + 180) / w);
+    long colEnd = (long) Math.floor((east + 180) / w);
+
+    Set<String> cells = new LinkedHashSet<>();
+    for (long row = rowStart; row <= rowEnd; row++) {
+      double lat = clampLatitude(-90 + (row + 0.5) * h);
+      for (long col = colStart; col <= colEnd; col++) {
+        double lng = Math.min(180 - w / 2, -180 + (col + 0.5) * w);
+        cells.add(encode(lat, lng, precision));
+      }
+    }
+    return new ArrayList<>(cells);
+  }
+
+  /**
+   * Returns the last key matching the given geohash prefix, for use with endAt() in range queries.
+   *
+   * @param prefix Geohash prefix
+   * @return Upper bound for a prefix range query
+   */
+  public static String rangeEnd(String prefix) {
+    return prefix + "~";
+  }
+
+  /**
+   * Clamps a latitude into the valid range.
+   */
+  private static double clampLatitude(double latitude) {
+    return Math.max(-90, Math.min(90 - 1e-9, latitude));
+  }
+}
@@ -0,0 +1,257 @@
+package edu.northeastern.numad25su_group6.utils;
+
+import edu.northeastern.numad25su_group6.pojo.LeaderboardItem;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LeaderboardRanking keeps a list of leaderboard items sorted by points, highest first, and ranked
+ * with shared ranks for equal points. A changed score is moved by binary-search reinsertion, and
+ * only the ranks between its old and new position, plus any ties after it, are recomputed; only
+ * inserting or removing a user shifts the ranks of everyone below. Every change is reported to a
+ * listener as a precise insert, remove, move or change, so a RecyclerView adapter never has to
+ * rebind the whole list. Items with equal points are ordered by descending user ID, the reverse of
+ * the database order, so pages read from the database append in place.
+ */
+public class LeaderboardRanking {
+
+  /**
+   * Receives the changes made to the list.
+   */
+  public interface Listener {
+
+    /**
+     * Called after items were inserted.
+     *
+     * @param start The position of the first inserted item
+     * @param count The number of inserted items
+     */
+    void onItemRangeInserted(int start, int count);
+
+    /**
+     * Called after an item was removed.
+     *
+     * @param position The position the item was removed from
+     */
+    void onItemRemoved(int position);
+
+    /**
+     * Called after an item was moved.
+     *
+     * @param from The previous position of the item
+     * @param to   The new position of the item
+     */
+    void onItemMoved(int from, int to);
+
+    /**
+     * Called after the points or rank of an item changed.
+     *
+     * @param position The position of the item
+     */
+    void onItemChanged(int position);
+  }
+
+  private final List<LeaderboardItem> items;
+  private final Listener listener;
+  private final Map<String, LeaderboardItem> itemsByUser = new HashMap<>();
+
+  /**
+   * Constructor for LeaderboardRanking.
+   *
+   * @param items    The list to keep sorted, shared with the adapter and initially empty
+   * @param listener Listener receiving the changes
+   */
+  public LeaderboardRanking(List<LeaderboardItem> items, Listener listener) {
+    this.items = items;
+    this.listener = listener;
+  }
+
+  /**
+   * Returns the listed item of a user.
+   *
+   * @param userId The ID of the user
+   * @return The item, or null if the user is not listed
+   */
+  public LeaderboardItem get(String userId) {
+    return itemsByUser.get(userId);
+  }
+
+  /**
+   * Appends a page of items that rank below every listed item and ranks them. Users that are
+   * already listed are skipped.
+   *
+   * @param page The items, highest points first
+   */
+  public void append(List<LeaderboardItem> page) {
+    int start = items.size();
+    for (LeaderboardItem item : page) {
+      if (itemsByUser.containsKey(item.userId)) {
+        continue;
+      }
+      itemsByUser.put(item.userId, item);
+      items.add(item);
+      item.rank = rankAt(items.size() - 1);
+    }
+    if (items.size() > start) {
+      listener.onItemRangeInserted(start, items.size() - start);
+    }
+  }
+
+  /**
+   * Sets the points of a user, inserting the user if they are not listed yet.
+   *
+   * @param userId The ID of the user
+   * @param points The points of the user
+   */
+  public void update(String userId, int points) {
+    LeaderboardItem item = itemsByUser.get(userId);
+    if (item == null) {
+      item = new LeaderboardItem(userId, "", points, 0, null);
+      int position = insertionPoint(points, userId);
+      itemsByUser.put(userId, item);
+      items.add(position, item);
+      item.rank = rankAt(position);
+      listener.onItemRangeInserted(position, 1);
+
+      // Every item below moved down one place
+      rerank(position + 1, items.size() - 1, -1);
+      return;
+    }
+    if (item.points == points) {
+      return;
+    }
+
+    int from = positionOf(item);
+    items.remove(from);
+    item.points = points;
+    int to = insertionPoint(points, userId);
+    items.add(to, item);
+    if (from != to) {
+      listener.onItemMoved(from, to);
+    }
+    listener.onItemChanged(to);
+    rerank(Math.min(from, to), Math.max(from, to), to);
+  }
+
+  /**
+   * Removes a user from the list.
+   *
+   * @param userId The ID of the user
+   */
+  public void remove(String userId) {
+    LeaderboardItem item = itemsByUser.remove(userId);
+    if (item == null) {
+      return;
+    }
+    int position = positionOf(item);
+    items.remove(position);
+    listener.onItemRemoved(position);
+
+    // Every item below moved up one place
+    rerank(position, items.size() - 1, -1);
+  }
+
+  /**
+   * Returns the number of listed items.
+   *
+   * @return The number of items
+   */
+  public int size() {
+    return items.size();
+  }
+
+  /**
+   * Recomputes ranks from a position on. Every position up to the end of the affected range is
+   * checked; after it the walk stops at the first rank that did not change.
+   *
+   * @param from The first position to check
+   * @param to   The last position that must be checked
+   * @param skip A position already reported as changed, or -1
+   */
+  private void rerank(int from, int to, int skip) {
+    for (int i = from; i < items.size(); i++) {
+      LeaderboardItem item = items.get(i);
+      int rank = rankAt(i);
+      if (rank == item.rank) {
+        if (i > to) {
+          return;
+        }
+        continue;
+      }
+      item.rank = rank;
+      if (i != skip) {
+        listener.onItemChanged(i);
+      }
+    }
+  }
+
+  /**
+   * Returns the rank at a position: the rank of the item above if both have equal points,
+   * otherwise the position plus one.
+   *
+   * @param position The position
+   * @return The rank
+   */
+  private int rankAt(int position) {
+    if (position > 0) {
+      LeaderboardItem previous = items.get(position - 1);
+      if (previous.points == items.get(position).points) {
+        return previous.rank;
+      }
+    }
+    return position + 1;
+  }
+
+  /**
+   * Finds the position of a listed item by binary search.
+   *
+   * @param item The item
+   * @return The position of the item
+   */
+  private int positionOf(LeaderboardItem item) {
+    int position = insertionPoint(item.points, item.userId);
+    if (position < items.size() && items.get(position) == item) {
+      return position;
+    }
+
+    // Only reached if the list was not sorted, e.g. by a page read while points changed
+    return items.indexOf(item);
+  }
+
+  /**
+   * Finds the position where an entry belongs by binary search.
+   *
+   * @param points The points of the entry
+   * @param userId The user ID of the entry
+   * @return The position of the first item that does not rank above the entry
+   */
+  private int insertionPoint(int points, String userId) {
+    int low = 0;
+    int high = items.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (ranksAbove(items.get(mid), points, userId)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Checks whether an item ranks above an entry.
+   *
+   * @param item   The item
+   * @param points The points of the entry
+   * @param userId The user ID of the entry
+   * @return true if the item comes first
+   */
+  private static boolean ranksAbove(LeaderboardItem item, int points, String userId) {
+    if (item.points != points) {
+      return item.points > points;
+    }
+    return item.userId.compareTo(userId) > 0;
+  }
+}
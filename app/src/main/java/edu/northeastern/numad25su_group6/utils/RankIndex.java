@@ -0,0 +1,154 @@
+package edu.northeastern.numad25su_group6.utils;
+
+/**
+ * RankIndex counts scores in a Fenwick tree over the histogram of points, so adding, removing or
+ * changing a score and looking up the rank of a score all take O(log P), where P is the highest
+ * score seen. Scores below 0 are counted as 0. The tree doubles in size when a higher score is
+ * added.
+ */
+public class RankIndex {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  // Number of scores per value, and the Fenwick tree over it (1-based)
+  private int[] counts = new int[INITIAL_CAPACITY];
+  private int[] tree = new int[INITIAL_CAPACITY + 1];
+  private int size = 0;
+
+  /**
+   * Adds a score.
+   *
+   * @param points The score
+   */
+  public void add(int points) {
+    add(points, 1);
+  }
+
+  /**
+   * Adds a number of equal scores, or removes them if the number is negative. A score is never
+   * removed more often than it was added.
+   *
+   * @param points The score
+   * @param count  The number of scores to add
+   */
+  public void add(int points, int count) {
+    points = Math.max(0, points);
+    if (count < 0 && points >= counts.length) {
+      return;
+    }
+    ensureCapacity(points);
+    int delta = Math.max(count, -counts[points]);
+    if (delta == 0) {
+      return;
+    }
+    counts[points] += delta;
+    update(points, delta);
+    size += delta;
+  }
+
+  /**
+   * Removes a score that was added before.
+   *
+   * @param points The score
+   */
+  public void remove(int points) {
+    add(points, -1);
+  }
+
+  /**
+   * Replaces a score that was added before.
+   *
+   * @param oldPoints The previous score
+   * @param newPoints The new score
+   */
+  public void change(int oldPoints, int newPoints) {
+    remove(oldPoints);
+    add(newPoints);
+  }
+
+  /**
+   * Counts the scores that are higher than the given one.
+   *
+   * @param points The score
+   * @return The number of higher scores
+   */
+  public int countAbove(int points) {
+    points = Math.max(0, points);
+    if (points >= counts.length) {
+      return 0;
+    }
+    return size - prefix(points);
+  }
+
+  /**
+   * Returns the rank of a score: one plus the number of higher scores, so equal scores share a
+   * rank.
+   *
+   * @param points The score
+   * @return The rank, starting at 1
+   */
+  public int rank(int points) {
+    return countAbove(points) + 1;
+  }
+
+  /**
+   * Returns the number of scores.
+   *
+   * @return The number of scores
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Counts the scores that are at most the given one.
+   *
+   * @param points The score, below the capacity
+   * @return The number of scores up to and including it
+   */
+  private int prefix(int points) {
+    int sum = 0;
+    for (int i = points + 1; i > 0; i -= i & -i) {
+      sum += tree[i];
+    }
+    return sum;
+  }
+
+  /**
+   * Adds a delta to the count of a score in the tree.
+   *
+   * @param points The score
+   * @param delta  The change of its count
+   */
+  private void update(int points, int delta) {
+    for (int i = points + 1; i < tree.length; i += i & -i) {
+      tree[i] += delta;
+    }
+  }
+
+  /**
+   * Grows the histogram until it covers the given score, rebuilding the tree in linear time.
+   *
+   * @param points The score to cover
+   */
+  private void ensureCapacity(int points) {
+    if (points < counts.length) {
+      return;
+    }
+    int capacity = counts.length;
+    while (capacity <= points) {
+      capacity *= 2;
+    }
+    int[] grown = new int[capacity];
+    System.arraycopy(counts, 0, grown, 0, counts.length);
+    counts = grown;
+    tree = new int[capacity + 1];
+    for (int i = 1; i <= capacity; i++) {
+      tree[i] += counts[i - 1];
+      int parent = i + (i & -i);
+      if (parent <= capacity) {
+        tree[parent] += tree[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package edu.northeastern.numad25su_group6.images;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ImageSizing}.
+ */
+public class ImageSizingTest {
+
+  @Test
+  public void sampleSize_keepsLongEdgeAboveTarget() {
+    // A 12 MP photo is decoded at a quarter of its size, a 4 MP photo at half
+    assertEquals(2, ImageSizing.sampleSize(4000, 3000, 1600));
+    assertEquals(1, ImageSizing.sampleSize(2304, 1728, 1600));
+    assertEquals(4, ImageSizing.sampleSize(3000, 6400, 1600));
+    assertEquals(1, ImageSizing.sampleSize(800, 600, 1600));
+  }
+
+  @Test
+  public void scale_fitsLongEdge() {
+    assertEquals(1600f / 2000, ImageSizing.scale(2000, 1500, 1600), 1e-6);
+    assertEquals(1600f / 3200, ImageSizing.scale(1500, 3200, 1600), 1e-6);
+  }
+
+  @Test
+  public void scale_neverEnlarges() {
+    assertEquals(1f, ImageSizing.scale(800, 600, 1600), 0);
+    assertEquals(1f, ImageSizing.scale(1600, 1200, 1600), 0);
+  }
+}
@@ -0,0 +1,42 @@
+package edu.northeastern.numad25su_group6.images;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ImageVariants}.
+ */
+public class ImageVariantsTest {
+
+  @Test
+  public void urlFor_picksSmallestCoveringSize() {
+    ImageVariants variants = new ImageVariants("s", "m", "f");
+    assertEquals("s", variants.urlFor(144));
+    assertEquals("s", variants.urlFor(256));
+    assertEquals("m", variants.urlFor(300));
+    assertEquals("f", variants.urlFor(1080));
+    assertEquals("f", variants.urlFor(2400));
+  }
+
+  @Test
+  public void urlFor_fallsBackForMissingSizes() {
+    // Images uploaded before variants existed only have the full size
+    assertEquals("f", new ImageVariants(null, null, "f").urlFor(144));
+    assertEquals("m", new ImageVariants(null, "m", null).urlFor(1080));
+    assertEquals("f", new ImageVariants(null, "", "f").urlFor(300));
+    assertNull(ImageVariants.NONE.urlFor(144));
+    assertTrue(ImageVariants.NONE.isEmpty());
+  }
+
+  @Test
+  public void toFields_appendsSizeToFieldName() {
+    Map<String, Object> fields = new ImageVariants("s", null, "f").toFields("imageUrl");
+    assertEquals(2, fields.size());
+    assertEquals("s", fields.get("imageUrlSmall"));
+    assertEquals("f", fields.get("imageUrl"));
+  }
+}
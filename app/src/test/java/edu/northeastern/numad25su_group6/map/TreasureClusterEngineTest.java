@@ -0,0 +1,66 @@
+package edu.northeastern.numad25su_group6.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TreasureClusterEngine}.
+ */
+public class TreasureClusterEngineTest {
+
+  @Test
+  public void clustersCoverEveryPointInView() {
+    TreasureClusterEngine engine = new TreasureClusterEngine();
+    Random random = new Random(42);
+    for (int i = 0; i < 50_000; i++) {
+      engine.put("t" + i, 42.30 + random.nextDouble() * 0.1, -71.10 + random.nextDouble() * 0.1);
+    }
+
+    for (int zoom = 0; zoom <= 12; zoom++) {
+      List<TreasureClusterEngine.Cluster> clusters =
+          engine.getClusters(42.25, -71.15, 42.45, -70.95, zoom);
+      int total = 0;
+      for (TreasureClusterEngine.Cluster cluster : clusters) {
+        total += cluster.count;
+      }
+      assertEquals("zoom " + zoom, 50_000, total);
+    }
+  }
+
+  @Test
+  public void nearbyPointsSplitAtExpansionZoom() {
+    TreasureClusterEngine engine = new TreasureClusterEngine();
+    engine.put("a", 42.3500, -71.0500);
+    engine.put("b", 42.3510, -71.0490);
+    engine.put("c", 40.7128, -74.0060);
+
+    List<TreasureClusterEngine.Cluster> clusters = engine.getClusters(42, -72, 43, -71, 10);
+    assertEquals(1, clusters.size());
+    TreasureClusterEngine.Cluster cluster = clusters.get(0);
+    assertEquals(2, cluster.count);
+    assertTrue(cluster.expansionZoom > 10);
+
+    List<TreasureClusterEngine.Cluster> expanded =
+        engine.getClusters(42.34, -71.06, 42.36, -71.04, cluster.expansionZoom);
+    assertEquals(2, expanded.size());
+    assertTrue(expanded.get(0).isSingle());
+  }
+
+  @Test
+  public void removeAndMoveUpdateClusters() {
+    TreasureClusterEngine engine = new TreasureClusterEngine();
+    engine.put("a", 10, 10);
+    engine.put("b", 10, 10);
+    engine.remove("a");
+    engine.put("b", -10, -10);
+
+    List<TreasureClusterEngine.Cluster> clusters = engine.getClusters(-20, -20, 20, 20, 5);
+    assertEquals(1, clusters.size());
+    assertEquals("b", clusters.get(0).itemId);
+    assertEquals(-10, clusters.get(0).latitude, 1e-9);
+  }
+}
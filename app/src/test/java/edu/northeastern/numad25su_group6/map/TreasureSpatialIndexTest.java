@@ -0,0 +1,109 @@
+package edu.northeastern.numad25su_group6.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TreasureSpatialIndex}.
+ */
+public class TreasureSpatialIndexTest {
+
+  private static final int POINTS = 20_000;
+
+  /**
+   * Fills an index and a parallel coordinate array with random points around Boston.
+   */
+  private static double[][] fill(TreasureSpatialIndex index) {
+    Random random = new Random(7);
+    double[][] coords = new double[POINTS][];
+    for (int i = 0; i < POINTS; i++) {
+      coords[i] = new double[]{42.30 + random.nextDouble() * 0.1,
+          -71.10 + random.nextDouble() * 0.1};
+      index.put("t" + i, coords[i][0], coords[i][1]);
+    }
+    return coords;
+  }
+
+  @Test
+  public void withinRadiusMatchesLinearScan() {
+    TreasureSpatialIndex index = new TreasureSpatialIndex();
+    double[][] coords = fill(index);
+
+    Set<String> expected = new HashSet<>();
+    for (int i = 0; i < POINTS; i++) {
+      if (TreasureSpatialIndex.distanceMeters(42.35, -71.05, coords[i][0], coords[i][1]) <= 250) {
+        expected.add("t" + i);
+      }
+    }
+    assertEquals(expected, new HashSet<>(index.withinRadius(42.35, -71.05, 250)));
+  }
+
+  @Test
+  public void inBoundsMatchesLinearScan() {
+    TreasureSpatialIndex index = new TreasureSpatialIndex();
+    double[][] coords = fill(index);
+
+    Set<String> expected = new HashSet<>();
+    for (int i = 0; i < POINTS; i++) {
+      if (coords[i][0] >= 42.33 && coords[i][0] <= 42.34
+          && coords[i][1] >= -71.08 && coords[i][1] <= -71.06) {
+        expected.add("t" + i);
+      }
+    }
+    assertEquals(expected, new HashSet<>(index.inBounds(42.33, -71.08, 42.34, -71.06)));
+  }
+
+  @Test
+  public void nearestSkipsFilteredAndIsSorted() {
+    TreasureSpatialIndex index = new TreasureSpatialIndex();
+    double[][] coords = fill(index);
+
+    // Only even IDs count as undiscovered
+    List<String> nearest = index.nearest(42.35, -71.05, 5,
+        id -> Integer.parseInt(id.substring(1)) % 2 == 0);
+
+    List<Double> distances = new ArrayList<>();
+    for (int i = 0; i < POINTS; i += 2) {
+      distances.add(TreasureSpatialIndex.distanceMeters(42.35, -71.05, coords[i][0], coords[i][1]));
+    }
+    distances.sort(null);
+
+    assertEquals(5, nearest.size());
+    for (int i = 0; i < nearest.size(); i++) {
+      int n = Integer.parseInt(nearest.get(i).substring(1));
+      assertEquals(0, n % 2);
+      assertEquals(distances.get(i),
+          TreasureSpatialIndex.distanceMeters(42.35, -71.05, coords[n][0], coords[n][1]), 1e-9);
+    }
+  }
+
+  @Test
+  public void removeAndMoveAreReflected() {
+    TreasureSpatialIndex index = new TreasureSpatialIndex();
+    index.put("a", 42.3500, -71.0500);
+    index.put("b", 42.3501, -71.0501);
+    assertEquals(2, index.withinRadius(42.35, -71.05, 50).size());
+
+    index.remove("a");
+    index.put("b", 40.7128, -74.0060);
+    assertTrue(index.withinRadius(42.35, -71.05, 50).isEmpty());
+    assertEquals(List.of("b"), index.nearest(42.35, -71.05, 3, null));
+  }
+
+  @Test
+  public void boundsAcrossAntimeridian() {
+    TreasureSpatialIndex index = new TreasureSpatialIndex();
+    index.put("east", -17.0, 179.5);
+    index.put("west", -17.0, -179.5);
+    index.put("far", -17.0, 0);
+    assertEquals(new HashSet<>(List.of("east", "west")),
+        new HashSet<>(index.inBounds(-18, 179, -16, -179)));
+  }
+}
@@ -0,0 +1,126 @@
+package edu.northeastern.numad25su_group6.scoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ScoringEngine} and the scoring policies.
+ */
+public class ScoringEngineTest {
+
+  private static final long HOUR = 60L * 60 * 1000;
+
+  // Size of the replayed log in the benchmark
+  private static final int REPLAY_EVENTS = 2_000_000;
+  private static final int REPLAY_USERS = 50_000;
+  private static final int REPLAY_TREASURES = 20_000;
+
+  /**
+   * Creates an event at the given place with no creation time or distance.
+   */
+  private static DiscoveryEvent event(String userId, String treasureId, int place) {
+    return new DiscoveryEvent(userId, treasureId, place, 0, 0, 0);
+  }
+
+  @Test
+  public void defaultRulesRewardFirstThreeFinders() {
+    ScoringEngine engine = ScoringEngine.defaultRules();
+    assertEquals(10, engine.score(event("u", "t", 1)));
+    assertEquals(10, engine.score(event("u", "t", 3)));
+    assertEquals(0, engine.score(event("u", "t", 4)));
+  }
+
+  @Test
+  public void rarityDividesPointsByPlace() {
+    RarityPolicy policy = new RarityPolicy(12);
+    assertEquals(12, policy.points(event("u", "t", 1)));
+    assertEquals(4, policy.points(event("u", "t", 3)));
+    assertEquals(0, policy.points(event("u", "t", 13)));
+  }
+
+  @Test
+  public void distanceCountsFullKilometersUpToCap() {
+    DistancePolicy policy = new DistancePolicy(2, 10);
+    assertEquals(0, policy.points(new DiscoveryEvent("u", "t", 1, 0, 0, 999)));
+    assertEquals(4, policy.points(new DiscoveryEvent("u", "t", 1, 0, 0, 2500)));
+    assertEquals(10, policy.points(new DiscoveryEvent("u", "t", 1, 0, 0, 40_000)));
+  }
+
+  @Test
+  public void timeDecayHalvesEveryHalfLife() {
+    TimeDecayPolicy policy = new TimeDecayPolicy(20, HOUR);
+    long created = 1_000_000;
+    assertEquals(20, policy.points(new DiscoveryEvent("u", "t", 1, created, created, 0)));
+    assertEquals(10, policy.points(new DiscoveryEvent("u", "t", 1, created + HOUR, created, 0)));
+    assertEquals(5,
+        policy.points(new DiscoveryEvent("u", "t", 1, created + 2 * HOUR, created, 0)));
+
+    // Unknown creation time earns nothing
+    assertEquals(0, policy.points(new DiscoveryEvent("u", "t", 1, created, 0, 0)));
+  }
+
+  @Test
+  public void engineAddsUpPolicies() {
+    ScoringEngine engine = new ScoringEngine(Arrays.<ScoringPolicy>asList(
+        new FirstFindersPolicy(1, 5), new RarityPolicy(10)));
+    assertEquals(15, engine.score(event("u", "t", 1)));
+    assertEquals(5, engine.score(event("u", "t", 2)));
+  }
+
+  @Test
+  public void replayAssignsPlacesAndSkipsRepeats() {
+    ScoringEngine engine = new ScoringEngine(
+        Arrays.<ScoringPolicy>asList(new FirstFindersPolicy(2, 10)));
+    List<DiscoveryEvent> log = Arrays.asList(
+        event("a", "t1", 0),
+        event("a", "t1", 0),
+        event("b", "t1", 0),
+        event("c", "t1", 0),
+        event("c", "t2", 0));
+    Map<String, Long> totals = engine.replay(log);
+    assertEquals(10L, (long) totals.get("a"));
+    assertEquals(10L, (long) totals.get("b"));
+    assertEquals(10L, (long) totals.get("c"));
+  }
+
+  // Timing depends on the machine, so the benchmark only runs when started by hand
+  @Ignore("Benchmark")
+  @Test
+  public void replaysMillionsOfEventsInSeconds() {
+    ScoringEngine engine = new ScoringEngine(Arrays.asList(
+        new FirstFindersPolicy(3, 10), new RarityPolicy(20),
+        new DistancePolicy(1, 5), new TimeDecayPolicy(10, 24 * HOUR)));
+
+    Random random = new Random(11);
+    String[] users = new String[REPLAY_USERS];
+    for (int i = 0; i < users.length; i++) {
+      users[i] = "user" + i;
+    }
+    String[] treasures = new String[REPLAY_TREASURES];
+    for (int i = 0; i < treasures.length; i++) {
+      treasures[i] = "treasure" + i;
+    }
+    List<DiscoveryEvent> log = new ArrayList<>(REPLAY_EVENTS);
+    long start = 1_700_000_000_000L;
+    for (int i = 0; i < REPLAY_EVENTS; i++) {
+      log.add(new DiscoveryEvent(users[random.nextInt(users.length)],
+          treasures[random.nextInt(treasures.length)], 0, start + i * 1000L, start,
+          random.nextDouble() * 5000));
+    }
+
+    long begin = System.nanoTime();
+    Map<String, Long> totals = engine.replay(log);
+    double seconds = (System.nanoTime() - begin) / 1e9;
+
+    assertEquals(REPLAY_USERS, totals.size());
+    assertTrue("Replay took " + seconds + " s", seconds < 10);
+  }
+}
@@ -0,0 +1,53 @@
+package edu.northeastern.numad25su_group6.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ExpiringLruCache}.
+ */
+public class ExpiringLruCacheTest {
+
+  private static final long TTL = 1000;
+
+  @Test
+  public void get_returnsStoredValueUntilItExpires() {
+    ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(10, TTL);
+    cache.put("a", "alice", 0);
+    assertEquals("alice", cache.get("a", TTL - 1));
+    assertNull(cache.get("a", TTL));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void put_evictsLeastRecentlyUsed() {
+    ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(2, TTL);
+    cache.put("a", "alice", 0);
+    cache.put("b", "bob", 0);
+
+    // Reading a makes b the least recently used entry
+    cache.get("a", 1);
+    cache.put("c", "carol", 2);
+    assertEquals("alice", cache.get("a", 3));
+    assertNull(cache.get("b", 3));
+    assertEquals("carol", cache.get("c", 3));
+  }
+
+  @Test
+  public void put_restartsExpiry() {
+    ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(10, TTL);
+    cache.put("a", "alice", 0);
+    cache.put("a", "alice", 500);
+    assertEquals("alice", cache.get("a", TTL + 100));
+  }
+
+  @Test
+  public void remove_dropsValue() {
+    ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(10, TTL);
+    cache.put("a", "alice", 0);
+    cache.remove("a");
+    assertNull(cache.get("a", 1));
+  }
+}
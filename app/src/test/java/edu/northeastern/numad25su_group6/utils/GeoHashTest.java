@@ -0,0 +1,45 @@
+package edu.northeastern.numad25su_group6.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link GeoHash}.
+ */
+public class GeoHashTest {
+
+  @Test
+  public void encode_knownLocation() {
+    assertEquals("drt2zp2", GeoHash.encode(42.3601, -71.0589, 7));
+  }
+
+  @Test
+  public void coveringCells_containPointsInsideBox() {
+    List<String> cells = GeoHash.coveringCells(42.33, -71.10, 42.38, -71.02);
+    assertTrue(cells.size() <= GeoHash.MAX_QUERY_CELLS);
+    String hash = GeoHash.encode(42.35, -71.05);
+    boolean covered = false;
+    for (String cell : cells) {
+      covered |= hash.startsWith(cell);
+    }
+    assertTrue(covered);
+  }
+
+  @Test
+  public void coveringCells_splitAtAntimeridian() {
+    List<String> cells = GeoHash.coveringCells(-10, 170, 10, -170);
+    String east = GeoHash.encode(0, 175);
+    String west = GeoHash.encode(0, -175);
+    boolean eastCovered = false;
+    boolean westCovered = false;
+    for (String cell : cells) {
+      eastCovered |= east.startsWith(cell);
+      westCovered |= west.startsWith(cell);
+    }
+    assertTrue(eastCovered);
+    assertTrue(westCovered);
+  }
+}
@@ -0,0 +1,140 @@
+package edu.northeastern.numad25su_group6.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import edu.northeastern.numad25su_group6.pojo.LeaderboardItem;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LeaderboardRanking}.
+ */
+public class LeaderboardRankingTest {
+
+  /**
+   * Records the changes reported by the ranking and replays them on a mirror list, the way a
+   * RecyclerView applies adapter notifications.
+   */
+  private static final class RecordingListener implements LeaderboardRanking.Listener {
+
+    final List<String> events = new ArrayList<>();
+    final List<LeaderboardItem> mirror = new ArrayList<>();
+    List<LeaderboardItem> items;
+
+    @Override
+    public void onItemRangeInserted(int start, int count) {
+      events.add("insert " + start + " " + count);
+      mirror.addAll(start, items.subList(start, start + count));
+    }
+
+    @Override
+    public void onItemRemoved(int position) {
+      events.add("remove " + position);
+      mirror.remove(position);
+    }
+
+    @Override
+    public void onItemMoved(int from, int to) {
+      events.add("move " + from + " " + to);
+      mirror.add(to, mirror.remove(from));
+    }
+
+    @Override
+    public void onItemChanged(int position) {
+      events.add("change " + position);
+    }
+  }
+
+  private static LeaderboardItem item(String userId, int points) {
+    return new LeaderboardItem(userId, "", points, -1, null);
+  }
+
+  private static RecordingListener listener(List<LeaderboardItem> items) {
+    RecordingListener listener = new RecordingListener();
+    listener.items = items;
+    return listener;
+  }
+
+  @Test
+  public void append_ranksWithSharedRanks() {
+    List<LeaderboardItem> items = new ArrayList<>();
+    LeaderboardRanking ranking = new LeaderboardRanking(items, listener(items));
+    ranking.append(Arrays.asList(item("d", 50), item("c", 40), item("b", 40), item("a", 30)));
+    assertEquals(1, items.get(0).rank);
+    assertEquals(2, items.get(1).rank);
+    assertEquals(2, items.get(2).rank);
+    assertEquals(4, items.get(3).rank);
+  }
+
+  @Test
+  public void update_movesOnlyChangedEntry() {
+    List<LeaderboardItem> items = new ArrayList<>();
+    RecordingListener listener = listener(items);
+    LeaderboardRanking ranking = new LeaderboardRanking(items, listener);
+    ranking.append(Arrays.asList(item("e", 50), item("d", 40), item("c", 30), item("b", 20),
+        item("a", 10)));
+    listener.events.clear();
+
+    // c overtakes d, e and everything below c keep their place
+    ranking.update("c", 45);
+    assertEquals(Arrays.asList("move 2 1", "change 1", "change 2"), listener.events);
+    assertEquals("c", items.get(1).userId);
+    assertEquals(2, items.get(1).rank);
+    assertEquals(3, items.get(2).rank);
+    assertEquals(4, items.get(3).rank);
+  }
+
+  @Test
+  public void update_withSamePointsReportsNothing() {
+    List<LeaderboardItem> items = new ArrayList<>();
+    RecordingListener listener = listener(items);
+    LeaderboardRanking ranking = new LeaderboardRanking(items, listener);
+    ranking.append(Arrays.asList(item("b", 20), item("a", 10)));
+    listener.events.clear();
+    ranking.update("a", 10);
+    assertEquals(0, listener.events.size());
+  }
+
+  @Test
+  public void randomUpdates_matchFullSort() {
+    Random random = new Random(5);
+    List<LeaderboardItem> items = new ArrayList<>();
+    RecordingListener listener = listener(items);
+    LeaderboardRanking ranking = new LeaderboardRanking(items, listener);
+    Map<String, Integer> points = new HashMap<>();
+
+    for (int step = 0; step < 2000; step++) {
+      String userId = "user" + random.nextInt(60);
+      if (random.nextInt(10) == 0) {
+        ranking.remove(userId);
+        points.remove(userId);
+      } else {
+        int value = random.nextInt(20) * 10;
+        ranking.update(userId, value);
+        points.put(userId, value);
+      }
+    }
+
+    // Same order and ranks as sorting everything from scratch
+    List<Map.Entry<String, Integer>> expected = new ArrayList<>(points.entrySet());
+    expected.sort((a, b) -> !a.getValue().equals(b.getValue())
+        ? Integer.compare(b.getValue(), a.getValue()) : b.getKey().compareTo(a.getKey()));
+    assertEquals(expected.size(), items.size());
+    int rank = 0;
+    for (int i = 0; i < expected.size(); i++) {
+      if (i == 0 || !expected.get(i).getValue().equals(expected.get(i - 1).getValue())) {
+        rank = i + 1;
+      }
+      assertEquals(expected.get(i).getKey(), items.get(i).userId);
+      assertEquals(rank, items.get(i).rank);
+    }
+
+    // The reported changes turn the old list into the new one
+    assertEquals(items, listener.mirror);
+  }
+}
@@ -0,0 +1,88 @@
+package edu.northeastern.numad25su_group6.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link RankIndex}.
+ */
+public class RankIndexTest {
+
+  @Test
+  public void rank_sharedByEqualScores() {
+    RankIndex index = new RankIndex();
+    index.add(30);
+    index.add(20);
+    index.add(20);
+    index.add(10);
+    assertEquals(1, index.rank(30));
+    assertEquals(2, index.rank(20));
+    assertEquals(4, index.rank(10));
+    assertEquals(5, index.rank(0));
+    assertEquals(1, index.rank(99));
+  }
+
+  @Test
+  public void change_movesScore() {
+    RankIndex index = new RankIndex();
+    index.add(10);
+    index.add(20);
+    index.change(10, 25);
+    assertEquals(1, index.rank(25));
+    assertEquals(2, index.rank(20));
+    assertEquals(2, index.size());
+  }
+
+  @Test
+  public void add_countsSeveralScoresAtOnce() {
+    RankIndex index = new RankIndex();
+    index.add(10, 5);
+    index.add(20, 2);
+    assertEquals(3, index.rank(10));
+    index.add(20, -3);
+    assertEquals(1, index.rank(10));
+    assertEquals(5, index.size());
+  }
+
+  @Test
+  public void add_growsBeyondInitialCapacity() {
+    RankIndex index = new RankIndex();
+    index.add(5);
+    index.add(1_000_000);
+    index.add(3000);
+    assertEquals(1, index.rank(1_000_000));
+    assertEquals(2, index.rank(3000));
+    assertEquals(3, index.rank(5));
+  }
+
+  @Test
+  public void rank_matchesLinearScan() {
+    Random random = new Random(3);
+    RankIndex index = new RankIndex();
+    int[] scores = new int[5000];
+    for (int i = 0; i < scores.length; i++) {
+      scores[i] = random.nextInt(4000);
+      index.add(scores[i]);
+    }
+
+    // Change some scores the way discoveries do
+    for (int i = 0; i < 1000; i++) {
+      int user = random.nextInt(scores.length);
+      int points = scores[user] + 10;
+      index.change(scores[user], points);
+      scores[user] = points;
+    }
+
+    for (int probe = 0; probe < 4100; probe += 37) {
+      int higher = 0;
+      for (int score : scores) {
+        if (score > probe) {
+          higher++;
+        }
+      }
+      assertEquals(higher + 1, index.rank(probe));
+    }
+  }
+}